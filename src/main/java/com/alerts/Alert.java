@@ -2,6 +2,13 @@ package com.alerts;
 
 // Represents an alert
 public class Alert {
+    /** Priority of alerts that can wait, e.g. a single abnormal ECG peak. */
+    public static final int PRIORITY_ROUTINE = 1;
+    /** Priority of alerts that need attention soon, e.g. low saturation. */
+    public static final int PRIORITY_URGENT = 2;
+    /** Priority of alerts that need attention immediately, e.g. hypotensive hypoxemia. */
+    public static final int PRIORITY_CRITICAL = 3;
+
     private String patientId;
     private String condition;
     private long timestamp;
@@ -12,7 +19,7 @@ public class Alert {
         this.patientId = patientId;
         this.condition = condition;
         this.timestamp = timestamp;
-        this.priority = 1; // Default priority
+        this.priority = PRIORITY_ROUTINE; // Default priority
         this.triggered = false;
     }
 
@@ -44,9 +51,26 @@ public class Alert {
     //added a trigger function
     public void trigger() {
         this.triggered = true;
-        System.out.println("ALERT: Patient ID " + patientId +
+        System.out.println(describe());
+    }
+
+    /**
+     * Marks the alert as triggered without printing it, for alerts that are
+     * delivered by an {@link AlertDispatcher}.
+     */
+    void markTriggered() {
+        this.triggered = true;
+    }
+
+    /**
+     * Returns the line printed when the alert is triggered.
+     *
+     * @return a human-readable description of the alert
+     */
+    public String describe() {
+        return "ALERT: Patient ID " + patientId +
                 " triggered condition '" + condition +
                 "' at timestamp " + timestamp +
-                " with priority " + priority);
+                " with priority " + priority;
     }
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+package com.alerts;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns the stream of alerts raised by the strategies into one notification
+ * per real event.
+ * Alerts are grouped into episodes per patient and condition. The first alert
+ * of an episode raises it and is passed on; later alerts keep the episode
+ * active and are suppressed, except that an episode that is still active is
+ * notified again once per re-notify interval. An episode resolves once its
+ * condition has not been seen for the clear interval, so a condition that
+ * flickers within that interval stays one episode (hysteresis). A new
+ * episode that starts within the cooldown after the previous one resolved is
+ * not notified right away; if it is still active once the cooldown has passed,
+ * its next alert is notified.
+ *
+ * <p>All times are the timestamps of the alerts, i.e. of the readings that
+ * caused them, so re-evaluating the same readings is recognised as a repeat
+ * no matter when it happens. The state of each episode is kept in open
+ * addressing tables of primitive arrays keyed by patient ID and an interned
+ * condition code, striped by patient so that evaluations of different
+ * patients rarely contend.
+ */
+public class AlertDeduplicator {
+    /**
+     * The state of an alert episode.
+     */
+    public enum State {
+        /** The condition has been seen for the first time and notified. */
+        RAISED,
+        /** The condition has been seen again since it was raised. */
+        ACTIVE,
+        /** The condition has not been seen for the clear interval. */
+        RESOLVED
+    }
+
+    private static final int STRIPES = 16;
+
+    private final long clearMillis;
+    private final long renotifyMillis;
+    private final long cooldownMillis;
+    private final ConcurrentHashMap<String, Integer> conditionCodes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextConditionCode = new AtomicInteger();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Constructs a deduplicator that resolves episodes after 5 minutes without
+     * the condition, re-notifies active episodes every 15 minutes and has a
+     * cooldown of 1 minute.
+     */
+    public AlertDeduplicator() {
+        this(5 * 60 * 1000, 15 * 60 * 1000, 60 * 1000);
+    }
+
+    /**
+     * Constructs a deduplicator.
+     *
+     * @param clearMillis    how long a condition must not be seen before its
+     *                       episode resolves
+     * @param renotifyMillis how often an active episode is notified again
+     * @param cooldownMillis how long after an episode resolved a new episode of
+     *                       the same condition is not notified
+     */
+    public AlertDeduplicator(long clearMillis, long renotifyMillis, long cooldownMillis) {
+        if (clearMillis <= 0 || renotifyMillis <= 0 || cooldownMillis < 0) {
+            throw new IllegalArgumentException("Intervals must be positive");
+        }
+        this.clearMillis = clearMillis;
+        this.renotifyMillis = renotifyMillis;
+        this.cooldownMillis = cooldownMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records an alert and decides whether it is passed on.
+     *
+     * @param alert the alert raised by a strategy
+     * @return {@code true} if the alert starts an episode or is due to be
+     *         notified again, {@code false} if it is a repeat
+     */
+    public boolean offer(Alert alert) {
+        int patientId;
+        try {
+            patientId = Integer.parseInt(alert.getPatientId());
+        } catch (NumberFormatException e) {
+            return true; // not a patient this deduplicator can key, pass it on
+        }
+        int conditionCode = conditionCodes.computeIfAbsent(alert.getCondition(),
+                c -> nextConditionCode.getAndIncrement());
+        long timestamp = alert.getTimestamp();
+        Stripe stripe = stripes[patientId & (STRIPES - 1)];
+        synchronized (stripe) {
+            int entry = stripe.entryOf(patientId, conditionCode);
+            if (entry < 0) {
+                entry = stripe.insert(patientId, conditionCode);
+                return stripe.raise(entry, timestamp, true);
+            }
+            if (timestamp <= stripe.lastSeen[entry]) {
+                return false; // the same or an older reading evaluated again
+            }
+            if (timestamp - stripe.lastSeen[entry] > clearMillis) {
+                // the previous episode resolved in the meantime
+                long cooldownEnd = stripe.lastSeen[entry] + clearMillis + cooldownMillis;
+                boolean cooledDown = timestamp >= cooldownEnd;
+                stripe.quietUntil[entry] = cooledDown ? Long.MAX_VALUE : cooldownEnd;
+                return stripe.raise(entry, timestamp, cooledDown);
+            }
+            stripe.states[entry] = (byte) State.ACTIVE.ordinal();
+            stripe.lastSeen[entry] = timestamp;
+            if (timestamp >= stripe.quietUntil[entry] || timestamp - stripe.lastNotified[entry] >= renotifyMillis) {
+                stripe.lastNotified[entry] = timestamp;
+                stripe.quietUntil[entry] = Long.MAX_VALUE;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the state of the episode of a condition as of a given time.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param condition the condition of the alert, e.g. "Low Blood Saturation"
+     * @param now       the time to evaluate the state at, in milliseconds since
+     *                  epoch
+     * @return the state, {@code null} if the condition was never raised
+     */
+    public State getState(int patientId, String condition, long now) {
+        Integer conditionCode = conditionCodes.get(condition);
+        if (conditionCode == null) {
+            return null;
+        }
+        Stripe stripe = stripes[patientId & (STRIPES - 1)];
+        synchronized (stripe) {
+            int entry = stripe.entryOf(patientId, conditionCode);
+            if (entry < 0) {
+                return null;
+            }
+            if (now - stripe.lastSeen[entry] > clearMillis) {
+                return State.RESOLVED;
+            }
+            return State.values()[stripe.states[entry]];
+        }
+    }
+
+    /**
+     * The episodes of the patients of one stripe, in parallel arrays indexed by
+     * entry number and found through an open addressing table of entry numbers.
+     */
+    private static final class Stripe {
+        private long[] keys = new long[8];
+        byte[] states = new byte[8];
+        long[] lastSeen = new long[8];
+        long[] lastNotified = new long[8];
+        // end of the cooldown of an episode raised within it, Long.MAX_VALUE if none is pending
+        long[] quietUntil = new long[8];
+        private int[] slots = new int[16]; // entry + 1, 0 marks an empty slot
+        private int size;
+
+        /**
+         * Starts a new episode, notified if {@code notify} is set.
+         */
+        boolean raise(int entry, long timestamp, boolean notify) {
+            states[entry] = (byte) (notify ? State.RAISED : State.ACTIVE).ordinal();
+            lastSeen[entry] = timestamp;
+            if (notify) {
+                lastNotified[entry] = timestamp;
+            }
+            return notify;
+        }
+
+        int entryOf(int patientId, int conditionCode) {
+            long key = key(patientId, conditionCode);
+            int mask = slots.length - 1;
+            for (int i = mix(key) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (keys[slots[i] - 1] == key) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        int insert(int patientId, int conditionCode) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+                lastSeen = Arrays.copyOf(lastSeen, size * 2);
+                lastNotified = Arrays.copyOf(lastNotified, size * 2);
+                quietUntil = Arrays.copyOf(quietUntil, size * 2);
+            }
+            int entry = size++;
+            keys[entry] = key(patientId, conditionCode);
+            lastNotified[entry] = Long.MIN_VALUE / 2; // long enough ago for any re-notify interval
+            quietUntil[entry] = Long.MAX_VALUE;
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int i = 0; i < size; i++) {
+                    place(i);
+                }
+            } else {
+                place(entry);
+            }
+            return entry;
+        }
+
+        private void place(int entry) {
+            int mask = slots.length - 1;
+            int i = mix(keys[entry]) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = entry + 1;
+        }
+
+        private static long key(int patientId, int conditionCode) {
+            return (long) patientId << 32 | conditionCode;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.alerts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers triggered alerts to {@link AlertSink}s on a dedicated thread, so
+ * that the threads evaluating patients never wait for a console, file or
+ * network connection.
+ * Alerts are handed over through bounded lock-free queues, one per
+ * {@link PriorityClass}, and delivered in batches of up to {@value #MAX_BATCH}
+ * alerts. Every queued alert has a deadline, the time it was submitted plus the
+ * current latency budget of its class, and batches are filled earliest
+ * deadline first. Within a class the deadlines therefore follow the order of
+ * submission, so only the head of each queue needs to be compared.
+ * A critical alert therefore overtakes a backlog of routine ones, while a
+ * routine alert is still delivered once its deadline comes before those of
+ * newer critical alerts, so no class starves. When the queue of a class is
+ * full, the {@link OverflowPolicy} decides which alert is dropped instead of
+ * blocking the caller. Submitted, dropped and delivered alerts, deadline
+ * misses and the worst latency are counted per class. Every submitted alert
+ * is eventually either delivered or counted as dropped, also when it races
+ * with {@link #close()}: submits announce themselves in a state word that
+ * close marks as closed, and close waits only for the submits already in
+ * flight, so submitting takes no lock.
+ */
+public class AlertDispatcher implements Closeable {
+    /**
+     * What {@link #submit(Alert)} does when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Drop the submitted alert and keep the queued ones. */
+        DROP_NEWEST,
+        /** Drop the oldest queued alert to make room for the submitted one. */
+        DROP_OLDEST
+    }
+
+    /**
+     * The classes alerts are queued in by their {@link Alert#getPriority()},
+     * each with a default latency budget.
+     */
+    public enum PriorityClass {
+        /** Priority {@link Alert#PRIORITY_CRITICAL} and above, delivered within 100 ms. */
+        CRITICAL(100),
+        /** Priority {@link Alert#PRIORITY_URGENT}, delivered within 1 second. */
+        URGENT(1000),
+        /** Any lower priority, delivered within 10 seconds. */
+        ROUTINE(10000);
+
+        private final long defaultBudgetMillis;
+
+        PriorityClass(long defaultBudgetMillis) {
+            this.defaultBudgetMillis = defaultBudgetMillis;
+        }
+
+        /**
+         * Returns the class of a priority.
+         *
+         * @param priority the priority of an alert
+         * @return the class the alert is queued in
+         */
+        public static PriorityClass of(int priority) {
+            if (priority >= Alert.PRIORITY_CRITICAL) {
+                return CRITICAL;
+            }
+            return priority == Alert.PRIORITY_URGENT ? URGENT : ROUTINE;
+        }
+    }
+
+    static final int MAX_BATCH = 256;
+    // the sign bit of the state word, the other bits count the submits in flight
+    private static final int CLOSED = Integer.MIN_VALUE;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AlertSink[] sinks;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Lane[] lanes = new Lane[PriorityClass.values().length];
+    private final Thread thread;
+    private final AtomicInteger state = new AtomicInteger();
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+
+    /**
+     * Constructs a dispatcher that queues up to 8192 alerts per class and
+     * drops the oldest one of a class when its queue is full.
+     *
+     * @param sinks the sinks every alert is delivered to, in this order
+     */
+    public AlertDispatcher(AlertSink... sinks) {
+        this(8192, OverflowPolicy.DROP_OLDEST, sinks);
+    }
+
+    /**
+     * Constructs a dispatcher and starts its thread.
+     *
+     * @param capacity       the number of alerts the queue of each class holds
+     * @param overflowPolicy which alert to drop when a queue is full
+     * @param sinks          the sinks every alert is delivered to, in this order
+     */
+    public AlertDispatcher(int capacity, OverflowPolicy overflowPolicy, AlertSink... sinks) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (sinks.length == 0) {
+            throw new IllegalArgumentException("At least one sink is required");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.sinks = sinks.clone();
+        for (PriorityClass priorityClass : PriorityClass.values()) {
+            lanes[priorityClass.ordinal()] = new Lane(priorityClass.defaultBudgetMillis);
+        }
+        this.thread = new Thread(this::run, "alert-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sets the latency budget of a class. The new budget also applies to the
+     * alerts of the class that are already queued, so that their deadlines keep
+     * the order in which they were submitted.
+     *
+     * @param priorityClass the class
+     * @param budgetMillis  the time within which its alerts should be delivered
+     */
+    public void setLatencyBudget(PriorityClass priorityClass, long budgetMillis) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Latency budget must be positive");
+        }
+        lanes[priorityClass.ordinal()].budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Queues an alert for delivery and marks it as triggered. Never blocks.
+     *
+     * @param alert the alert to deliver
+     * @return {@code false} if the alert was dropped because the queue of its
+     *         class is full or the dispatcher is closed
+     */
+    public boolean submit(Alert alert) {
+        Lane lane = lanes[PriorityClass.of(alert.getPriority()).ordinal()];
+        lane.submitted.incrementAndGet();
+        try {
+            if ((state.incrementAndGet() & CLOSED) != 0) {
+                lane.dropped.incrementAndGet();
+                return false;
+            }
+            return enqueue(lane, alert);
+        } finally {
+            state.decrementAndGet();
+        }
+    }
+
+    private boolean enqueue(Lane lane, Alert alert) {
+        if (lane.queued.incrementAndGet() > capacity) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                lane.queued.decrementAndGet();
+                lane.dropped.incrementAndGet();
+                return false;
+            }
+            if (lane.queue.poll() != null) {
+                lane.queued.decrementAndGet();
+                lane.dropped.incrementAndGet();
+            }
+        }
+        alert.markTriggered();
+        lane.queue.offer(new Queued(alert, lane, System.nanoTime()));
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of alerts waiting to be delivered.
+     *
+     * @return the number of queued alerts of all classes
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += Math.max(0, lane.queued.get());
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of alerts dropped so far.
+     *
+     * @return the number of alerts of all classes that were submitted but never
+     *         delivered
+     */
+    public long getDroppedCount() {
+        long dropped = 0;
+        for (Lane lane : lanes) {
+            dropped += lane.dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the number of alerts delivered so far.
+     *
+     * @return the number of alerts of all classes handed to the sinks
+     */
+    public long getDeliveredCount() {
+        long delivered = 0;
+        for (Lane lane : lanes) {
+            delivered += lane.delivered.get();
+        }
+        return delivered;
+    }
+
+    /**
+     * Returns the number of alerts of a class submitted so far.
+     *
+     * @param priorityClass the class
+     * @return the number of submitted alerts, including dropped ones
+     */
+    public long getSubmittedCount(PriorityClass priorityClass) {
+        return lanes[priorityClass.ordinal()].submitted.get();
+    }
+
+    /**
+     * Returns the number of alerts of a class dropped so far.
+     *
+     * @param priorityClass the class
+     * @return the number of dropped alerts
+     */
+    public long getDroppedCount(PriorityClass priorityClass) {
+        return lanes[priorityClass.ordinal()].dropped.get();
+    }
+
+    /**
+     * Returns the number of alerts of a class delivered so far.
+     *
+     * @param priorityClass the class
+     * @return the number of delivered alerts
+     */
+    public long getDeliveredCount(PriorityClass priorityClass) {
+        return lanes[priorityClass.ordinal()].delivered.get();
+    }
+
+    /**
+     * Returns the number of alerts of a class delivered after their deadline.
+     *
+     * @param priorityClass the class
+     * @return the number of alerts that exceeded the latency budget
+     */
+    public long getMissedDeadlineCount(PriorityClass priorityClass) {
+        return lanes[priorityClass.ordinal()].missed.get();
+    }
+
+    /**
+     * Returns the longest time an alert of a class took from submission until
+     * all sinks had it.
+     *
+     * @param priorityClass the class
+     * @return the worst latency so far, in milliseconds
+     */
+    public long getMaxLatencyMillis(PriorityClass priorityClass) {
+        return TimeUnit.NANOSECONDS.toMillis(lanes[priorityClass.ordinal()].maxLatencyNanos);
+    }
+
+    /**
+     * Delivers the alerts that are still queued, stops the dispatcher thread
+     * and closes the sinks that are {@link Closeable}.
+     */
+    @Override
+    public void close() {
+        state.getAndUpdate(current -> current | CLOSED);
+        // submits that saw the state open finish their enqueue before the last round
+        while ((state.get() & ~CLOSED) != 0) {
+            Thread.onSpinWait();
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AlertSink sink : sinks) {
+            if (sink instanceof Closeable) {
+                try {
+                    ((Closeable) sink).close();
+                } catch (IOException e) {
+                    System.err.println("Error closing alert sink: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void run() {
+        List<Queued> batch = new ArrayList<>(MAX_BATCH);
+        List<Alert> alerts = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            // read before polling, so that the last round after close sees every alert queued before it
+            boolean stopping = !running;
+            while (batch.size() < MAX_BATCH) {
+                Lane earliest = null;
+                long earliestDeadline = 0;
+                for (Lane lane : lanes) {
+                    Queued head = lane.queue.peek();
+                    if (head == null) {
+                        continue;
+                    }
+                    long deadline = head.submitted + lane.budgetNanos;
+                    // deadlines are compared by difference, nanoTime may wrap
+                    if (earliest == null || deadline - earliestDeadline < 0) {
+                        earliest = lane;
+                        earliestDeadline = deadline;
+                    }
+                }
+                if (earliest == null) {
+                    break;
+                }
+                Queued next = earliest.queue.poll();
+                if (next != null) { // null if an overflowing submit dropped it meanwhile
+                    earliest.queued.decrementAndGet();
+                    batch.add(next);
+                    alerts.add(next.alert);
+                }
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch, alerts);
+                batch.clear();
+                alerts.clear();
+                continue;
+            }
+            if (stopping) {
+                return;
+            }
+            waiting = true;
+            // a submit between the polls above and this check would otherwise wait for the timeout
+            if (isIdle() && running) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            waiting = false;
+        }
+    }
+
+    private boolean isIdle() {
+        for (Lane lane : lanes) {
+            if (!lane.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deliver(List<Queued> batch, List<Alert> alerts) {
+        for (AlertSink sink : sinks) {
+            try {
+                sink.deliver(alerts);
+            } catch (IOException | RuntimeException e) {
+                // a failing sink must not keep the alerts from the others
+                System.err.println("Error delivering " + alerts.size() + " alerts to "
+                        + sink.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        long now = System.nanoTime();
+        for (Queued queued : batch) {
+            Lane lane = queued.lane;
+            lane.delivered.incrementAndGet();
+            if (now - queued.submitted > lane.budgetNanos) {
+                lane.missed.incrementAndGet();
+            }
+            lane.maxLatencyNanos = Math.max(lane.maxLatencyNanos, now - queued.submitted);
+        }
+    }
+
+    /**
+     * An alert waiting in the queue of its class, with the time it was
+     * submitted.
+     */
+    private static final class Queued {
+        final Alert alert;
+        final Lane lane;
+        final long submitted;
+
+        Queued(Alert alert, Lane lane, long submitted) {
+            this.alert = alert;
+            this.lane = lane;
+            this.submitted = submitted;
+        }
+    }
+
+    /**
+     * The queue and statistics of one priority class.
+     */
+    private static final class Lane {
+        final ConcurrentLinkedQueue<Queued> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong missed = new AtomicLong();
+        volatile long budgetNanos;
+        volatile long maxLatencyNanos; // written by the dispatcher thread only
+
+        Lane(long budgetMillis) {
+            this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        }
+    }
+}
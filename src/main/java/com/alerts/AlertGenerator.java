@@ -7,9 +7,6 @@ import com.alerts.factories.ECGAlertFactory;
 import com.alerts.strategies.*;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
@@ -28,10 +25,58 @@ public class AlertGenerator {
     private AlertStrategy ecgStrategy;
     private AlertStrategy combinedAlertStrategy;
     private AlertStrategy triggeredAlertStrategy;
+    private final AlertStrategy[] strategies;
+    private final AlertDeduplicator deduplicator;
+    private final AlertDispatcher dispatcher;
+    private final ThreadLocal<RecordWindow> windows = ThreadLocal.withInitial(RecordWindow::new);
 
 
     public AlertGenerator(DataStorage dataStorage) {
+        this(dataStorage, new AlertDeduplicator());
+    }
+
+    /**
+     * Constructs an alert generator whose alerts pass through the given
+     * deduplicator before they are triggered.
+     *
+     * @param dataStorage  the storage whose patients are evaluated
+     * @param deduplicator decides which alerts are repeats of an ongoing event
+     */
+    public AlertGenerator(DataStorage dataStorage, AlertDeduplicator deduplicator) {
+        this(dataStorage, deduplicator, null);
+    }
+
+    /**
+     * Constructs an alert generator whose alerts pass through the given
+     * deduplicator and are then delivered asynchronously by a dispatcher, so
+     * that evaluation never waits for the sinks.
+     *
+     * @param dataStorage  the storage whose patients are evaluated
+     * @param deduplicator decides which alerts are repeats of an ongoing event
+     * @param dispatcher   delivers the alerts, {@code null} to print them on
+     *                     the evaluating thread
+     */
+    public AlertGenerator(DataStorage dataStorage, AlertDeduplicator deduplicator, AlertDispatcher dispatcher) {
+        this(dataStorage, deduplicator, dispatcher, (AlertStrategy[]) null);
+    }
+
+    /**
+     * Constructs an alert generator that checks patients with the given
+     * strategies instead of the built-in ones, e.g. with a
+     * {@link com.alerts.rules.RuleEngine}.
+     *
+     * @param dataStorage  the storage whose patients are evaluated
+     * @param deduplicator decides which alerts are repeats of an ongoing event
+     * @param dispatcher   delivers the alerts, {@code null} to print them on
+     *                     the evaluating thread
+     * @param strategies   the strategies to check, {@code null} for the
+     *                     built-in ones
+     */
+    public AlertGenerator(DataStorage dataStorage, AlertDeduplicator deduplicator, AlertDispatcher dispatcher,
+                          AlertStrategy... strategies) {
         this.dataStorage = dataStorage;
+        this.deduplicator = deduplicator;
+        this.dispatcher = dispatcher;
         this.bloodPressureAlertFactory = new BloodPressureAlertFactory();
         this.bloodOxygenAlertFactory = new BloodOxygenAlertFactory();
         this.ecgAlertFactory = new ECGAlertFactory();
@@ -43,6 +88,9 @@ public class AlertGenerator {
         this.ecgStrategy = new ECGStrategy();
         this.combinedAlertStrategy = new CombinedAlertStrategy();
         this.triggeredAlertStrategy = new TriggeredAlertStrategy();
+        this.strategies = strategies != null ? strategies.clone() : new AlertStrategy[] {
+                bloodPressureStrategy, bloodOxygenStrategy, heartRateStrategy, // Assuming heart rate is a distinct alert type
+                ecgStrategy, combinedAlertStrategy, triggeredAlertStrategy};
     }
 
     /**
@@ -55,30 +103,50 @@ public class AlertGenerator {
         long currentTime = System.currentTimeMillis();
         long thirtyMinutesAgo = currentTime - (30 * 60 * 1000); // 30 minutes in milliseconds
 
-        List<PatientRecord> recentRecords = patient.getRecords(thirtyMinutesAgo, currentTime);
+        // one pass partitions the window by record type, the strategies only index their slices
+        RecordWindow window = windows.get().load(patient, thirtyMinutesAgo, currentTime);
 
         // check for Missing Recent Data (if no records in the last 30 minutes)
-        if (recentRecords.isEmpty()) {
-            triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Missing Recent Data", currentTime));
+        if (window.isEmpty()) {
+            triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Missing Recent Data", currentTime, Alert.PRIORITY_ROUTINE));
             return; // No further evaluation if no recent data
         }
 
         // Strategy Pattern: Delegate alert checking to specific strategies
-        bloodPressureStrategy.check(patient, recentRecords, this);
-        bloodOxygenStrategy.check(patient, recentRecords, this);
-        heartRateStrategy.check(patient, recentRecords, this); // Assuming heart rate is a distinct alert type
-        ecgStrategy.check(patient, recentRecords, this);
-        combinedAlertStrategy.check(patient, recentRecords, this);
-        triggeredAlertStrategy.check(patient, recentRecords, this);
+        for (AlertStrategy strategy : strategies) {
+            strategy.check(patient, window, this);
+        }
+    }
+
+    /**
+     * Switches to streaming mode: from now on every reading added to the
+     * storage is evaluated as it arrives, and alerts are triggered through
+     * {@link #triggerAlert(Alert)}.
+     *
+     * @return the engine that evaluates the readings, detach it from the
+     *         storage to stop streaming
+     */
+    public StreamingAlertEngine startStreaming() {
+        StreamingAlertEngine engine = new StreamingAlertEngine(this::triggerAlert);
+        engine.attach(dataStorage);
+        return engine;
     }
 
     /**
-     * Triggers an alert by printing it to the console.
-     * In a real system, this would involve more sophisticated logging, notification, or storage.
+     * Triggers an alert, unless it repeats an event that has already been
+     * notified. The alert is queued on the dispatcher if there is one and
+     * printed to the console otherwise.
      *
      * @param alert the alert to trigger
      */
     public void triggerAlert(Alert alert) {
-        alert.trigger();
+        if (!deduplicator.offer(alert)) {
+            return;
+        }
+        if (dispatcher != null) {
+            dispatcher.submit(alert);
+        } else {
+            alert.trigger();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.alerts;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface AlertSink {
+    /**
+     * Delivers a batch of alerts, in the order they were triggered.
+     * Called on the dispatcher thread only, so implementations need not be
+     * thread-safe.
+     *
+     * @param alerts the alerts to deliver
+     * @throws IOException if the alerts cannot be delivered
+     */
+    void deliver(List<Alert> alerts) throws IOException;
+}
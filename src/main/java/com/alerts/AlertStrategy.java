@@ -1,9 +1,15 @@
 package com.alerts;
 
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-import java.util.List;
 
 public interface AlertStrategy {
-    void check(Patient patient, List<PatientRecord> records, AlertGenerator generator);
-}
\ No newline at end of file
+    /**
+     * Checks a patient's recent readings for the conditions of this strategy.
+     *
+     * @param patient   the patient whose readings are checked
+     * @param window    the patient's recent readings, partitioned by record
+     *                  type and in timestamp order
+     * @param generator triggers the alerts that are found
+     */
+    void check(Patient patient, RecordWindow window, AlertGenerator generator);
+}
@@ -0,0 +1,189 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-evaluates every patient in a {@link DataStorage} on a fixed cadence.
+ * Each cycle splits the patients into ranges that are evaluated on a
+ * work-stealing {@link ForkJoinPool}, so patients with a lot of data do not
+ * hold up the rest. A cycle that takes longer than the period has overrun its
+ * deadline: it is reported on {@code System.err}, counted, and the next cycle
+ * starts as soon as it finishes instead of overlapping with it.
+ */
+public class MonitoringService implements Closeable {
+    private static final int PATIENTS_PER_TASK = 64;
+
+    private final DataStorage dataStorage;
+    private final AlertGenerator alertGenerator;
+    private final long periodMillis;
+    private final ForkJoinPool pool;
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile long lastCycleMillis;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a service that evaluates the patients on one worker thread
+     * per available processor.
+     *
+     * @param dataStorage    the storage whose patients are evaluated
+     * @param alertGenerator evaluates a single patient
+     * @param periodMillis   the time between the starts of two cycles, which is
+     *                       also the deadline of each cycle
+     */
+    public MonitoringService(DataStorage dataStorage, AlertGenerator alertGenerator, long periodMillis) {
+        this(dataStorage, alertGenerator, periodMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a service.
+     *
+     * @param dataStorage    the storage whose patients are evaluated
+     * @param alertGenerator evaluates a single patient
+     * @param periodMillis   the time between the starts of two cycles, which is
+     *                       also the deadline of each cycle
+     * @param parallelism    the number of worker threads
+     */
+    public MonitoringService(DataStorage dataStorage, AlertGenerator alertGenerator, long periodMillis,
+                             int parallelism) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.dataStorage = dataStorage;
+        this.alertGenerator = alertGenerator;
+        this.periodMillis = periodMillis;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Starts running cycles in the background, the first one immediately.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Monitoring has already been started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "monitoring-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // at a fixed rate a late cycle delays the next one rather than running alongside it
+        scheduler.scheduleAtFixedRate(this::runCycle, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evaluates every patient once and waits until all are done.
+     *
+     * @return the time the cycle took, in milliseconds
+     */
+    public long runCycle() {
+        long start = System.nanoTime();
+        List<Patient> patients = dataStorage.getAllPatients();
+        pool.invoke(new Sweep(patients, 0, patients.size()));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastCycleMillis = elapsed;
+        cycles.incrementAndGet();
+        if (elapsed > periodMillis) {
+            overruns.incrementAndGet();
+            System.err.println("Monitoring cycle over " + patients.size() + " patients took " + elapsed
+                    + " ms, overrunning its " + periodMillis + " ms deadline");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Returns the number of cycles run so far.
+     *
+     * @return the number of completed cycles
+     */
+    public long getCycleCount() {
+        return cycles.get();
+    }
+
+    /**
+     * Returns the number of cycles that took longer than the period.
+     *
+     * @return the number of overrun cycles
+     */
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    /**
+     * Returns the duration of the most recent cycle.
+     *
+     * @return the duration, in milliseconds
+     */
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    /**
+     * Stops scheduling cycles and waits for a running cycle to finish.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+        }
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Evaluates a range of patients, splitting it while it is large enough
+     * for idle workers to steal half of it.
+     */
+    private class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Patient> patients;
+        private final int from;
+        private final int to;
+
+        Sweep(List<Patient> patients, int from, int to) {
+            this.patients = patients;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PATIENTS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Sweep(patients, from, middle), new Sweep(patients, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Patient patient = patients.get(i);
+                try {
+                    alertGenerator.evaluateData(patient);
+                } catch (RuntimeException e) {
+                    // one failing patient must not stop the others from being monitored
+                    System.err.println("Error evaluating patient " + patient.getPatientId() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
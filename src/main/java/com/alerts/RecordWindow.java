@@ -0,0 +1,160 @@
+package com.alerts;
+
+import com.data_management.Patient;
+import com.data_management.RecordCursor;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.Arrays;
+
+/**
+ * The readings of one patient within a time window, partitioned by record type
+ * in a single pass and kept in timestamp order.
+ * Each record type is a slice of two parallel primitive arrays that strategies
+ * index directly, so they neither filter nor sort the window themselves and no
+ * object is allocated per reading. The arrays are reused when the window is
+ * loaded again.
+ * Not thread-safe; use one window per thread.
+ */
+public final class RecordWindow {
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    private final RecordCursor cursor = new RecordCursor();
+    private long[][] timestamps = new long[0][];
+    private double[][] values = new double[0][];
+    private int[] sizes = new int[0];
+    private long startTime;
+    private long endTime;
+    private int total;
+
+    /**
+     * Loads the readings of a patient within a time range, replacing the
+     * previous contents of the window.
+     *
+     * @param patient   the patient whose readings are loaded
+     * @param startTime the start of the window, in milliseconds since UNIX epoch
+     * @param endTime   the end of the window, in milliseconds since UNIX epoch
+     * @return this window
+     */
+    public RecordWindow load(Patient patient, long startTime, long endTime) {
+        int types = RecordTypeRegistry.size();
+        if (sizes.length < types) {
+            int previous = sizes.length;
+            timestamps = Arrays.copyOf(timestamps, types);
+            values = Arrays.copyOf(values, types);
+            sizes = Arrays.copyOf(sizes, types);
+            for (int code = previous; code < types; code++) {
+                timestamps[code] = NO_TIMESTAMPS;
+                values[code] = NO_VALUES;
+            }
+        }
+        this.startTime = startTime;
+        this.endTime = endTime;
+        total = 0;
+        for (int code = 0; code < sizes.length; code++) {
+            patient.cursor(code, startTime, endTime, cursor);
+            int size = cursor.remaining();
+            if (timestamps[code].length < size) {
+                timestamps[code] = new long[Math.max(size, 2 * timestamps[code].length)];
+                values[code] = new double[timestamps[code].length];
+            }
+            for (int i = 0; i < size; i++) {
+                timestamps[code][i] = cursor.nextTimestamp();
+                values[code][i] = cursor.nextValue();
+            }
+            sizes[code] = size;
+            total += size;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the start of the window.
+     *
+     * @return the start time, in milliseconds since UNIX epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the end of the window.
+     *
+     * @return the end time, in milliseconds since UNIX epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns whether the window holds no readings at all.
+     *
+     * @return {@code true} if the patient has no readings in the window
+     */
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Returns the number of readings of a record type in the window.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @return the number of readings
+     */
+    public int size(int recordTypeCode) {
+        return recordTypeCode < sizes.length ? sizes[recordTypeCode] : 0;
+    }
+
+    /**
+     * Returns the timestamp of a reading of a record type.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param index          the index of the reading, from 0 (oldest) to
+     *                       {@link #size(int)} - 1 (newest)
+     * @return the timestamp, in milliseconds since UNIX epoch
+     */
+    public long timestamp(int recordTypeCode, int index) {
+        return timestamps[recordTypeCode][checkIndex(recordTypeCode, index)];
+    }
+
+    /**
+     * Returns the value of a reading of a record type.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param index          the index of the reading, from 0 (oldest) to
+     *                       {@link #size(int)} - 1 (newest)
+     * @return the measured value
+     */
+    public double value(int recordTypeCode, int index) {
+        return values[recordTypeCode][checkIndex(recordTypeCode, index)];
+    }
+
+    /**
+     * Returns the index of the first reading of a record type at or after a
+     * time, or {@link #size(int)} if there is none.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param time           the time, in milliseconds since UNIX epoch
+     * @return the index of the first reading not before {@code time}
+     */
+    public int indexOf(int recordTypeCode, long time) {
+        int low = 0;
+        int high = size(recordTypeCode);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[recordTypeCode][middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int checkIndex(int recordTypeCode, int index) {
+        if (index < 0 || index >= size(recordTypeCode)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size(recordTypeCode) + " readings");
+        }
+        return index;
+    }
+}
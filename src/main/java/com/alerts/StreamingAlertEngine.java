@@ -0,0 +1,246 @@
+package com.alerts;
+
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodOxygenAlertFactory;
+import com.alerts.factories.BloodPressureAlertFactory;
+import com.alerts.factories.ECGAlertFactory;
+import com.data_management.DataStorage;
+import com.data_management.DataStorageListener;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates the alert conditions of the strategies in
+ * {@code com.alerts.strategies} on each reading as it is added to a
+ * {@link DataStorage}, instead of rescanning a window of records.
+ * For every patient the engine keeps the little state the conditions need:
+ * the last two blood pressure readings of each kind for the trend checks, the
+ * last saturation reading for the rapid drop check, the time of the last low
+ * systolic and saturation readings for hypotensive hypoxemia, and a ring of
+ * the last five ECG values for the peak check. Each reading is
+ * therefore evaluated once, in constant time, and raises at most one alert
+ * per condition. It can still raise several alerts of different conditions,
+ * e.g. a low systolic reading that is critical, part of a decreasing trend and
+ * close to a low saturation reading. The same condition is also raised again
+ * by later readings while it persists, and an ECG peak is reported by every
+ * window it deviates in, so repeats are left to an {@link AlertDeduplicator}.
+ * Alerts are passed on after the patient's state has been released, so a
+ * slow consumer never holds up other readings of the same patient.
+ *
+ * <p>Trends, drops and ECG windows follow the order in which readings arrive.
+ * A reading older than the newest one of its kind is only checked against the
+ * thresholds. Missing data is not a per-reading condition and is left to
+ * {@link AlertGenerator#evaluateData}.
+ */
+public class StreamingAlertEngine implements DataStorageListener {
+    private static final long RAPID_DROP_WINDOW = 10 * 60 * 1000;
+    private static final long COMBINED_WINDOW = 30 * 60 * 1000;
+    private static final int ECG_WINDOW = 5;
+
+    private final Consumer<Alert> alerts;
+    private final AlertFactory bloodPressureAlertFactory = new BloodPressureAlertFactory();
+    private final AlertFactory bloodOxygenAlertFactory = new BloodOxygenAlertFactory();
+    private final AlertFactory ecgAlertFactory = new ECGAlertFactory();
+    private final ConcurrentHashMap<Integer, PatientState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an engine that passes every alert it raises to the given
+     * consumer, e.g. {@link AlertGenerator#triggerAlert(Alert)}.
+     *
+     * @param alerts receives the alerts, called on the ingesting thread
+     *               without holding any of the engine's locks
+     */
+    public StreamingAlertEngine(Consumer<Alert> alerts) {
+        this.alerts = alerts;
+    }
+
+    /**
+     * Starts evaluating the readings added to a storage from now on.
+     *
+     * @param dataStorage the storage to follow
+     */
+    public void attach(DataStorage dataStorage) {
+        dataStorage.addListener(this);
+    }
+
+    /**
+     * Stops evaluating the readings added to a storage.
+     *
+     * @param dataStorage the storage to stop following
+     */
+    public void detach(DataStorage dataStorage) {
+        dataStorage.removeListener(this);
+    }
+
+    @Override
+    public void onRecordAdded(int patientId, int recordTypeCode, long timestamp, double value) {
+        PatientState state = states.get(patientId);
+        if (state == null) {
+            state = states.computeIfAbsent(patientId, id -> new PatientState(String.valueOf(id)));
+        }
+        Alert[] raised;
+        // readings of one patient may arrive on several threads, e.g. one per file
+        synchronized (state) {
+            switch (recordTypeCode) {
+                case RecordTypeRegistry.SYSTOLIC_PRESSURE:
+                    onSystolic(state, timestamp, value);
+                    break;
+                case RecordTypeRegistry.DIASTOLIC_PRESSURE:
+                    if (value > 120 || value < 60) {
+                        raise(bloodPressureAlertFactory, state, "Critical Diastolic Pressure", timestamp, Alert.PRIORITY_CRITICAL);
+                    }
+                    checkTrend(state, state.diastolic, "Diastolic", timestamp, value);
+                    break;
+                case RecordTypeRegistry.SATURATION:
+                    onSaturation(state, timestamp, value);
+                    break;
+                case RecordTypeRegistry.ECG:
+                    onEcg(state, timestamp, value);
+                    break;
+                case RecordTypeRegistry.HEART_RATE:
+                    if (value < 50 || value > 100) {
+                        raise(ecgAlertFactory, state, "Abnormal Heart Rate", timestamp, Alert.PRIORITY_URGENT);
+                    }
+                    break;
+                case RecordTypeRegistry.ALERT:
+                    if (value == 1.0) {
+                        raise(bloodOxygenAlertFactory, state, "Patient Triggered Alert", timestamp, Alert.PRIORITY_CRITICAL);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (state.raised.isEmpty()) {
+                return;
+            }
+            raised = state.raised.toArray(new Alert[0]);
+            state.raised.clear();
+        }
+        for (Alert alert : raised) {
+            alerts.accept(alert);
+        }
+    }
+
+    private void onSystolic(PatientState state, long timestamp, double value) {
+        if (value > 180 || value < 90) {
+            raise(bloodPressureAlertFactory, state, "Critical Systolic Pressure", timestamp, Alert.PRIORITY_CRITICAL);
+        }
+        checkTrend(state, state.systolic, "Systolic", timestamp, value);
+        if (value < 90) {
+            state.lowSystolicTime = Math.max(state.lowSystolicTime, timestamp);
+            checkHypotensiveHypoxemia(state, timestamp, state.lowSaturationTime);
+        }
+    }
+
+    private void onSaturation(PatientState state, long timestamp, double value) {
+        if (value < 92) {
+            raise(bloodOxygenAlertFactory, state, "Low Blood Saturation", timestamp, Alert.PRIORITY_URGENT);
+        }
+        if (timestamp >= state.saturationTime) {
+            if (state.saturationTime != Long.MIN_VALUE && timestamp - state.saturationTime <= RAPID_DROP_WINDOW
+                    && state.saturation - value >= 5) {
+                raise(bloodOxygenAlertFactory, state, "Rapid Blood Saturation Drop", timestamp, Alert.PRIORITY_URGENT);
+            }
+            state.saturation = value;
+            state.saturationTime = timestamp;
+        }
+        if (value < 92) {
+            state.lowSaturationTime = Math.max(state.lowSaturationTime, timestamp);
+            checkHypotensiveHypoxemia(state, timestamp, state.lowSystolicTime);
+        }
+    }
+
+    /**
+     * Raises hypotensive hypoxemia when a low reading of one kind comes within
+     * the window of the last low reading of the other kind.
+     */
+    private void checkHypotensiveHypoxemia(PatientState state, long timestamp, long otherLowTime) {
+        if (otherLowTime != Long.MIN_VALUE && Math.abs(timestamp - otherLowTime) <= COMBINED_WINDOW) {
+            raise(bloodOxygenAlertFactory, state, "Hypotensive Hypoxemia Alert", Math.max(timestamp, otherLowTime), Alert.PRIORITY_CRITICAL);
+        }
+    }
+
+    private void checkTrend(PatientState state, Trend trend, String type, long timestamp, double value) {
+        if (timestamp < trend.newestTime) {
+            return;
+        }
+        if (trend.count >= 2) {
+            if (trend.newer - trend.older > 10 && value - trend.newer > 10) {
+                raise(bloodPressureAlertFactory, state, type + " Pressure Increasing Trend", timestamp, Alert.PRIORITY_URGENT);
+            } else if (trend.older - trend.newer > 10 && trend.newer - value > 10) {
+                raise(bloodPressureAlertFactory, state, type + " Pressure Decreasing Trend", timestamp, Alert.PRIORITY_URGENT);
+            }
+        }
+        trend.older = trend.newer;
+        trend.newer = value;
+        trend.newestTime = timestamp;
+        trend.count = Math.min(2, trend.count + 1);
+    }
+
+    /**
+     * Slides the ECG window by one reading and raises an alert for the first
+     * value of the full window that deviates from the window average.
+     */
+    private void onEcg(PatientState state, long timestamp, double value) {
+        if (timestamp < state.ecgNewestTime) {
+            return;
+        }
+        int slot = (int) (state.ecgCount % ECG_WINDOW);
+        state.ecgValues[slot] = value;
+        state.ecgTimes[slot] = timestamp;
+        state.ecgCount++;
+        state.ecgNewestTime = timestamp;
+        if (state.ecgCount < ECG_WINDOW) {
+            return;
+        }
+        double sum = 0; // summed afresh, a running sum would drift over millions of readings
+        for (double windowValue : state.ecgValues) {
+            sum += windowValue;
+        }
+        double average = sum / ECG_WINDOW;
+        for (int i = 0; i < ECG_WINDOW; i++) {
+            int oldestFirst = (slot + 1 + i) % ECG_WINDOW;
+            if (Math.abs(state.ecgValues[oldestFirst] - average) > 0.3) {
+                raise(ecgAlertFactory, state, "Abnormal ECG Peak", state.ecgTimes[oldestFirst], Alert.PRIORITY_ROUTINE);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Collects an alert to be passed on once the state lock is released.
+     */
+    private void raise(AlertFactory factory, PatientState state, String condition, long timestamp, int priority) {
+        state.raised.add(factory.createAlert(state.patientId, condition, timestamp, priority));
+    }
+
+    private static final class Trend {
+        double older;
+        double newer;
+        int count;
+        long newestTime = Long.MIN_VALUE;
+    }
+
+    private static final class PatientState {
+        final String patientId;
+        final Trend systolic = new Trend();
+        final Trend diastolic = new Trend();
+        double saturation;
+        long saturationTime = Long.MIN_VALUE;
+        long lowSystolicTime = Long.MIN_VALUE;
+        long lowSaturationTime = Long.MIN_VALUE;
+        final double[] ecgValues = new double[ECG_WINDOW];
+        final long[] ecgTimes = new long[ECG_WINDOW];
+        long ecgCount;
+        long ecgNewestTime = Long.MIN_VALUE;
+        final List<Alert> raised = new ArrayList<>(2);
+
+        PatientState(String patientId) {
+            this.patientId = patientId;
+        }
+    }
+}
@@ -4,4 +4,19 @@ import com.alerts.Alert;
 
 public interface AlertFactory {
     Alert createAlert(String patientId, String condition, long timestamp);
+
+    /**
+     * Creates an alert with the given priority.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param condition the condition of the alert
+     * @param timestamp the time of the alert, in milliseconds since epoch
+     * @param priority  the priority, one of the {@code Alert.PRIORITY_} constants
+     * @return the alert
+     */
+    default Alert createAlert(String patientId, String condition, long timestamp, int priority) {
+        Alert alert = createAlert(patientId, condition, timestamp);
+        alert.setPriority(priority);
+        return alert;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,487 @@
+package com.alerts.rules;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.RecordWindow;
+import com.alerts.factories.AlertFactory;
+import com.alerts.factories.BloodOxygenAlertFactory;
+import com.alerts.factories.BloodPressureAlertFactory;
+import com.alerts.factories.ECGAlertFactory;
+import com.data_management.Patient;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of rules compiled for evaluation: the rules are grouped by the record
+ * type they read, and each group is evaluated in a single pass over the
+ * readings of its type, with the previous readings, the sliding sums and the
+ * newest matching timestamps shared by all rules of the group.
+ * Immutable once compiled, so one instance is shared by all evaluating threads;
+ * each thread keeps its own scratch arrays for the pass, so evaluation
+ * allocates nothing unless an alert is raised.
+ */
+final class CompiledRules {
+    private static final AlertFactory BLOOD_PRESSURE = new BloodPressureAlertFactory();
+    private static final AlertFactory BLOOD_OXYGEN = new BloodOxygenAlertFactory();
+    private static final AlertFactory ECG = new ECGAlertFactory();
+
+    private final TypeRules[] types;
+    private final CombinedRule[] combined;
+    private final int ruleCount;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(this));
+
+    private CompiledRules(TypeRules[] types, CombinedRule[] combined, int ruleCount) {
+        this.types = types;
+        this.combined = combined;
+        this.ruleCount = ruleCount;
+    }
+
+    int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Parses and compiles rule definitions.
+     *
+     * @param lines the lines of a rule file
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a line is not a valid rule
+     */
+    static CompiledRules compile(List<String> lines) {
+        Map<Integer, TypeRules> types = new HashMap<>();
+        List<CombinedRule> combined = new ArrayList<>();
+        int ruleCount = 0;
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                Definition definition = Definition.parse(line);
+                String kind = definition.kind;
+                if (kind.equals("combined")) {
+                    int first = definition.type("type");
+                    int second = definition.type("with");
+                    CombinedRule rule = new CombinedRule(definition.condition(), definition.priority(),
+                            first, definition.number("below"), second, definition.number("withBelow"));
+                    combined.add(rule);
+                    rule.firstTracker = types.computeIfAbsent(first, TypeRules::new).track(rule.firstBelow);
+                    rule.secondTracker = types.computeIfAbsent(second, TypeRules::new).track(rule.secondBelow);
+                } else {
+                    int code = definition.type("type");
+                    TypeRules rules = types.computeIfAbsent(code, TypeRules::new);
+                    switch (kind) {
+                        case "threshold":
+                            rules.addThreshold(definition.condition(), definition.priority(),
+                                    definition.number("above", Double.POSITIVE_INFINITY),
+                                    definition.number("below", Double.NEGATIVE_INFINITY));
+                            break;
+                        case "trend":
+                            rules.addTrend(definition.condition(), definition.priority(), definition.number("step"));
+                            break;
+                        case "drop":
+                            rules.addDrop(definition.condition(), definition.priority(), definition.number("amount"),
+                                    (long) definition.number("within"));
+                            break;
+                        case "deviation":
+                            rules.addDeviation(definition.condition(), definition.priority(),
+                                    (int) definition.number("window"), definition.number("limit"));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown rule kind '" + kind + "'");
+                    }
+                }
+                definition.checkAllUsed();
+                ruleCount++;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        TypeRules[] compiled = types.values().toArray(new TypeRules[0]);
+        for (CombinedRule rule : combined) {
+            for (int t = 0; t < compiled.length; t++) {
+                if (compiled[t].code == rule.first) {
+                    rule.firstType = t;
+                }
+                if (compiled[t].code == rule.second) {
+                    rule.secondType = t;
+                }
+            }
+        }
+        return new CompiledRules(compiled, combined.toArray(new CombinedRule[0]), ruleCount);
+    }
+
+    /**
+     * Evaluates all rules against a window of readings.
+     */
+    void evaluate(Patient patient, RecordWindow window, AlertGenerator generator) {
+        int patientId = patient.getPatientId();
+        Scratch current = scratch.get();
+        for (int t = 0; t < types.length; t++) {
+            types[t].evaluate(patientId, window, generator, current.matched[t], current.sums[t], current.dropFirst[t]);
+        }
+        for (CombinedRule rule : combined) {
+            long first = current.matched[rule.firstType][rule.firstTracker];
+            long second = current.matched[rule.secondType][rule.secondTracker];
+            if (first != Long.MIN_VALUE && second != Long.MIN_VALUE) {
+                generator.triggerAlert(BLOOD_OXYGEN.createAlert(String.valueOf(patientId), rule.condition,
+                        Math.max(first, second), rule.priority));
+            }
+        }
+    }
+
+    /**
+     * The arrays one thread reuses for every evaluation of a rule set, sized
+     * for its types.
+     */
+    private static final class Scratch {
+        // newest timestamp matched by each tracker of the combined rules, per type
+        final long[][] matched;
+        final double[][] sums;
+        final int[][] dropFirst;
+
+        Scratch(CompiledRules rules) {
+            int types = rules.types.length;
+            matched = new long[types][];
+            sums = new double[types][];
+            dropFirst = new int[types][];
+            for (int t = 0; t < types; t++) {
+                matched[t] = new long[rules.types[t].trackedBelow.length];
+                sums[t] = new double[rules.types[t].windowSizes.length];
+                dropFirst[t] = new int[rules.types[t].withins.length];
+            }
+        }
+    }
+
+    private static AlertFactory factoryOf(int code) {
+        switch (code) {
+            case RecordTypeRegistry.SYSTOLIC_PRESSURE:
+            case RecordTypeRegistry.DIASTOLIC_PRESSURE:
+                return BLOOD_PRESSURE;
+            case RecordTypeRegistry.ECG:
+            case RecordTypeRegistry.HEART_RATE:
+                return ECG;
+            default:
+                return BLOOD_OXYGEN;
+        }
+    }
+
+    /**
+     * The rules that read one record type, kept in parallel arrays per kind of
+     * rule.
+     */
+    private static final class TypeRules {
+        final int code;
+        final AlertFactory factory;
+        String[] thresholdConditions = new String[0];
+        int[] thresholdPriorities = new int[0];
+        double[] above = new double[0];
+        double[] below = new double[0];
+        String[] trendConditions = new String[0];
+        int[] trendPriorities = new int[0];
+        double[] steps = new double[0];
+        String[] dropConditions = new String[0];
+        int[] dropPriorities = new int[0];
+        double[] amounts = new double[0];
+        long[] withins = new long[0];
+        String[] deviationConditions = new String[0];
+        int[] deviationPriorities = new int[0];
+        int[] windowSizes = new int[0];
+        double[] limits = new double[0];
+        double[] trackedBelow = new double[0];
+
+        TypeRules(int code) {
+            this.code = code;
+            this.factory = factoryOf(code);
+        }
+
+        void addThreshold(String condition, int priority, double above, double below) {
+            int n = thresholdConditions.length;
+            thresholdConditions = Arrays.copyOf(thresholdConditions, n + 1);
+            thresholdPriorities = Arrays.copyOf(thresholdPriorities, n + 1);
+            this.above = Arrays.copyOf(this.above, n + 1);
+            this.below = Arrays.copyOf(this.below, n + 1);
+            thresholdConditions[n] = condition;
+            thresholdPriorities[n] = priority;
+            this.above[n] = above;
+            this.below[n] = below;
+        }
+
+        void addTrend(String condition, int priority, double step) {
+            int n = trendConditions.length;
+            trendConditions = Arrays.copyOf(trendConditions, n + 1);
+            trendPriorities = Arrays.copyOf(trendPriorities, n + 1);
+            steps = Arrays.copyOf(steps, n + 1);
+            trendConditions[n] = condition;
+            trendPriorities[n] = priority;
+            steps[n] = step;
+        }
+
+        void addDrop(String condition, int priority, double amount, long within) {
+            int n = dropConditions.length;
+            dropConditions = Arrays.copyOf(dropConditions, n + 1);
+            dropPriorities = Arrays.copyOf(dropPriorities, n + 1);
+            amounts = Arrays.copyOf(amounts, n + 1);
+            withins = Arrays.copyOf(withins, n + 1);
+            dropConditions[n] = condition;
+            dropPriorities[n] = priority;
+            amounts[n] = amount;
+            withins[n] = within;
+        }
+
+        void addDeviation(String condition, int priority, int windowSize, double limit) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("window must be at least 1");
+            }
+            int n = deviationConditions.length;
+            deviationConditions = Arrays.copyOf(deviationConditions, n + 1);
+            deviationPriorities = Arrays.copyOf(deviationPriorities, n + 1);
+            windowSizes = Arrays.copyOf(windowSizes, n + 1);
+            limits = Arrays.copyOf(limits, n + 1);
+            deviationConditions[n] = condition;
+            deviationPriorities[n] = priority;
+            windowSizes[n] = windowSize;
+            limits[n] = limit;
+        }
+
+        /**
+         * Adds a tracker for the newest reading below a threshold and returns
+         * its index.
+         */
+        int track(double threshold) {
+            int n = trackedBelow.length;
+            trackedBelow = Arrays.copyOf(trackedBelow, n + 1);
+            trackedBelow[n] = threshold;
+            return n;
+        }
+
+        /**
+         * Evaluates every rule of the type in one pass over its readings,
+         * using the given scratch arrays.
+         *
+         * @param matched   receives the newest timestamp matched by each tracker
+         * @param sums      the sliding sum of each deviation rule
+         * @param dropFirst the first reading each drop rule looks at
+         */
+        void evaluate(int patientId, RecordWindow window, AlertGenerator generator, long[] matched, double[] sums,
+                      int[] dropFirst) {
+            Arrays.fill(matched, Long.MIN_VALUE);
+            int size = window.size(code);
+            if (size == 0) {
+                return;
+            }
+            Arrays.fill(sums, 0);
+            // drops only look at the tail of the window that is recent enough
+            for (int d = 0; d < withins.length; d++) {
+                dropFirst[d] = window.indexOf(code, window.getEndTime() - withins[d]);
+            }
+            for (int i = 0; i < size; i++) {
+                double value = window.value(code, i);
+                long timestamp = window.timestamp(code, i);
+                for (int r = 0; r < thresholdConditions.length; r++) {
+                    if (value > above[r] || value < below[r]) {
+                        raise(generator, patientId, thresholdConditions[r], timestamp, thresholdPriorities[r]);
+                    }
+                }
+                if (i >= 2) {
+                    double older = window.value(code, i - 2);
+                    double newer = window.value(code, i - 1);
+                    for (int r = 0; r < trendConditions.length; r++) {
+                        if (newer - older > steps[r] && value - newer > steps[r]) {
+                            raise(generator, patientId, trendConditions[r] + " Increasing Trend", timestamp,
+                                    trendPriorities[r]);
+                        } else if (older - newer > steps[r] && newer - value > steps[r]) {
+                            raise(generator, patientId, trendConditions[r] + " Decreasing Trend", timestamp,
+                                    trendPriorities[r]);
+                        }
+                    }
+                }
+                if (i >= 1) {
+                    for (int r = 0; r < dropConditions.length; r++) {
+                        if (i - 1 >= dropFirst[r] && timestamp - window.timestamp(code, i - 1) <= withins[r]
+                                && window.value(code, i - 1) - value >= amounts[r]) {
+                            raise(generator, patientId, dropConditions[r], timestamp, dropPriorities[r]);
+                        }
+                    }
+                }
+                for (int r = 0; r < deviationConditions.length; r++) {
+                    int windowSize = windowSizes[r];
+                    sums[r] += value;
+                    if (i >= windowSize) {
+                        sums[r] -= window.value(code, i - windowSize);
+                    }
+                    if (i >= windowSize - 1) {
+                        double average = sums[r] / windowSize;
+                        for (int j = i - windowSize + 1; j <= i; j++) {
+                            if (Math.abs(window.value(code, j) - average) > limits[r]) {
+                                raise(generator, patientId, deviationConditions[r], window.timestamp(code, j),
+                                        deviationPriorities[r]);
+                                break;
+                            }
+                        }
+                    }
+                }
+                for (int r = 0; r < trackedBelow.length; r++) {
+                    if (value < trackedBelow[r]) {
+                        matched[r] = timestamp;
+                    }
+                }
+            }
+        }
+
+        private void raise(AlertGenerator generator, int patientId, String condition, long timestamp,
+                           int priority) {
+            generator.triggerAlert(factory.createAlert(String.valueOf(patientId), condition, timestamp, priority));
+        }
+    }
+
+    private static final class CombinedRule {
+        final String condition;
+        final int priority;
+        final int first;
+        final double firstBelow;
+        final int second;
+        final double secondBelow;
+        int firstType;
+        int firstTracker;
+        int secondType;
+        int secondTracker;
+
+        CombinedRule(String condition, int priority, int first, double firstBelow, int second, double secondBelow) {
+            this.condition = condition;
+            this.priority = priority;
+            this.first = first;
+            this.firstBelow = firstBelow;
+            this.second = second;
+            this.secondBelow = secondBelow;
+        }
+    }
+
+    /**
+     * One line of a rule file: a kind followed by {@code key=value} pairs,
+     * where a value may be quoted to contain spaces.
+     */
+    private static final class Definition {
+        final String kind;
+        final Map<String, String> values = new HashMap<>();
+        final Set<String> used = new HashSet<>();
+
+        private Definition(String kind) {
+            this.kind = kind;
+        }
+
+        static Definition parse(String line) {
+            int end = 0;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                end++;
+            }
+            Definition definition = new Definition(line.substring(0, end));
+            int i = end;
+            while (i < line.length()) {
+                if (Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int equals = line.indexOf('=', i);
+                if (equals < 0) {
+                    throw new IllegalArgumentException("expected key=value at '" + line.substring(i) + "'");
+                }
+                String key = line.substring(i, equals);
+                String value;
+                if (equals + 1 < line.length() && line.charAt(equals + 1) == '"') {
+                    int close = line.indexOf('"', equals + 2);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("unterminated quote after '" + key + "='");
+                    }
+                    value = line.substring(equals + 2, close);
+                    i = close + 1;
+                } else {
+                    int stop = equals + 1;
+                    while (stop < line.length() && !Character.isWhitespace(line.charAt(stop))) {
+                        stop++;
+                    }
+                    value = line.substring(equals + 1, stop);
+                    i = stop;
+                }
+                if (definition.values.put(key, value) != null) {
+                    throw new IllegalArgumentException("duplicate key '" + key + "'");
+                }
+            }
+            return definition;
+        }
+
+        String condition() {
+            return required("condition");
+        }
+
+        int priority() {
+            String priority = required("priority").toLowerCase(Locale.ROOT);
+            switch (priority) {
+                case "routine":
+                    return Alert.PRIORITY_ROUTINE;
+                case "urgent":
+                    return Alert.PRIORITY_URGENT;
+                case "critical":
+                    return Alert.PRIORITY_CRITICAL;
+                default:
+                    throw new IllegalArgumentException("unknown priority '" + priority + "'");
+            }
+        }
+
+        /**
+         * Returns the code of a record type that is already known, so that a
+         * misspelt type is reported instead of silently never matching.
+         */
+        int type(String key) {
+            String label = required(key);
+            int code = RecordTypeRegistry.lookup(label);
+            if (code < 0) {
+                throw new IllegalArgumentException("unknown record type '" + label + "'");
+            }
+            return code;
+        }
+
+        double number(String key) {
+            return parseNumber(key, required(key));
+        }
+
+        double number(String key, double defaultValue) {
+            String value = values.get(key);
+            used.add(key);
+            return value == null ? defaultValue : parseNumber(key, value);
+        }
+
+        void checkAllUsed() {
+            for (String key : values.keySet()) {
+                if (!used.contains(key)) {
+                    throw new IllegalArgumentException("unknown key '" + key + "' for rule kind '" + kind + "'");
+                }
+            }
+        }
+
+        private String required(String key) {
+            String value = values.get(key);
+            if (value == null) {
+                throw new IllegalArgumentException("missing '" + key + "' for rule kind '" + kind + "'");
+            }
+            used.add(key);
+            return value;
+        }
+
+        private static double parseNumber(String key, String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("'" + key + "' is not a number: " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.alerts.rules;
+
+import com.alerts.AlertGenerator;
+import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
+import com.data_management.Patient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AlertStrategy} whose conditions are read from a rule file instead
+ * of being coded, so thresholds can be changed while patients are monitored.
+ * The rules are compiled into one evaluator that makes a single pass over the
+ * readings of each record type for all rules on that type. Reloading compiles
+ * the file anew and swaps the evaluator in one step: an evaluation sees either
+ * the old or the new rules, never a mix, and never waits for a reload. A file
+ * that does not compile is reported on {@code System.err} and the previous
+ * rules stay in effect.
+ *
+ * <p>Each line of the file is a rule kind followed by {@code key=value} pairs;
+ * values with spaces are quoted, and lines starting with {@code #} are
+ * comments. Every rule has a {@code condition} and a {@code priority}
+ * ({@code routine}, {@code urgent} or {@code critical}). The rules equivalent
+ * to the built-in strategies are:
+ * <pre>
+ * threshold type=SystolicPressure above=180 below=90 priority=critical condition="Critical Systolic Pressure"
+ * threshold type=DiastolicPressure above=120 below=60 priority=critical condition="Critical Diastolic Pressure"
+ * trend type=SystolicPressure step=10 priority=urgent condition="Systolic Pressure"
+ * trend type=DiastolicPressure step=10 priority=urgent condition="Diastolic Pressure"
+ * threshold type=Saturation below=92 priority=urgent condition="Low Blood Saturation"
+ * drop type=Saturation amount=5 within=600000 priority=urgent condition="Rapid Blood Saturation Drop"
+ * threshold type=HeartRate above=100 below=50 priority=urgent condition="Abnormal Heart Rate"
+ * deviation type=ECG window=5 limit=0.3 priority=routine condition="Abnormal ECG Peak"
+ * combined type=SystolicPressure below=90 with=Saturation withBelow=92 priority=critical condition="Hypotensive Hypoxemia Alert"
+ * threshold type=Alert above=0.5 priority=critical condition="Patient Triggered Alert"
+ * </pre>
+ * A {@code threshold} fires for each reading above {@code above} or below
+ * {@code below}; a {@code trend} for three consecutive readings that each
+ * change by more than {@code step} in the same direction, with
+ * " Increasing Trend" or " Decreasing Trend" appended to the condition; a
+ * {@code drop} for a reading at least {@code amount} below the previous one,
+ * both within the last {@code within} milliseconds; a {@code deviation} for
+ * the first reading of each sliding window of {@code window} readings that
+ * differs from the window average by more than {@code limit}; and a
+ * {@code combined} rule when the window holds readings below both thresholds.
+ */
+public class RuleEngine implements AlertStrategy, Closeable {
+    private final Path file;
+    private volatile CompiledRules rules;
+    private FileTime loadedModified;
+    private ScheduledExecutorService watcher;
+
+    /**
+     * Constructs an engine and loads its rules.
+     *
+     * @param file the rule file
+     * @throws IOException if the file cannot be read or does not compile
+     */
+    public RuleEngine(Path file) throws IOException {
+        this.file = file;
+        FileTime modified = Files.getLastModifiedTime(file);
+        try {
+            this.rules = CompiledRules.compile(Files.readAllLines(file, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid rule file " + file + ": " + e.getMessage(), e);
+        }
+        this.loadedModified = modified;
+    }
+
+    @Override
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
+        rules.evaluate(patient, window, generator);
+    }
+
+    /**
+     * Returns the number of rules in effect.
+     *
+     * @return the number of rules compiled from the file
+     */
+    public int getRuleCount() {
+        return rules.ruleCount();
+    }
+
+    /**
+     * Reads and compiles the rule file again, replacing the rules in effect if
+     * it compiles.
+     *
+     * @return {@code true} if the new rules are in effect
+     */
+    public synchronized boolean reload() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            rules = CompiledRules.compile(Files.readAllLines(file, StandardCharsets.UTF_8));
+            loadedModified = modified;
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Keeping the current alert rules, cannot load " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reloads the rule file if it was modified since it was last loaded.
+     *
+     * @return {@code true} if new rules were put in effect
+     */
+    public synchronized boolean reloadIfModified() {
+        try {
+            if (Files.getLastModifiedTime(file).equals(loadedModified)) {
+                return false;
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot check alert rule file " + file + ": " + e.getMessage());
+            return false;
+        }
+        return reload();
+    }
+
+    /**
+     * Starts checking the rule file for modifications in the background and
+     * reloading it when it changes.
+     *
+     * @param periodMillis the time between two checks
+     */
+    public synchronized void watch(long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        if (watcher != null) {
+            throw new IllegalStateException("The rule file is already being watched");
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rule-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfModified, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching the rule file. The rules in effect stay usable.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.alerts.sinks;
+
+import com.alerts.Alert;
+import com.alerts.AlertSink;
+
+import java.util.List;
+
+/**
+ * Prints alerts to the console in the format of {@link Alert#trigger()}, with
+ * one write per batch.
+ */
+public class ConsoleAlertSink implements AlertSink {
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public void deliver(List<Alert> alerts) {
+        text.setLength(0);
+        for (Alert alert : alerts) {
+            text.append(alert.describe()).append(System.lineSeparator());
+        }
+        System.out.print(text);
+        System.out.flush();
+    }
+}
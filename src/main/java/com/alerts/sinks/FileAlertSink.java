@@ -0,0 +1,51 @@
+package com.alerts.sinks;
+
+import com.alerts.Alert;
+import com.alerts.AlertSink;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends alerts to a file, one line per alert. The file is kept open and
+ * flushed once per batch.
+ */
+public class FileAlertSink implements AlertSink, Closeable {
+    private final BufferedWriter out;
+
+    /**
+     * Opens a file for appending, creating it and its directories if needed.
+     *
+     * @param file the file to append the alerts to
+     * @throws IOException if the file cannot be opened
+     */
+    public FileAlertSink(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void deliver(List<Alert> alerts) throws IOException {
+        for (Alert alert : alerts) {
+            out.write("Patient ID: " + alert.getPatientId() + ", Timestamp: " + alert.getTimestamp()
+                    + ", Condition: " + alert.getCondition() + ", Priority: " + alert.getPriority());
+            out.newLine();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.alerts.sinks;
+
+import com.alerts.Alert;
+import com.alerts.AlertSink;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Pushes alerts through an {@link OutputStrategy} of the simulator, e.g. a
+ * {@link com.cardio_generator.outputs.TcpOutputStrategy} or
+ * {@link com.cardio_generator.outputs.WebSocketOutputStrategy}, as readings
+ * labelled {@value #LABEL} whose data is the condition.
+ * The label differs from the simulator's own "Alert" readings so that readers
+ * of the stream do not mistake a notification for a patient-triggered alert.
+ */
+public class OutputStrategyAlertSink implements AlertSink, Closeable {
+    public static final String LABEL = "AlertNotification";
+
+    private final OutputStrategy outputStrategy;
+
+    /**
+     * Constructs a sink that pushes through the given strategy.
+     *
+     * @param outputStrategy the transport to push the alerts to
+     */
+    public OutputStrategyAlertSink(OutputStrategy outputStrategy) {
+        this.outputStrategy = outputStrategy;
+    }
+
+    @Override
+    public void deliver(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            int patientId;
+            try {
+                patientId = Integer.parseInt(alert.getPatientId());
+            } catch (NumberFormatException e) {
+                System.err.println("Cannot push alert for patient " + alert.getPatientId() + ": not a numeric ID");
+                continue;
+            }
+            outputStrategy.output(patientId, alert.getTimestamp(), LABEL, alert.getCondition());
+        }
+    }
+
+    /**
+     * Closes the strategy if it holds resources.
+     */
+    @Override
+    public void close() throws IOException {
+        if (outputStrategy instanceof Closeable) {
+            ((Closeable) outputStrategy).close();
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package com.alerts.strategies;
 
 import com.alerts.factories.AlertFactory;
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
 import com.alerts.factories.BloodOxygenAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.data_management.RecordTypeRegistry;
 
 public class BloodOxygenStrategy implements AlertStrategy {
     private AlertFactory bloodOxygenAlertFactory;
@@ -18,34 +17,27 @@ public class BloodOxygenStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        List<PatientRecord> saturationRecords = recentRecords.stream()
-                .filter(r -> "Saturation".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
+        int saturation = RecordTypeRegistry.SATURATION;
+        int size = window.size(saturation);
 
         // low Saturation alert
-        for (PatientRecord record : saturationRecords) {
-            if (record.getMeasurementValue() < 92) {
-                generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Low Blood Saturation", record.getTimestamp()));
+        for (int i = 0; i < size; i++) {
+            if (window.value(saturation, i) < 92) {
+                generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Low Blood Saturation", window.timestamp(saturation, i), Alert.PRIORITY_URGENT));
             }
         }
 
         // rapid Drop alert (within 10 minutes)
-        List<PatientRecord> saturationRecords10Min = patient.getRecords(System.currentTimeMillis() - (10 * 60 * 1000), System.currentTimeMillis()).stream()
-                .filter(r -> "Saturation".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
-
-        if (saturationRecords10Min.size() >= 2) {
-            saturationRecords10Min.sort((r1, r2) -> Long.compare(r1.getTimestamp(), r2.getTimestamp()));
-
-            for (int i = 0; i < saturationRecords10Min.size() - 1; i++) {
-                PatientRecord r1 = saturationRecords10Min.get(i);
-                PatientRecord r2 = saturationRecords10Min.get(i + 1);
-
-                if (r2.getTimestamp() - r1.getTimestamp() <= 10 * 60 * 1000) {
-                    if (r1.getMeasurementValue() - r2.getMeasurementValue() >= 5) { // 5% drop or more
-                        generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Rapid Blood Saturation Drop", r2.getTimestamp()));
-                    }
+        // the last 10 minutes are the tail of the time-ordered slice, no second lookup needed
+        int first = window.indexOf(saturation, window.getEndTime() - (10 * 60 * 1000));
+        for (int i = first + 1; i < size; i++) {
+            long previousTimestamp = window.timestamp(saturation, i - 1);
+            long timestamp = window.timestamp(saturation, i);
+
+            if (timestamp - previousTimestamp <= 10 * 60 * 1000) {
+                if (window.value(saturation, i - 1) - window.value(saturation, i) >= 5) { // 5% drop or more
+                    generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Rapid Blood Saturation Drop", timestamp, Alert.PRIORITY_URGENT));
                 }
             }
         }
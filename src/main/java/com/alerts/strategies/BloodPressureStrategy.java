@@ -1,14 +1,13 @@
 package com.alerts.strategies;
 
 import com.alerts.factories.AlertFactory;
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
 import com.alerts.factories.BloodPressureAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.data_management.RecordTypeRegistry;
 
 public class BloodPressureStrategy implements AlertStrategy {
     private AlertFactory bloodPressureAlertFactory;
@@ -18,57 +17,44 @@ public class BloodPressureStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        List<PatientRecord> systolicRecords = recentRecords.stream()
-                .filter(r -> "SystolicPressure".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
-        List<PatientRecord> diastolicRecords = recentRecords.stream()
-                .filter(r -> "DiastolicPressure".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
-
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
         // threshold for systolic
-        for (PatientRecord record : systolicRecords) {
-            if (record.getMeasurementValue() > 180 || record.getMeasurementValue() < 90) {
-                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Critical Systolic Pressure", record.getTimestamp()));
+        for (int i = 0; i < window.size(RecordTypeRegistry.SYSTOLIC_PRESSURE); i++) {
+            double value = window.value(RecordTypeRegistry.SYSTOLIC_PRESSURE, i);
+            if (value > 180 || value < 90) {
+                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Critical Systolic Pressure", window.timestamp(RecordTypeRegistry.SYSTOLIC_PRESSURE, i), Alert.PRIORITY_CRITICAL));
             }
         }
         //threshold for diastolic
-        for (PatientRecord record : diastolicRecords) {
-            if (record.getMeasurementValue() > 120 || record.getMeasurementValue() < 60) {
-                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Critical Diastolic Pressure", record.getTimestamp()));
+        for (int i = 0; i < window.size(RecordTypeRegistry.DIASTOLIC_PRESSURE); i++) {
+            double value = window.value(RecordTypeRegistry.DIASTOLIC_PRESSURE, i);
+            if (value > 120 || value < 60) {
+                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Critical Diastolic Pressure", window.timestamp(RecordTypeRegistry.DIASTOLIC_PRESSURE, i), Alert.PRIORITY_CRITICAL));
             }
         }
 
         // systolic alert
-        checkBloodPressureTrend(patient, systolicRecords, "Systolic", generator);
+        checkBloodPressureTrend(patient, window, RecordTypeRegistry.SYSTOLIC_PRESSURE, "Systolic", generator);
 
         // diastolic alert
-        checkBloodPressureTrend(patient, diastolicRecords, "Diastolic", generator);
+        checkBloodPressureTrend(patient, window, RecordTypeRegistry.DIASTOLIC_PRESSURE, "Diastolic", generator);
     }
 
-    private void checkBloodPressureTrend(Patient patient, List<PatientRecord> bpRecords, String type, AlertGenerator generator) {
-        if (bpRecords.size() >= 3) {
-            // ensure records are sorted by timestamp
-            bpRecords.sort((r1, r2) -> Long.compare(r1.getTimestamp(), r2.getTimestamp()));
-
-            for (int i = 0; i <= bpRecords.size() - 3; i++) {
-                PatientRecord r1 = bpRecords.get(i);
-                PatientRecord r2 = bpRecords.get(i + 1);
-                PatientRecord r3 = bpRecords.get(i + 2);
+    private void checkBloodPressureTrend(Patient patient, RecordWindow window, int recordTypeCode, String type, AlertGenerator generator) {
+        // the slice is already in timestamp order
+        for (int i = 0; i <= window.size(recordTypeCode) - 3; i++) {
+            double val1 = window.value(recordTypeCode, i);
+            double val2 = window.value(recordTypeCode, i + 1);
+            double val3 = window.value(recordTypeCode, i + 2);
 
-                double val1 = r1.getMeasurementValue();
-                double val2 = r2.getMeasurementValue();
-                double val3 = r3.getMeasurementValue();
-
-                // check for increasing trend
-                if (val2 - val1 > 10 && val3 - val2 > 10) {
-                    generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), type + " Pressure Increasing Trend", r3.getTimestamp()));
-                }
-                // check for decreasing trend
-                else if (val1 - val2 > 10 && val2 - val3 > 10) {
-                    generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), type + " Pressure Decreasing Trend", r3.getTimestamp()));
-                }
+            // check for increasing trend
+            if (val2 - val1 > 10 && val3 - val2 > 10) {
+                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), type + " Pressure Increasing Trend", window.timestamp(recordTypeCode, i + 2), Alert.PRIORITY_URGENT));
+            }
+            // check for decreasing trend
+            else if (val1 - val2 > 10 && val2 - val3 > 10) {
+                generator.triggerAlert(bloodPressureAlertFactory.createAlert(String.valueOf(patient.getPatientId()), type + " Pressure Decreasing Trend", window.timestamp(recordTypeCode, i + 2), Alert.PRIORITY_URGENT));
             }
         }
     }
-}
\ No newline at end of file
+}
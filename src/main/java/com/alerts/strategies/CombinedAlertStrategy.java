@@ -5,9 +5,7 @@ import com.alerts.factories.AlertFactory;
 import com.alerts.factories.BloodOxygenAlertFactory;
 import com.alerts.factories.BloodPressureAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.RecordTypeRegistry;
 
 public class CombinedAlertStrategy implements AlertStrategy {
     private AlertFactory bloodPressureAlertFactory;
@@ -19,23 +17,27 @@ public class CombinedAlertStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        boolean lowSystolic = false;
-        boolean lowSaturation = false;
-        long timestampCombined = 0;
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
+        long lowSystolic = latestBelow(window, RecordTypeRegistry.SYSTOLIC_PRESSURE, 90);
+        long lowSaturation = latestBelow(window, RecordTypeRegistry.SATURATION, 92);
 
-        for (PatientRecord record : recentRecords) {
-            if ("SystolicPressure".equalsIgnoreCase(record.getRecordType()) && record.getMeasurementValue() < 90) {
-                lowSystolic = true;
-                timestampCombined = Math.max(timestampCombined, record.getTimestamp());
-            } else if ("Saturation".equalsIgnoreCase(record.getRecordType()) && record.getMeasurementValue() < 92) {
-                lowSaturation = true;
-                timestampCombined = Math.max(timestampCombined, record.getTimestamp());
-            }
+        if (lowSystolic != Long.MIN_VALUE && lowSaturation != Long.MIN_VALUE) {
+            long timestampCombined = Math.max(lowSystolic, lowSaturation);
+            generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Hypotensive Hypoxemia Alert", timestampCombined, Alert.PRIORITY_CRITICAL));
         }
+    }
 
-        if (lowSystolic && lowSaturation) {
-            generator.triggerAlert(bloodOxygenAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Hypotensive Hypoxemia Alert", timestampCombined));
+    /**
+     * Returns the time of the newest reading below the threshold, or
+     * {@link Long#MIN_VALUE} if there is none.
+     */
+    private static long latestBelow(RecordWindow window, int recordTypeCode, double threshold) {
+        // the slice is in timestamp order, so scan it from the newest end
+        for (int i = window.size(recordTypeCode) - 1; i >= 0; i--) {
+            if (window.value(recordTypeCode, i) < threshold) {
+                return window.timestamp(recordTypeCode, i);
+            }
         }
+        return Long.MIN_VALUE;
     }
-}
\ No newline at end of file
+}
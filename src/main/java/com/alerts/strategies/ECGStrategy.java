@@ -1,14 +1,13 @@
 package com.alerts.strategies;
 
 import com.alerts.factories.AlertFactory;
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
 import com.alerts.factories.ECGAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.data_management.RecordTypeRegistry;
 
 public class ECGStrategy implements AlertStrategy {
     private AlertFactory ecgAlertFactory;
@@ -18,33 +17,36 @@ public class ECGStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        List<PatientRecord> ecgRecords = recentRecords.stream()
-                .filter(r -> "ECG".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
+        int ecg = RecordTypeRegistry.ECG;
+        int size = window.size(ecg);
 
-        if (ecgRecords.size() < 5) { // Need a minimum number of records for a sliding window
+        if (size < 5) { // Need a minimum number of records for a sliding window
             return;
         }
 
         // Simple sliding window average for ECG
         int windowSize = 5; // Example window size
-        for (int i = 0; i <= ecgRecords.size() - windowSize; i++) {
-            double sum = 0;
-            for (int j = 0; j < windowSize; j++) {
-                sum += ecgRecords.get(i + j).getMeasurementValue();
+        double sum = 0;
+        for (int j = 0; j < windowSize - 1; j++) {
+            sum += window.value(ecg, j);
+        }
+        for (int i = 0; i <= size - windowSize; i++) {
+            // slide the running sum instead of re-adding the whole window
+            sum += window.value(ecg, i + windowSize - 1);
+            if (i > 0) {
+                sum -= window.value(ecg, i - 1);
             }
             double average = sum / windowSize;
 
             // Check if any value in the current window is far beyond the average
             for (int j = 0; j < windowSize; j++) {
-                PatientRecord currentRecord = ecgRecords.get(i + j);
-                double deviation = Math.abs(currentRecord.getMeasurementValue() - average);
+                double deviation = Math.abs(window.value(ecg, i + j) - average);
                 if (deviation > 0.3) {
-                    generator.triggerAlert(ecgAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal ECG Peak", currentRecord.getTimestamp()));
+                    generator.triggerAlert(ecgAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal ECG Peak", window.timestamp(ecg, i + j), Alert.PRIORITY_ROUTINE));
                     break;
                 }
             }
         }
     }
-}
\ No newline at end of file
+}
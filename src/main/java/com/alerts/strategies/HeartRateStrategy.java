@@ -1,14 +1,13 @@
 package com.alerts.strategies;
 
 import com.alerts.factories.AlertFactory;
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
 import com.alerts.factories.ECGAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.data_management.RecordTypeRegistry;
 
 public class HeartRateStrategy implements AlertStrategy {
     private AlertFactory ecgAlertFactory; // using ecg alert factory for heart rate related alerts
@@ -18,16 +17,13 @@ public class HeartRateStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        List<PatientRecord> heartRateRecords = recentRecords.stream()
-                .filter(r -> "HeartRate".equalsIgnoreCase(r.getRecordType()))
-                .collect(Collectors.toList());
-
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
         // check for abnormal heart rates
-        for (PatientRecord record : heartRateRecords) {
-            if (record.getMeasurementValue() < 50 || record.getMeasurementValue() > 100) {
-                generator.triggerAlert(ecgAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal Heart Rate", record.getTimestamp()));
+        for (int i = 0; i < window.size(RecordTypeRegistry.HEART_RATE); i++) {
+            double value = window.value(RecordTypeRegistry.HEART_RATE, i);
+            if (value < 50 || value > 100) {
+                generator.triggerAlert(ecgAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal Heart Rate", window.timestamp(RecordTypeRegistry.HEART_RATE, i), Alert.PRIORITY_URGENT));
             }
         }
     }
-}
\ No newline at end of file
+}
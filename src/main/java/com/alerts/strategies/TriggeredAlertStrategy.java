@@ -1,13 +1,13 @@
 package com.alerts.strategies;
 
 import com.alerts.factories.AlertFactory;
+import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.alerts.AlertStrategy;
+import com.alerts.RecordWindow;
 import com.alerts.factories.BloodOxygenAlertFactory;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.RecordTypeRegistry;
 
 public class TriggeredAlertStrategy implements AlertStrategy {
     private AlertFactory generalAlertFactory;
@@ -17,13 +17,11 @@ public class TriggeredAlertStrategy implements AlertStrategy {
     }
 
     @Override
-    public void check(Patient patient, List<PatientRecord> recentRecords, AlertGenerator generator) {
-        for (PatientRecord record : recentRecords) {
-            if ("Alert".equalsIgnoreCase(record.getRecordType())) {
-                if (record.getMeasurementValue() == 1.0) {
-                    generator.triggerAlert(generalAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Patient Triggered Alert", record.getTimestamp()));
-                }
+    public void check(Patient patient, RecordWindow window, AlertGenerator generator) {
+        for (int i = 0; i < window.size(RecordTypeRegistry.ALERT); i++) {
+            if (window.value(RecordTypeRegistry.ALERT, i) == 1.0) {
+                generator.triggerAlert(generalAlertFactory.createAlert(String.valueOf(patient.getPatientId()), "Patient Triggered Alert", window.timestamp(RecordTypeRegistry.ALERT, i), Alert.PRIORITY_CRITICAL));
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -10,6 +10,9 @@ import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
+import com.cardio_generator.outputs.BinaryTcpOutputStrategy;
+import com.cardio_generator.outputs.BinaryWebSocketOutputStrategy;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
@@ -92,6 +95,30 @@ public class HealthDataSimulator {
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for TCP output. Please specify a valid port number.");
                             }
+                        } else if (outputArg.startsWith("binary-file:")) {
+                            String baseDirectory = outputArg.substring(12);
+                            Path outputPath = Paths.get(baseDirectory);
+                            if (!Files.exists(outputPath)) {
+                                Files.createDirectories(outputPath);
+                            }
+                            outputStrategy = new BinaryFileOutputStrategy(baseDirectory);
+                        } else if (outputArg.startsWith("binary-websocket:")) {
+                            try {
+                                int port = Integer.parseInt(outputArg.substring(17));
+                                outputStrategy = new BinaryWebSocketOutputStrategy(port);
+                                System.out.println("Binary WebSocket output will be on port: " + port);
+                            } catch (NumberFormatException e) {
+                                System.err.println(
+                                        "Invalid port for WebSocket output. Please specify a valid port number.");
+                            }
+                        } else if (outputArg.startsWith("binary-tcp:")) {
+                            try {
+                                int port = Integer.parseInt(outputArg.substring(11));
+                                outputStrategy = new BinaryTcpOutputStrategy(port);
+                                System.out.println("Binary TCP socket output will be on port: " + port);
+                            } catch (NumberFormatException e) {
+                                System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+                            }
                         } else {
                             System.err.println("Unknown output type. Using default (console).");
                         }
@@ -115,7 +142,10 @@ public class HealthDataSimulator {
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'tcp:<port>' for TCP socket output,");
+        System.out.println("                             'binary-file:<directory>', 'binary-websocket:<port>' and");
+        System.out.println("                             'binary-tcp:<port>' for the same outputs in the compact");
+        System.out.println("                             binary record format.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
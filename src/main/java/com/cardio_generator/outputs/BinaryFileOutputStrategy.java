@@ -0,0 +1,104 @@
+package com.cardio_generator.outputs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes readings to one {@code <label>.bin} file per record type in the
+ * format of {@link BinaryRecordEncoder}. Each file is opened once and kept
+ * open, and every reading is a single fixed-width write.
+ * A file that already exists is appended to with a new stream header.
+ */
+public class BinaryFileOutputStrategy implements OutputStrategy, Closeable {
+
+    private final String baseDirectory;
+    private final ConcurrentHashMap<String, LabelFile> files = new ConcurrentHashMap<>();
+
+    public BinaryFileOutputStrategy(String baseDirectory) {
+        this.baseDirectory = baseDirectory;
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        double value;
+        try {
+            value = BinaryRecordEncoder.valueOf(label, data);
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot encode value '" + data + "' of " + label);
+            return;
+        }
+        output(patientId, timestamp, label, value);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        LabelFile file;
+        try {
+            file = files.computeIfAbsent(label, this::open);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        synchronized (file) {
+            try {
+                file.write(file.encoder.encode(patientId, timestamp, label, value));
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + file.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes all files.
+     */
+    @Override
+    public void close() {
+        for (LabelFile file : files.values()) {
+            synchronized (file) {
+                try {
+                    file.channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file " + file.name + ": " + e.getMessage());
+                }
+            }
+        }
+        files.clear();
+    }
+
+    private LabelFile open(String label) {
+        String name = Paths.get(baseDirectory, label + ".bin").toString();
+        try {
+            Files.createDirectories(Paths.get(baseDirectory));
+            FileChannel channel = FileChannel.open(Paths.get(name), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            LabelFile file = new LabelFile(name, channel);
+            file.write(file.encoder.header());
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException("Error opening file " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static class LabelFile {
+        final String name;
+        final FileChannel channel;
+        final BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+
+        LabelFile(String name, FileChannel channel) {
+            this.name = name;
+            this.channel = channel;
+        }
+
+        void write(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
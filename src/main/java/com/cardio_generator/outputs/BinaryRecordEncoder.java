@@ -0,0 +1,124 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes readings in the binary record format, a compact alternative to the
+ * text lines of the other output strategies.
+ *
+ * <p>A stream starts with an 8 byte header: the magic bytes
+ * {@code 0x89 'V' 'I' 'T'}, the format version as an unsigned short and an
+ * unsigned short of reserved flags. It is followed by records, each starting
+ * with a tag byte:
+ * <ul>
+ *   <li>{@code 1}, a label definition: the label code as an unsigned short,
+ *       the length of the label as an unsigned byte and the UTF-8 label</li>
+ *   <li>{@code 2}, a reading of {@value #READING_BYTES} bytes: the patient ID
+ *       as an int, the timestamp as a long, the label code as an unsigned short
+ *       and the value as an IEEE 754 double</li>
+ * </ul>
+ * All numbers are big-endian. Labels are interned into codes in the order they
+ * are first used, and each label is defined once before its first reading. A
+ * header may appear again later in a stream, e.g. where two streams were
+ * concatenated; it discards all earlier label definitions.
+ *
+ * <p>Not thread-safe; the returned buffers are reused by the next call.
+ */
+public final class BinaryRecordEncoder {
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    public static final int READING_BYTES = 23;
+    static final byte[] MAGIC = {(byte) 0x89, 'V', 'I', 'T'};
+    static final byte LABEL_TAG = 1;
+    static final byte READING_TAG = 2;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<byte[]> labels = new ArrayList<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    /**
+     * Returns the stream header followed by the definitions of all labels used
+     * so far, to start a new stream, e.g. for a client that just connected.
+     *
+     * @return a buffer positioned at the encoded bytes
+     */
+    public ByteBuffer header() {
+        buffer.clear();
+        ensureRemaining(HEADER_BYTES);
+        buffer.put(MAGIC).putShort((short) VERSION).putShort((short) 0);
+        for (int code = 0; code < labels.size(); code++) {
+            putDefinition(code, labels.get(code));
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Encodes one reading, preceded by the definition of its label if the label
+     * has not been used before.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the reading, in milliseconds since epoch
+     * @param label     the record type label
+     * @param value     the measured value
+     * @return a buffer positioned at the encoded bytes
+     */
+    public ByteBuffer encode(int patientId, long timestamp, String label, double value) {
+        buffer.clear();
+        Integer code = codes.get(label);
+        if (code == null) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 255 || labels.size() > 0xFFFF) {
+                throw new IllegalArgumentException("Cannot encode label: " + label);
+            }
+            code = labels.size();
+            labels.add(bytes);
+            codes.put(label, code);
+            putDefinition(code, bytes);
+        }
+        ensureRemaining(READING_BYTES);
+        buffer.put(READING_TAG).putInt(patientId).putLong(timestamp).putShort(code.shortValue()).putDouble(value);
+        return buffer.flip();
+    }
+
+    /**
+     * Converts the text value of a reading, as passed to
+     * {@link OutputStrategy#output(int, long, String, String)}, to a number:
+     * saturation values may carry a {@code %} suffix, and alerts are
+     * {@code triggered} (1) or {@code resolved} (0).
+     *
+     * @param label the record type label
+     * @param data  the text value
+     * @return the numeric value
+     * @throws NumberFormatException if the value is not a number
+     */
+    public static double valueOf(String label, String data) {
+        if (data.equalsIgnoreCase("triggered")) {
+            return 1.0;
+        }
+        if (data.equalsIgnoreCase("resolved")) {
+            return 0.0;
+        }
+        if (data.endsWith("%")) {
+            data = data.substring(0, data.length() - 1);
+        }
+        return Double.parseDouble(data);
+    }
+
+    private void putDefinition(int code, byte[] label) {
+        ensureRemaining(4 + label.length);
+        buffer.put(LABEL_TAG).putShort((short) code).put((byte) label.length).put(label);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            buffer = grown.put(buffer);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves readings to a single TCP client in the format of
+ * {@link BinaryRecordEncoder}. The client first receives the stream header and
+ * the labels defined so far, then one fixed-width record per reading.
+ */
+public class BinaryTcpOutputStrategy implements OutputStrategy {
+
+    private final BinaryRecordEncoder encoder = new BinaryRecordEncoder(); // guarded by this
+    private ServerSocket serverSocket;
+    private OutputStream out; // guarded by this
+
+    public BinaryTcpOutputStrategy(int port) {
+        try {
+            serverSocket = new ServerSocket(port);
+            System.out.println("Binary TCP Server started on port " + port);
+
+            // Accept clients in a new thread to not block the main thread
+            Executors.newSingleThreadExecutor().submit(() -> {
+                try {
+                    Socket clientSocket = serverSocket.accept();
+                    clientSocket.setTcpNoDelay(true);
+                    synchronized (this) {
+                        out = clientSocket.getOutputStream();
+                        write(encoder.header());
+                    }
+                    System.out.println("Client connected: " + clientSocket.getInetAddress());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        double value;
+        try {
+            value = BinaryRecordEncoder.valueOf(label, data);
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot encode value '" + data + "' of " + label);
+            return;
+        }
+        output(patientId, timestamp, label, value);
+    }
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, String label, double value) {
+        // encode even without a client, so the label is defined in the header a client receives
+        ByteBuffer bytes = encoder.encode(patientId, timestamp, label, value);
+        if (out == null) {
+            return;
+        }
+        try {
+            write(bytes);
+        } catch (IOException e) {
+            System.err.println("Error sending reading: " + e.getMessage());
+            out = null;
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+}
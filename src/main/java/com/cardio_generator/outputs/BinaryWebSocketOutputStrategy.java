@@ -0,0 +1,87 @@
+package com.cardio_generator.outputs;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Broadcasts readings as binary WebSocket frames in the format of
+ * {@link BinaryRecordEncoder}. A client that connects first receives a frame
+ * with the stream header and the labels defined so far; after that every
+ * frame holds one reading, preceded by the definition of its label the first
+ * time the label is used.
+ */
+public class BinaryWebSocketOutputStrategy implements OutputStrategy {
+
+    private final BinaryRecordEncoder encoder = new BinaryRecordEncoder(); // guarded by this
+    private WebSocketServer server;
+
+    public BinaryWebSocketOutputStrategy(int port) {
+        server = new BinaryWebSocketServer(new InetSocketAddress(port));
+        System.out.println("Binary WebSocket server created on port: " + port + ", listening for connections...");
+        server.start();
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        double value;
+        try {
+            value = BinaryRecordEncoder.valueOf(label, data);
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot encode value '" + data + "' of " + label);
+            return;
+        }
+        output(patientId, timestamp, label, value);
+    }
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, String label, double value) {
+        ByteBuffer frame = encoder.encode(patientId, timestamp, label, value);
+        // Broadcast the frame to all clients that have received the header
+        for (WebSocket conn : server.getConnections()) {
+            if (conn.getAttachment() != null) {
+                conn.send(frame.duplicate());
+            }
+        }
+    }
+
+    private synchronized void sendHeader(WebSocket conn) {
+        conn.send(encoder.header());
+        conn.setAttachment(Boolean.TRUE);
+    }
+
+    private class BinaryWebSocketServer extends WebSocketServer {
+
+        BinaryWebSocketServer(InetSocketAddress address) {
+            super(address);
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
+            System.out.println("New connection: " + conn.getRemoteSocketAddress());
+            sendHeader(conn);
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            // Not used in this context
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            ex.printStackTrace();
+        }
+
+        @Override
+        public void onStart() {
+            System.out.println("Server started successfully");
+        }
+    }
+}
@@ -2,4 +2,17 @@ package com.cardio_generator.outputs;
 
 public interface OutputStrategy {
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * Outputs a numeric reading. Text strategies format the value as
+     * {@link Double#toString(double)} does, binary strategies write it as is.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the reading, in milliseconds since epoch
+     * @param label     the record type label
+     * @param value     the measured value
+     */
+    default void output(int patientId, long timestamp, String label, double value) {
+        output(patientId, timestamp, label, Double.toString(value));
+    }
 }
@@ -0,0 +1,22 @@
+package com.data_management;
+
+/**
+ * The functions that {@link DataStorage#aggregate} can compute over the
+ * readings of a time bucket.
+ * Every function except {@link #COUNT} and {@link #SUM} yields {@code NaN} for
+ * a bucket without readings.
+ */
+public enum AggregateFunction {
+    /** The number of readings. */
+    COUNT,
+    /** The sum of the readings. */
+    SUM,
+    /** The smallest reading. */
+    MIN,
+    /** The largest reading. */
+    MAX,
+    /** The arithmetic mean of the readings. */
+    MEAN,
+    /** The population standard deviation of the readings. */
+    STDDEV
+}
@@ -0,0 +1,73 @@
+package com.data_management;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the {@code .bin} files written by {@code BinaryFileOutputStrategy} and
+ * stores their readings.
+ * Readings are decoded from fixed-width binary records instead of being parsed
+ * from text, which makes reading several times cheaper per reading than
+ * {@link FileDataReader}.
+ */
+public class BinaryFileDataReader implements DataReader {
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+
+    private final String outputDirectory;
+
+    /**
+     * Constructs a reader for the binary files in a directory.
+     *
+     * @param outputDirectory path to the directory containing output files
+     */
+    public BinaryFileDataReader(String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Reads every {@code .bin} file in the directory and populates the given
+     * DataStorage.
+     *
+     * @param dataStorage the DataStorage to populate
+     * @throws IOException if a file cannot be read or is not a valid binary
+     *                     record stream
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        File dir = new File(outputDirectory);
+        if (!dir.exists() || !dir.isDirectory()) {
+            throw new IOException("Invalid output directory: " + outputDirectory);
+        }
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null || files.length == 0) {
+            System.out.println("No .bin files found in directory: " + outputDirectory);
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        RecordBatch batch = new RecordBatch();
+        for (File file : files) {
+            BinaryRecordDecoder decoder = new BinaryRecordDecoder();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) > 0) {
+                    int decoded = decoder.decode(buffer, 0, buffer.position(), batch);
+                    dataStorage.addBatch(batch);
+                    batch.clear();
+                    // keep the incomplete trailing record for the next read
+                    buffer.flip().position(decoded);
+                    buffer.compact();
+                }
+                if (buffer.position() > 0) {
+                    System.err.println("Skipping truncated record at the end of " + file);
+                }
+            } catch (IOException e) {
+                throw new IOException("Error reading " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
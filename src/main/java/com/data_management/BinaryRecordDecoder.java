@@ -0,0 +1,123 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes the binary record format written by the simulator's binary output
+ * strategies, see {@code BinaryRecordEncoder} for the layout.
+ * Records are read with absolute gets straight from the buffer, and the label
+ * codes of the stream are mapped to {@link RecordTypeRegistry} codes once per
+ * definition, so decoding a reading is a few fixed-offset loads.
+ * The decoder keeps the label definitions of the stream it is reading, so one
+ * instance must be used per stream. Not thread-safe.
+ */
+final class BinaryRecordDecoder {
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int READING_BYTES = 23;
+    private static final byte HEADER_TAG = (byte) 0x89;
+    private static final byte LABEL_TAG = 1;
+    private static final byte READING_TAG = 2;
+    // the code of a label the registry rejected, whose readings are skipped
+    private static final int REJECTED = -2;
+
+    private int[] recordTypeCodes = new int[16];
+    private boolean headerRead;
+
+    /**
+     * Returns whether the bytes at a position start a binary stream rather
+     * than text, which never contains the first byte of the header.
+     *
+     * @param buffer   the buffer holding the stream
+     * @param position the position of the first byte of the stream
+     * @return {@code true} if the stream is binary
+     */
+    static boolean isBinary(ByteBuffer buffer, int position) {
+        return buffer.get(position) == HEADER_TAG;
+    }
+
+    /**
+     * Decodes the complete records in {@code [from, to)} and passes each
+     * reading to the sink.
+     *
+     * @param buffer the buffer holding the records
+     * @param from   the position of the first byte to decode
+     * @param to     the position one past the last byte to decode
+     * @param sink   receives the decoded readings
+     * @return the position after the last complete record, i.e. the start of
+     *         an incomplete trailing record or {@code to}
+     * @throws IOException if the bytes are not a valid stream of a supported
+     *                     version
+     */
+    int decode(ByteBuffer buffer, int from, int to, RecordSink sink) throws IOException {
+        int position = from;
+        while (position < to) {
+            byte tag = buffer.get(position);
+            if (tag == READING_TAG && headerRead) {
+                if (to - position < READING_BYTES) {
+                    break;
+                }
+                int wireCode = Short.toUnsignedInt(buffer.getShort(position + 13));
+                int code = wireCode < recordTypeCodes.length ? recordTypeCodes[wireCode] : -1;
+                if (code == REJECTED) {
+                    position += READING_BYTES;
+                    continue;
+                }
+                if (code < 0) {
+                    throw new IOException("Reading with undefined label code " + wireCode + " at " + position);
+                }
+                sink.add(buffer.getInt(position + 1), buffer.getDouble(position + 15), code,
+                        buffer.getLong(position + 5));
+                position += READING_BYTES;
+            } else if (tag == LABEL_TAG && headerRead) {
+                if (to - position < 4 || to - position < 4 + Byte.toUnsignedInt(buffer.get(position + 3))) {
+                    break;
+                }
+                int length = Byte.toUnsignedInt(buffer.get(position + 3));
+                define(Short.toUnsignedInt(buffer.getShort(position + 1)), buffer, position + 4, length);
+                position += 4 + length;
+            } else if (tag == HEADER_TAG) {
+                if (to - position < HEADER_BYTES) {
+                    break;
+                }
+                if (buffer.get(position + 1) != 'V' || buffer.get(position + 2) != 'I'
+                        || buffer.get(position + 3) != 'T') {
+                    throw new IOException("Not a binary record stream");
+                }
+                int version = Short.toUnsignedInt(buffer.getShort(position + 4));
+                if (version != VERSION) {
+                    throw new IOException("Unsupported binary record version " + version);
+                }
+                Arrays.fill(recordTypeCodes, -1); // a new stream defines its labels again
+                headerRead = true;
+                position += HEADER_BYTES;
+            } else {
+                throw new IOException(headerRead ? "Corrupt binary record at " + position
+                        : "Not a binary record stream");
+            }
+        }
+        return position;
+    }
+
+    private void define(int wireCode, ByteBuffer buffer, int from, int length) {
+        if (wireCode >= recordTypeCodes.length) {
+            int previous = recordTypeCodes.length;
+            recordTypeCodes = Arrays.copyOf(recordTypeCodes, Math.max(wireCode + 1, previous * 2));
+            Arrays.fill(recordTypeCodes, previous, recordTypeCodes.length, -1);
+        }
+        byte[] label = new byte[length];
+        for (int i = 0; i < length; i++) {
+            label[i] = buffer.get(from + i);
+        }
+        String text = new String(label, StandardCharsets.UTF_8);
+        try {
+            recordTypeCodes[wireCode] = RecordTypeRegistry.codeOf(text);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Skipping readings of label " + text + ": " + e.getMessage());
+            recordTypeCodes[wireCode] = REJECTED;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.data_management;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Precomputed {@link Summary summaries} of aligned blocks of readings in an
+ * array-like column, used to aggregate long ranges without visiting every
+ * reading.
+ * Level 0 summarizes blocks of {@value #FANOUT} readings and every further
+ * level summarizes {@value #FANOUT} blocks of the level below, so a range is
+ * folded from at most a few blocks per level plus the readings at its edges.
+ *
+ * <p>A block is summarized once, when its last reading has been written, and
+ * never changes afterwards. Readers that only fold ranges of readings they
+ * already see therefore never observe a partially written summary.
+ */
+final class BlockSummaries {
+    static final int FANOUT = 64;
+
+    private final double[][] sums;
+    private final double[][] m2s;
+    private final double[][] mins;
+    private final double[][] maxs;
+
+    /**
+     * Allocates the summaries for a column of the given capacity.
+     *
+     * @param capacity the number of readings the column can hold
+     */
+    BlockSummaries(int capacity) {
+        int levels = 0;
+        for (long blockSize = FANOUT; blockSize <= capacity; blockSize *= FANOUT) {
+            levels++;
+        }
+        sums = new double[levels][];
+        m2s = new double[levels][];
+        mins = new double[levels][];
+        maxs = new double[levels][];
+        long blockSize = FANOUT;
+        for (int level = 0; level < levels; level++, blockSize *= FANOUT) {
+            int blocks = (int) (capacity / blockSize);
+            sums[level] = new double[blocks];
+            m2s[level] = new double[blocks];
+            mins[level] = new double[blocks];
+            maxs[level] = new double[blocks];
+        }
+    }
+
+    /**
+     * Summarizes every block that ends with the reading at the given position.
+     * Must be called once for each position, in ascending order, after the
+     * reading has been written.
+     */
+    void completed(int position, IntToDoubleFunction values) {
+        Summary block = null;
+        long blockSize = FANOUT;
+        for (int level = 0; level < sums.length && (position + 1) % blockSize == 0; level++, blockSize *= FANOUT) {
+            if (block == null) {
+                block = new Summary();
+            } else {
+                block.reset();
+            }
+            int index = (int) ((position + 1) / blockSize) - 1;
+            if (level == 0) {
+                for (int i = position + 1 - FANOUT; i <= position; i++) {
+                    block.add(values.applyAsDouble(i));
+                }
+            } else {
+                for (int child = index * FANOUT; child < (index + 1) * FANOUT; child++) {
+                    block.add(blockSize / FANOUT, sums[level - 1][child], m2s[level - 1][child], mins[level - 1][child],
+                            maxs[level - 1][child]);
+                }
+            }
+            sums[level][index] = block.sum();
+            m2s[level][index] = block.m2();
+            mins[level][index] = block.min();
+            maxs[level][index] = block.max();
+        }
+    }
+
+    /**
+     * Summarizes every complete block of the first {@code size} readings.
+     */
+    void completedUpTo(int size, IntToDoubleFunction values) {
+        for (int position = FANOUT - 1; position < size; position += FANOUT) {
+            completed(position, values);
+        }
+    }
+
+    /**
+     * Adds the readings at positions {@code [from, to)} to the summary, using
+     * block summaries wherever a whole block lies within the range.
+     */
+    void fold(int from, int to, IntToDoubleFunction values, Summary summary) {
+        int position = from;
+        while (position < to) {
+            int level = sums.length - 1;
+            long blockSize = blockSize(level);
+            while (level >= 0 && (position % blockSize != 0 || position + blockSize > to)) {
+                level--;
+                blockSize /= FANOUT;
+            }
+            if (level < 0) {
+                summary.add(values.applyAsDouble(position++));
+            } else {
+                int index = (int) (position / blockSize);
+                summary.add(blockSize, sums[level][index], m2s[level][index], mins[level][index],
+                        maxs[level][index]);
+                position += (int) blockSize;
+            }
+        }
+    }
+
+    private static long blockSize(int level) {
+        long blockSize = FANOUT;
+        for (int i = 0; i < level; i++) {
+            blockSize *= FANOUT;
+        }
+        return blockSize;
+    }
+}
@@ -0,0 +1,236 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Segment} that stores a sealed block of readings in the Gorilla
+ * time series encoding.
+ * Timestamps are stored as delta-of-deltas, so a regular sampling interval
+ * costs a single bit per reading. Values are XOR-ed with their predecessor and
+ * only the meaningful bits of the result are stored, so slowly changing signals
+ * such as saturation or blood pressure take a few bits per reading instead of
+ * sixteen bytes. Readings are decoded as a stream, range queries stop as soon
+ * as they pass the end of the range.
+ */
+class CompressedSegment implements Segment {
+    private final long[] words;
+    private final int size;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final Summary summary;
+
+    private CompressedSegment(long[] words, int size, long firstTimestamp, long lastTimestamp, Summary summary) {
+        this.words = words;
+        this.size = size;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.summary = summary;
+    }
+
+    /**
+     * Encodes a time-ordered run of readings.
+     *
+     * @param timestamps the timestamp column
+     * @param values     the value column
+     * @param from       the index of the first reading to encode
+     * @param count      the number of readings to encode, at least one
+     * @return the compressed segment
+     */
+    static CompressedSegment encode(long[] timestamps, double[] values, int from, int count) {
+        BitWriter out = new BitWriter(count);
+        Summary summary = new Summary();
+        summary.add(values[from]);
+        long previousTimestamp = timestamps[from];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[from]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        out.write(previousTimestamp, 64);
+        out.write(previousBits, 64);
+        for (int i = from + 1; i < from + count; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            summary.add(values[i]);
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            if (xor == 0) {
+                out.write(0, 1);
+            } else {
+                int leading = Long.numberOfLeadingZeros(xor);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    // the meaningful bits fit into the previous window
+                    out.write(0b10, 2);
+                    out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int meaningful = 64 - leading - trailing;
+                    out.write(0b11, 2);
+                    out.write(leading, 6);
+                    out.write(meaningful - 1, 6);
+                    out.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousBits = bits;
+        }
+        return new CompressedSegment(out.toArray(), count, timestamps[from], timestamps[from + count - 1], summary);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    @Override
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public void forEach(long startTime, long endTime, ReadingConsumer consumer) {
+        if (startTime > lastTimestamp || endTime < firstTimestamp) {
+            return;
+        }
+        BitReader in = new BitReader(words);
+        long timestamp = in.read(64);
+        long bits = in.read(64);
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; ; ) {
+            if (timestamp > endTime) {
+                return;
+            }
+            if (timestamp >= startTime) {
+                consumer.accept(timestamp, Double.longBitsToDouble(bits));
+            }
+            if (++i == size) {
+                return;
+            }
+
+            long deltaOfDelta;
+            if (in.read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (in.read(1) == 0) {
+                deltaOfDelta = in.read(7) - 63;
+            } else if (in.read(1) == 0) {
+                deltaOfDelta = in.read(9) - 255;
+            } else if (in.read(1) == 0) {
+                deltaOfDelta = in.read(12) - 2047;
+            } else {
+                deltaOfDelta = in.read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (in.read(1) == 1) {
+                if (in.read(1) == 1) {
+                    leading = (int) in.read(6);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+        }
+    }
+
+    @Override
+    public void summarize(long startTime, long endTime, Summary summary) {
+        if (startTime <= firstTimestamp && endTime >= lastTimestamp) {
+            summary.add(this.summary); // the whole block is covered, no need to decode it
+        } else {
+            Segment.super.summarize(startTime, endTime, summary);
+        }
+    }
+
+    /**
+     * Appends bit fields of up to 64 bits to a growing array of words, most
+     * significant bit first.
+     */
+    private static final class BitWriter {
+        private long[] words;
+        private long position;
+
+        BitWriter(int readings) {
+            words = new long[Math.max(4, readings / 4)];
+        }
+
+        void write(long value, int bits) {
+            int index = (int) (position >>> 6);
+            int used = (int) (position & 63);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int free = 64 - used;
+            if (bits <= free) {
+                words[index] |= value << (free - bits);
+            } else {
+                words[index] |= value >>> (bits - free);
+                words[index + 1] |= value << (64 - (bits - free));
+            }
+            position += bits;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+        }
+    }
+
+    /**
+     * Reads bit fields written by {@link BitWriter}.
+     */
+    private static final class BitReader {
+        private final long[] words;
+        private long position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        long read(int bits) {
+            int index = (int) (position >>> 6);
+            int used = (int) (position & 63);
+            int available = 64 - used;
+            long value;
+            if (bits <= available) {
+                value = words[index] << used >>> (64 - bits);
+            } else {
+                long high = words[index] << used >>> used;
+                value = (high << (bits - available)) | (words[index + 1] >>> (64 - (bits - available)));
+            }
+            position += bits;
+            return value;
+        }
+    }
+}
@@ -2,10 +2,11 @@ package com.data_management;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import com.alerts.AlertGenerator;
+import com.alerts.MonitoringService;
 import com.data_management.DataReader;
 import com.data_management.FileDataReader;
 
@@ -14,16 +15,23 @@ import com.data_management.FileDataReader;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * It is safe for concurrent use: several readers (file, TCP, WebSocket) may
+ * ingest while alert evaluation reads. Appends for different patients and
+ * record types run in parallel, and range reads see a consistent snapshot
+ * without blocking writers.
  */
 public class DataStorage {
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private ConcurrentHashMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private volatile RetentionPolicy[] retentionPolicies = new RetentionPolicy[0]; // Indexed by record type code, null keeps all.
+    private volatile DataStorageListener[] listeners = new DataStorageListener[0];
+    private volatile WriteAheadLog writeAheadLog; // logs each reading before it is applied, null if none
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.patientMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -40,12 +48,181 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type has already been interned.
+     * Readers that resolve the label once per source should prefer this method
+     * over the {@code String} variant.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeCode   the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws IllegalStateException if the {@link WriteAheadLog} cannot log the
+     *                               reading, which is then not stored
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        WriteAheadLog log = writeAheadLog;
+        if (log != null) {
+            log.log(patientId, recordTypeCode, timestamp, measurementValue); // throws if it must not be applied
+        }
+        getOrCreatePatient(patientId).addRecord(measurementValue, recordTypeCode, timestamp);
+        for (DataStorageListener listener : listeners) {
+            listener.onRecordAdded(patientId, recordTypeCode, timestamp, measurementValue);
+        }
+    }
+
+    /**
+     * Adds a batch of readings, e.g. everything a reader parsed from one chunk
+     * of input.
+     * The readings are grouped by patient and then by record type, so each
+     * patient is looked up once and each run of readings of one series is
+     * appended in a single step. The readings of a series keep their order
+     * within the batch. A {@link WriteAheadLog} logs the whole batch before any
+     * of it is appended and waits for the disk once per batch rather than once
+     * per reading. Once all readings have been appended, each listener is
+     * notified of the whole batch in one call. The batch itself is not changed
+     * and can be cleared and reused afterwards.
+     *
+     * @param batch the readings to add
+     * @throws IllegalStateException if the {@link WriteAheadLog} cannot log the
+     *                               batch, which is then not stored
+     */
+    public void addBatch(RecordBatch batch) {
+        WriteAheadLog log = writeAheadLog;
+        if (log != null) {
+            log.log(batch); // throws if it must not be applied
+        }
+        int size = batch.sortByPatient();
+        int from = 0;
+        while (from < size) {
+            int patientId = batch.patientIdAt(from);
+            int to = from + 1;
+            while (to < size && batch.patientIdAt(to) == patientId) {
+                to++;
+            }
+            Patient patient = getOrCreatePatient(patientId);
+            for (int remaining = to; remaining > from; ) {
+                remaining = batch.takeRun(from, remaining);
+                int recordTypeCode = batch.runRecordTypeCode;
+                patient.addRecords(recordTypeCode, batch.runTimestamps, batch.runValues, batch.runLength);
+            }
+            from = to;
+        }
+        for (DataStorageListener listener : listeners) {
+            listener.onBatchAdded(batch);
+        }
+    }
+
+    /**
+     * Sets the write-ahead log that every reading passes through before it is
+     * stored.
+     *
+     * @param writeAheadLog the log, or {@code null} to stop logging
+     * @throws IllegalStateException if another log is already set
+     */
+    synchronized void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        if (writeAheadLog != null && this.writeAheadLog != null && this.writeAheadLog != writeAheadLog) {
+            throw new IllegalStateException("The data storage already has a write-ahead log");
+        }
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Registers a listener that is notified of every reading added from now on.
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addListener(DataStorageListener listener) {
+        DataStorageListener[] current = listeners;
+        DataStorageListener[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener the listener to remove
+     */
+    public synchronized void removeListener(DataStorageListener listener) {
+        List<DataStorageListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        remaining.remove(listener);
+        listeners = remaining.toArray(new DataStorageListener[0]);
+    }
+
+    /**
+     * Attaches an immutable block of older readings, e.g. a mapped segment file,
+     * to a patient's series without notifying listeners.
+     */
+    void addHistory(int patientId, int recordTypeCode, Segment segment) {
+        getOrCreatePatient(patientId).getOrCreateSeries(recordTypeCode).addHistory(segment);
+    }
+
+    /**
+     * Returns the patient with the given ID.
+     *
+     * @return the patient, or {@code null} if there is none
+     */
+    Patient getPatient(int patientId) {
+        return patientMap.get(patientId);
+    }
+
+    /**
+     * Returns the patient with the given ID, creating it if it does not exist.
+     */
+    Patient getOrCreatePatient(int patientId) {
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            Patient created = new Patient(patientId, this::getRetentionPolicy);
+            patient = patientMap.putIfAbsent(patientId, created);
+            if (patient == null) {
+                patient = created;
+            }
+        }
+        return patient;
+    }
+
+    /**
+     * Sets how long readings of a record type are kept and at which resolution.
+     * The policy applies to the series of existing patients as well as to
+     * patients added later. By default every reading is kept forever.
+     *
+     * @param recordType      the type of record, e.g., "ECG"
+     * @param retentionPolicy the policy to apply to that record type
+     */
+    public void setRetentionPolicy(String recordType, RetentionPolicy retentionPolicy) {
+        int recordTypeCode = RecordTypeRegistry.codeOf(recordType);
+        synchronized (this) {
+            RetentionPolicy[] policies = Arrays.copyOf(retentionPolicies,
+                    Math.max(retentionPolicies.length, recordTypeCode + 1));
+            policies[recordTypeCode] = retentionPolicy;
+            retentionPolicies = policies;
+        }
+        for (Patient patient : patientMap.values()) {
+            TimeSeries series = patient.getSeries(recordTypeCode);
+            if (series != null) {
+                series.setRetentionPolicy(retentionPolicy);
+            }
+        }
+    }
+
+    /**
+     * Returns the retention policy of a record type.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @return the retention policy, {@link RetentionPolicy#KEEP_ALL} unless
+     *         another one was set
+     */
+    public RetentionPolicy getRetentionPolicy(int recordTypeCode) {
+        RetentionPolicy[] policies = retentionPolicies;
+        if (recordTypeCode < policies.length && policies[recordTypeCode] != null) {
+            return policies[recordTypeCode];
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        return RetentionPolicy.KEEP_ALL;
     }
 
     /**
@@ -59,7 +236,8 @@ public class DataStorage {
      * @param endTime   the end of the time range, in milliseconds since the Unix
      *                  epoch
      * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     *         range; periods compacted by a {@link RetentionPolicy} are returned
+     *         as {@link RollupRecord}s
      */
     public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
         Patient patient = patientMap.get(patientId);
@@ -69,6 +247,62 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Positions a cursor on the records of one patient and record type within a
+     * time range. Unlike {@link #getRecords}, this neither copies the readings
+     * nor allocates a record per reading, and the cursor can be reused for the
+     * next range.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range (inclusive), in milliseconds
+     *                   since the Unix epoch
+     * @param endTime    the end of the time range (inclusive), in milliseconds
+     *                   since the Unix epoch
+     * @param cursor     the cursor to position, its previous range is discarded
+     * @return the cursor, empty if the patient or record type is unknown
+     */
+    public RecordCursor cursor(int patientId, String recordType, long startTime, long endTime,
+                               RecordCursor cursor) {
+        int recordTypeCode = RecordTypeRegistry.lookup(recordType);
+        Patient patient = patientMap.get(patientId);
+        if (patient == null || recordTypeCode < 0) {
+            cursor.clear();
+            return cursor;
+        }
+        return patient.cursor(recordTypeCode, startTime, endTime, cursor);
+    }
+
+    /**
+     * Aggregates the records of one patient and record type within a time range
+     * in fixed-width buckets, without materializing the records.
+     * Bucket {@code i} starts at {@code startTime + i * bucketSize} and the last
+     * bucket ends at {@code endTime}. Long ranges are answered from precomputed
+     * block summaries, so the cost grows with the number of buckets rather than
+     * with the number of readings.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range (inclusive), in milliseconds
+     *                   since the Unix epoch
+     * @param endTime    the end of the time range (inclusive), in milliseconds
+     *                   since the Unix epoch
+     * @param bucketSize the width of a bucket, in milliseconds
+     * @param function   the function to compute for each bucket
+     * @return the result of each bucket, oldest first; empty buckets yield
+     *         {@code 0} for {@link AggregateFunction#COUNT} and
+     *         {@link AggregateFunction#SUM} and {@code NaN} otherwise
+     */
+    public double[] aggregate(int patientId, String recordType, long startTime, long endTime, long bucketSize,
+                              AggregateFunction function) {
+        int recordTypeCode = RecordTypeRegistry.lookup(recordType);
+        Patient patient = patientMap.get(patientId);
+        if (patient == null || recordTypeCode < 0) {
+            return TimeSeries.emptyAggregate(startTime, endTime, bucketSize, function);
+        }
+        return patient.aggregate(recordTypeCode, startTime, endTime, bucketSize, function);
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
@@ -89,12 +323,13 @@ public class DataStorage {
         // define or retrieve the output directory path
         String outputDir = "path/to/output";
 
-        // initialize data storage
+        // initialize data storage, deriving heart rate and mean arterial pressure while reading
         DataStorage storage = new DataStorage();
+        new DerivedSignalStage(storage).registerDefaults().start();
 
         // initialize and use the data reader
         try {
-            DataReader reader = new FileDataReader(outputDir);
+            DataReader reader = new FileDataReader(outputDir, Runtime.getRuntime().availableProcessors());
             reader.readData(storage);
         } catch (IOException e) {
             System.err.println("Failed to read data from output directory: " + e.getMessage());
@@ -115,9 +350,14 @@ public class DataStorage {
         // initialize alert generator
         AlertGenerator alertGenerator = new AlertGenerator(storage);
 
-        // evaluate all patients data to check for alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
+        // re-evaluate all patients every second, spread over all cores, until the process is stopped
+        MonitoringService monitoringService = new MonitoringService(storage, alertGenerator, 1000);
+        Runtime.getRuntime().addShutdownHook(new Thread(monitoringService::close, "monitoring-shutdown"));
+        monitoringService.start();
+        try {
+            Thread.currentThread().join(); // the scheduler runs on a daemon thread
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
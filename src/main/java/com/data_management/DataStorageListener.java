@@ -0,0 +1,35 @@
+package com.data_management;
+
+/**
+ * Is notified of every reading added to a {@link DataStorage}, for example to
+ * persist it or to evaluate it as it arrives.
+ * Listeners are called on the ingesting thread after the reading has been
+ * stored, so they must be thread-safe and should return quickly.
+ */
+public interface DataStorageListener {
+    /**
+     * Called after a reading has been added to the storage.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp      the time of the reading, in milliseconds since epoch
+     * @param value          the measured value
+     */
+    void onRecordAdded(int patientId, int recordTypeCode, long timestamp, double value);
+
+    /**
+     * Called after a batch of readings has been added to the storage with
+     * {@link DataStorage#addBatch(RecordBatch)}. Listeners that can handle many
+     * readings at once cheaper than one by one, e.g. by writing a whole run of
+     * one series in one step, override this; by default each reading is passed to
+     * {@link #onRecordAdded} in batch order.
+     *
+     * @param batch the readings that were added, not to be modified
+     */
+    default void onBatchAdded(RecordBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            onRecordAdded(batch.getPatientId(i), batch.getRecordTypeCode(i), batch.getTimestamp(i),
+                    batch.getMeasurementValue(i));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.data_management;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses ASCII decimal numbers in place from a {@link ByteBuffer}, without
+ * creating strings.
+ * Doubles with up to {@value #MAX_DIGITS} significant digits, which covers
+ * everything {@link Double#toString(double)} produces and always fits the
+ * significand into a {@code long}, are converted with the
+ * Eisel-Lemire algorithm and are correctly rounded, i.e. they are identical to
+ * the result of {@link Double#parseDouble(String)}. Other spellings, such as
+ * {@code NaN} or numbers with more digits, fall back to
+ * {@link Double#parseDouble(String)}.
+ */
+final class DecimalParser {
+    private static final int MAX_DIGITS = 18;
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER = 308;
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    // the 128 most significant bits of 5^q, for q in [SMALLEST_POWER, LARGEST_POWER]
+    private static final long[] POWERS_OF_FIVE_HIGH = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+    private static final long[] POWERS_OF_FIVE_LOW = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+
+    static {
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+            BigInteger value;
+            if (q < 0) {
+                // a slight overestimate of 1 / 5^-q, scaled so that it fills 128 bits
+                BigInteger power = BigInteger.valueOf(5).pow(-q);
+                int bits = power.bitLength();
+                int shift = q >= -27 ? bits + 127 : 2 * bits + 128;
+                value = BigInteger.ONE.shiftLeft(shift).divide(power).add(BigInteger.ONE);
+            } else {
+                value = BigInteger.valueOf(5).pow(q);
+            }
+            // truncate or extend to exactly 128 bits
+            value = value.bitLength() > 128
+                    ? value.shiftRight(value.bitLength() - 128)
+                    : value.shiftLeft(128 - value.bitLength());
+            POWERS_OF_FIVE_HIGH[q - SMALLEST_POWER] = value.shiftRight(64).longValue();
+            POWERS_OF_FIVE_LOW[q - SMALLEST_POWER] = value.longValue();
+        }
+    }
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parses the decimal integer in {@code [from, to)}.
+     *
+     * @throws NumberFormatException if the bytes are not a valid long
+     */
+    static long parseLong(ByteBuffer buffer, int from, int to) {
+        int position = from;
+        boolean negative = false;
+        if (position < to && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position++) == '-';
+        }
+        if (position == to || to - position > 19) {
+            return Long.parseLong(text(buffer, from, to)); // reports the error, or handles 19 digit edge cases
+        }
+        long value = 0;
+        for (; position < to; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + text(buffer, from, to) + "\"");
+            }
+            value = value * 10 - digit; // accumulate negatively so Long.MIN_VALUE fits
+            if (value > 0) {
+                throw new NumberFormatException("For input string: \"" + text(buffer, from, to) + "\"");
+            }
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new NumberFormatException("For input string: \"" + text(buffer, from, to) + "\"");
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses the decimal integer in {@code [from, to)} as an int.
+     *
+     * @throws NumberFormatException if the bytes are not a valid int
+     */
+    static int parseInt(ByteBuffer buffer, int from, int to) {
+        long value = parseLong(buffer, from, to);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + text(buffer, from, to) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the decimal floating point number in {@code [from, to)}, with
+     * optional sign, fraction and exponent.
+     *
+     * @throws NumberFormatException if the bytes are not a valid double
+     */
+    static double parseDouble(ByteBuffer buffer, int from, int to) {
+        int position = from;
+        boolean negative = false;
+        if (position < to && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position++) == '-';
+        }
+        long significand = 0;
+        int digits = 0; // significant digits, leading zeros excluded
+        int exponent = 0;
+        boolean seenDigit = false;
+        for (; position < to; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            seenDigit = true;
+            if (digits > 0 || digit != 0) {
+                if (++digits > MAX_DIGITS) {
+                    return Double.parseDouble(text(buffer, from, to));
+                }
+                significand = significand * 10 + digit;
+            }
+        }
+        if (position < to && buffer.get(position) == '.') {
+            for (position++; position < to; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                seenDigit = true;
+                exponent--;
+                if (digits > 0 || digit != 0) {
+                    if (++digits > MAX_DIGITS) {
+                        return Double.parseDouble(text(buffer, from, to));
+                    }
+                    significand = significand * 10 + digit;
+                }
+            }
+        }
+        if (seenDigit && position < to && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < to && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negativeExponent = buffer.get(position++) == '-';
+            }
+            int start = position;
+            int explicit = 0;
+            for (; position < to; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                explicit = Math.min(explicit * 10 + digit, 100000);
+            }
+            if (position == start) {
+                return Double.parseDouble(text(buffer, from, to));
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (!seenDigit || position != to) {
+            return Double.parseDouble(text(buffer, from, to)); // NaN, Infinity, hex, or an error
+        }
+        if (significand == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        double value = toDouble(significand, exponent);
+        if (Double.isNaN(value)) {
+            return Double.parseDouble(text(buffer, from, to));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the double closest to {@code significand * 10^exponent}, or
+     * {@code NaN} if the fast algorithms cannot decide the rounding.
+     */
+    private static double toDouble(long significand, int exponent) {
+        if (exponent >= -22 && exponent <= 22 && significand <= (1L << 53)) {
+            // both operands are exact, so a single operation rounds correctly
+            double value = significand;
+            return exponent < 0 ? value / EXACT_POWERS_OF_TEN[-exponent] : value * EXACT_POWERS_OF_TEN[exponent];
+        }
+        if (exponent < SMALLEST_POWER) {
+            return 0.0;
+        }
+        if (exponent > LARGEST_POWER) {
+            return Double.POSITIVE_INFINITY;
+        }
+        long factor = POWERS_OF_FIVE_HIGH[exponent - SMALLEST_POWER];
+        long binaryExponent = (((152170L + 65536L) * exponent) >> 16) + 1024 + 63;
+        int leadingZeros = Long.numberOfLeadingZeros(significand);
+        long normalized = significand << leadingZeros;
+        long upper = multiplyHighUnsigned(normalized, factor);
+        long lower = normalized * factor;
+        if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + normalized, lower) < 0) {
+            // the truncated power may be too coarse, take its next 64 bits into account
+            long factorLow = POWERS_OF_FIVE_LOW[exponent - SMALLEST_POWER];
+            long productLow = normalized * factorLow;
+            long productMiddle2 = multiplyHighUnsigned(normalized, factorLow);
+            long productMiddle = lower + productMiddle2;
+            long productHigh = upper;
+            if (Long.compareUnsigned(productMiddle, lower) < 0) {
+                productHigh++;
+            }
+            if (productMiddle + 1 == 0 && (productHigh & 0x1FF) == 0x1FF
+                    && Long.compareUnsigned(productLow + normalized, productLow) < 0) {
+                return Double.NaN;
+            }
+            upper = productHigh;
+            lower = productMiddle;
+        }
+        long upperBit = upper >>> 63;
+        long mantissa = upper >>> (upperBit + 9);
+        leadingZeros += (int) (1 ^ upperBit);
+        if (lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            return Double.NaN; // exactly halfway, leave ties to the slow path
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (1L << 53)) {
+            mantissa = 1L << 52;
+            leadingZeros--;
+        }
+        mantissa &= ~(1L << 52);
+        long realExponent = binaryExponent - leadingZeros;
+        if (realExponent < 1 || realExponent > 2046) {
+            return Double.NaN; // subnormal or overflowing, leave it to the slow path
+        }
+        return Double.longBitsToDouble(mantissa | (realExponent << 52));
+    }
+
+    private static long multiplyHighUnsigned(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * Decodes {@code [from, to)} into a string, for error messages and the slow
+     * paths.
+     */
+    static String text(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.data_management;
+
+/**
+ * Computes a derived series of one patient, e.g. heart rate from ECG, from the
+ * readings the patient's other series receive.
+ * An instance holds the state of a single patient and is updated with each of
+ * the patient's readings it {@link #accepts(int)}, in arrival order, so it
+ * should do a constant amount of work per reading. Instances are created by
+ * the factory registered with {@link DerivedSignalStage#register} and are
+ * never called concurrently.
+ */
+public interface DerivedSignal {
+    /**
+     * Receives the derived values of a signal.
+     */
+    interface Output {
+        /**
+         * Stores a derived value.
+         *
+         * @param timestamp the time the value applies to, in milliseconds
+         *                  since epoch
+         * @param value     the derived value
+         */
+        void emit(long timestamp, double value);
+    }
+
+    /**
+     * Returns whether the signal is derived from readings of a record type.
+     * A signal must not accept the record type it is stored as.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @return {@code true} if readings of this type are passed to
+     *         {@link #update}
+     */
+    boolean accepts(int recordTypeCode);
+
+    /**
+     * Updates the signal with a reading and emits any derived value it
+     * completes.
+     *
+     * @param recordTypeCode the record type code of the reading
+     * @param timestamp      the time of the reading, in milliseconds since epoch
+     * @param value          the measured value
+     * @param output         receives the derived values
+     */
+    void update(int recordTypeCode, long timestamp, double value, Output output);
+}
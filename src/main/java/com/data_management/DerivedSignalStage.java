@@ -0,0 +1,160 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Derives new series from the readings added to a {@link DataStorage} as they
+ * arrive, and stores them in the same storage as regular series, e.g.
+ * "HeartRate" from ECG or "MeanArterialPressure" from blood pressure.
+ * Derived readings are added like any other reading, so every other listener,
+ * such as a {@code StreamingAlertEngine}, and every query sees them too.
+ * Each patient gets its own instance of every registered
+ * {@link DerivedSignal}, updated on the ingesting thread. The values a reading
+ * derives are stored once the patient's signals have been released, so
+ * listeners downstream of the stage never run under its locks.
+ */
+public class DerivedSignalStage implements DataStorageListener, Closeable {
+    private final DataStorage dataStorage;
+    private volatile Registration[] registrations = new Registration[0];
+    private final ConcurrentHashMap<Integer, PatientSignals> patients = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a stage that stores its derived series in the given storage.
+     * Call {@link #start()} to begin deriving.
+     *
+     * @param dataStorage the storage whose readings are followed and which
+     *                    receives the derived readings
+     */
+    public DerivedSignalStage(DataStorage dataStorage) {
+        this.dataStorage = dataStorage;
+    }
+
+    /**
+     * Registers the heart rate derived from ECG and the mean arterial pressure.
+     *
+     * @return this stage
+     */
+    public DerivedSignalStage registerDefaults() {
+        register("HeartRate", HeartRateFromEcg::new);
+        register(MeanArterialPressure.LABEL, MeanArterialPressure::new);
+        return this;
+    }
+
+    /**
+     * Registers a derived series. Patients start deriving it from their next
+     * accepted reading on.
+     *
+     * @param label   the record type the derived readings are stored as
+     * @param factory creates the state of one patient
+     */
+    public synchronized void register(String label, Supplier<? extends DerivedSignal> factory) {
+        Registration[] current = registrations;
+        Registration[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = new Registration(RecordTypeRegistry.codeOf(label), factory);
+        registrations = grown;
+    }
+
+    /**
+     * Starts deriving from the readings added to the storage from now on.
+     */
+    public void start() {
+        dataStorage.addListener(this);
+    }
+
+    /**
+     * Stops deriving.
+     */
+    @Override
+    public void close() {
+        dataStorage.removeListener(this);
+    }
+
+    @Override
+    public void onRecordAdded(int patientId, int recordTypeCode, long timestamp, double value) {
+        Registration[] current = registrations;
+        PatientSignals signals = patients.get(patientId);
+        if (signals == null) {
+            signals = patients.computeIfAbsent(patientId, PatientSignals::new);
+        }
+        int[] codes;
+        long[] timestamps;
+        double[] values;
+        // readings of one patient may arrive on several threads, e.g. one per file
+        synchronized (signals) {
+            if (signals.signals.length < current.length) {
+                signals.grow(current);
+            }
+            for (int i = 0; i < current.length; i++) {
+                // derived readings come back through this listener, skip them
+                if (current[i].recordTypeCode != recordTypeCode && signals.signals[i].accepts(recordTypeCode)) {
+                    signals.signals[i].update(recordTypeCode, timestamp, value, signals.outputs[i]);
+                }
+            }
+            int emitted = signals.emitted;
+            if (emitted == 0) {
+                return;
+            }
+            codes = Arrays.copyOf(signals.emittedCodes, emitted);
+            timestamps = Arrays.copyOf(signals.emittedTimestamps, emitted);
+            values = Arrays.copyOf(signals.emittedValues, emitted);
+            signals.emitted = 0;
+        }
+        // stored after releasing the patient, so listeners downstream never run under its lock
+        for (int i = 0; i < codes.length; i++) {
+            dataStorage.addPatientData(patientId, values[i], codes[i], timestamps[i]);
+        }
+    }
+
+    private static final class Registration {
+        final int recordTypeCode;
+        final Supplier<? extends DerivedSignal> factory;
+
+        Registration(int recordTypeCode, Supplier<? extends DerivedSignal> factory) {
+            this.recordTypeCode = recordTypeCode;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * The signals of one patient, in registration order, each with the output
+     * that collects its values until they are stored as the patient's readings.
+     */
+    private static final class PatientSignals {
+        final int patientId;
+        DerivedSignal[] signals = new DerivedSignal[0];
+        DerivedSignal.Output[] outputs = new DerivedSignal.Output[0];
+        int[] emittedCodes = new int[4];
+        long[] emittedTimestamps = new long[4];
+        double[] emittedValues = new double[4];
+        int emitted;
+
+        PatientSignals(int patientId) {
+            this.patientId = patientId;
+        }
+
+        void grow(Registration[] current) {
+            int previous = signals.length;
+            signals = Arrays.copyOf(signals, current.length);
+            outputs = Arrays.copyOf(outputs, current.length);
+            for (int i = previous; i < current.length; i++) {
+                int recordTypeCode = current[i].recordTypeCode;
+                signals[i] = current[i].factory.get();
+                outputs[i] = (timestamp, value) -> emit(recordTypeCode, timestamp, value);
+            }
+        }
+
+        private void emit(int recordTypeCode, long timestamp, double value) {
+            if (emitted == emittedCodes.length) {
+                emittedCodes = Arrays.copyOf(emittedCodes, emitted * 2);
+                emittedTimestamps = Arrays.copyOf(emittedTimestamps, emitted * 2);
+                emittedValues = Arrays.copyOf(emittedValues, emitted * 2);
+            }
+            emittedCodes[emitted] = recordTypeCode;
+            emittedTimestamps[emitted] = timestamp;
+            emittedValues[emitted++] = value;
+        }
+    }
+}
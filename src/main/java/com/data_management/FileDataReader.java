@@ -1,23 +1,59 @@
 package com.data_management;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Reads patient data from files in a specified directory and stores it in DataStorage.
+ * In parallel mode the files, and chunks of large files split on line
+ * boundaries, are parsed on a fork-join pool. The chunks of a file are still
+ * handed to the storage in file order, so readings of a series keep arriving
+ * in timestamp order, while different files (one per record type, as written
+ * by {@code FileOutputStrategy}) are stored concurrently.
+ *
+ * <p>Files are memory-mapped and parsed in place by
+ * {@link SimulatorLineParser}, so reading does not allocate per line.
  */
 public class FileDataReader implements DataReader {
+    private static final int CHUNK_BYTES = 1024 * 1024;
+
     private final String outputDirectory;
+    private final int parallelism;
 
     /**
-     * Constructs a FileDataReader with a specified output directory.
+     * Constructs a FileDataReader with a specified output directory that reads
+     * the files one after another.
      *
      * @param outputDirectory path to the directory containing output files
      */
     public FileDataReader(String outputDirectory) {
+        this(outputDirectory, 1);
+    }
+
+    /**
+     * Constructs a FileDataReader that reads and parses files in parallel.
+     *
+     * @param outputDirectory path to the directory containing output files
+     * @param parallelism     the number of worker threads, {@code 1} reads
+     *                        sequentially on the calling thread
+     */
+    public FileDataReader(String outputDirectory, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
         this.outputDirectory = outputDirectory;
+        this.parallelism = parallelism;
     }
 
     /**
@@ -39,48 +75,147 @@ public class FileDataReader implements DataReader {
             return;
         }
 
+        if (parallelism > 1) {
+            readInParallel(files, dataStorage);
+            return;
+        }
+        RecordBatch batch = new RecordBatch();
         for (File file : files) {
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    if (line.trim().isEmpty()) { // Skip empty lines
-                        continue;
-                    }
-                    String[] parts = line.split(", ");
-                    if (parts.length != 4) {
-                        System.err.println("Skipping malformed line: " + line);
-                        continue;
-                    }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long start = 0;
+                for (long end : chunkEnds(channel)) {
+                    parseChunk(channel, start, end, batch);
+                    dataStorage.addBatch(batch);
+                    batch.clear();
+                    start = end;
+                }
+            }
+        }
+    }
 
-                    try {
-                        int patientId = Integer.parseInt(parts[0].substring("Patient ID: ".length()));
-                        long timestamp = Long.parseLong(parts[1].substring("Timestamp: ".length()));
-                        String recordType = parts[2].substring("Label: ".length());
-                        String dataString = parts[3].substring("Data: ".length());
-
-                        double measurementValue;
-                        // alerts for saturation
-                        if (recordType.equals("Saturation") && dataString.endsWith("%")) {
-                            measurementValue = Double.parseDouble(dataString.substring(0, dataString.length() - 1));
-                        } else if (recordType.equals("Alert")) {
-                            if (dataString.equalsIgnoreCase("triggered")) {
-                                measurementValue = 1.0;
-                            } else if (dataString.equalsIgnoreCase("resolved")) {
-                                measurementValue = 0.0;
-                            } else {
-                                continue;
-                            }
-                        }
-                        else {
-                            measurementValue = Double.parseDouble(dataString);
-                        }
-
-                        dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-                    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-                        System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+    private void readInParallel(File[] files, DataStorage dataStorage) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<FileTask> tasks = new ArrayList<>();
+                    for (File file : files) {
+                        tasks.add(new FileTask(file, dataStorage));
                     }
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the end positions of consecutive chunks of about
+     * {@value #CHUNK_BYTES} bytes that end on line boundaries.
+     */
+    private static List<Long> chunkEnds(FileChannel channel) throws IOException {
+        List<Long> ends = new ArrayList<>();
+        long size = channel.size();
+        long start = 0;
+        while (start < size) {
+            start = lineBoundaryAfter(channel, Math.min(size, start + CHUNK_BYTES), size);
+            ends.add(start);
+        }
+        return ends;
+    }
+
+    private static long lineBoundaryAfter(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
                 }
             }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Maps the lines in one byte range of a file and parses them into the batch.
+     */
+    private static void parseChunk(FileChannel channel, long start, long end, RecordBatch batch) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        SimulatorLineParser.parse(buffer, 0, buffer.limit(), true, batch);
+    }
+
+    /**
+     * Splits a file into chunks that end on line boundaries, parses them in
+     * parallel and stores them in file order.
+     */
+    private static class FileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final DataStorage dataStorage;
+
+        FileTask(File file, DataStorage dataStorage) {
+            this.file = file;
+            this.dataStorage = dataStorage;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                List<ChunkTask> chunks = new ArrayList<>();
+                long start = 0;
+                for (long end : chunkEnds(channel)) {
+                    ChunkTask chunk = new ChunkTask(channel, start, end);
+                    chunk.fork();
+                    chunks.add(chunk);
+                    start = end;
+                }
+                // joining in order lets the first chunks be stored while later ones are still parsed
+                for (ChunkTask chunk : chunks) {
+                    dataStorage.addBatch(chunk.join());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Parses the lines in one byte range of a file.
+     */
+    private static class ChunkTask extends RecursiveTask<RecordBatch> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected RecordBatch compute() {
+            RecordBatch batch = new RecordBatch();
+            try {
+                parseChunk(channel, start, end, batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return batch;
         }
     }
-}
\ No newline at end of file
+}
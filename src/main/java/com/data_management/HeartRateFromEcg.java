@@ -0,0 +1,133 @@
+package com.data_management;
+
+/**
+ * Derives the heart rate from the ECG by detecting R peaks as they arrive.
+ * The signal is taken relative to a moving baseline, and every local maximum
+ * is classified as an R peak or as noise by an adaptive threshold between the
+ * running peak and noise levels, as in the Pan-Tompkins detector. Peaks closer
+ * than the refractory period to the previous one are ignored. Each R peak
+ * emits the heart rate over the last {@value #INTERVALS} RR intervals at the
+ * time of the peak. The levels are learned during the first
+ * {@value #LEARNING_MILLIS} ms, and RR intervals outside a physiological
+ * range, e.g. after a gap in the data, restart the interval average.
+ *
+ * <p>R peaks last a few tens of milliseconds, so they can only be found in an
+ * ECG sampled densely enough. The gaps between the last {@value #GAPS}
+ * readings are tracked, and while their median exceeds
+ * {@value #MAX_SAMPLE_INTERVAL} ms nothing is detected or emitted. The
+ * simulator's ECG, one reading per second, therefore yields no heart rate
+ * rather than a wrong one.
+ */
+public class HeartRateFromEcg implements DerivedSignal {
+    static final long LEARNING_MILLIS = 2000;
+    static final int INTERVALS = 4;
+    static final int GAPS = 15;
+    static final long MAX_SAMPLE_INTERVAL = 20;
+    private static final long REFRACTORY_MILLIS = 250;
+    private static final long MIN_INTERVAL = 300; // 200 bpm
+    private static final long MAX_INTERVAL = 2000; // 30 bpm
+    private static final double BASELINE_WEIGHT = 0.02;
+
+    private long firstTime = Long.MIN_VALUE;
+    private long lastTime = Long.MIN_VALUE;
+    private double baseline;
+    private double previous;
+    private double beforePrevious;
+    private long previousTime;
+    private int samples;
+    private double peakLevel;
+    private double noiseLevel;
+    private long lastPeak = Long.MIN_VALUE;
+    private final long[] intervals = new long[INTERVALS];
+    private int intervalCount;
+    private long intervalSum; // exact, unlike a running sum of doubles
+    private final boolean[] coarseGaps = new boolean[GAPS];
+    private int gapCount;
+    private int gapSlot;
+    private int coarseCount; // the median gap is too coarse while most gaps are
+
+    @Override
+    public boolean accepts(int recordTypeCode) {
+        return recordTypeCode == RecordTypeRegistry.ECG;
+    }
+
+    @Override
+    public void update(int recordTypeCode, long timestamp, double value, Output output) {
+        if (timestamp <= lastTime) {
+            return; // a late reading cannot be placed in the waveform any more
+        }
+        if (firstTime == Long.MIN_VALUE) {
+            firstTime = timestamp;
+            baseline = value;
+        }
+        if (lastTime != Long.MIN_VALUE) {
+            trackGap(timestamp - lastTime);
+        }
+        lastTime = timestamp;
+        baseline += BASELINE_WEIGHT * (value - baseline);
+        if (gapCount > 0 && coarseCount * 2 > gapCount) {
+            // too sparse to resolve R peaks, start over once the sampling is dense again
+            firstTime = timestamp;
+            peakLevel = 0;
+            noiseLevel = 0;
+            lastPeak = Long.MIN_VALUE;
+            intervalCount = 0;
+            intervalSum = 0;
+            samples = 0;
+            return;
+        }
+        double current = value - baseline;
+        // the previous sample is a local maximum once the current one is not higher
+        if (samples >= 2 && previous > beforePrevious && previous >= current) {
+            onLocalMaximum(previousTime, previous, output);
+        }
+        beforePrevious = previous;
+        previous = current;
+        previousTime = timestamp;
+        samples++;
+    }
+
+    private void trackGap(long gap) {
+        if (gapCount == GAPS && coarseGaps[gapSlot]) {
+            coarseCount--;
+        }
+        coarseGaps[gapSlot] = gap > MAX_SAMPLE_INTERVAL;
+        if (coarseGaps[gapSlot]) {
+            coarseCount++;
+        }
+        gapSlot = (gapSlot + 1) % GAPS;
+        gapCount = Math.min(gapCount + 1, GAPS);
+    }
+
+    private void onLocalMaximum(long time, double amplitude, Output output) {
+        if (time - firstTime < LEARNING_MILLIS) {
+            peakLevel = Math.max(peakLevel, amplitude);
+            noiseLevel += 0.125 * (amplitude - noiseLevel);
+            return;
+        }
+        double threshold = noiseLevel + 0.25 * (peakLevel - noiseLevel);
+        if (amplitude <= threshold || (lastPeak != Long.MIN_VALUE && time - lastPeak < REFRACTORY_MILLIS)) {
+            noiseLevel += 0.125 * (amplitude - noiseLevel);
+            return;
+        }
+        peakLevel += 0.125 * (amplitude - peakLevel);
+        if (lastPeak != Long.MIN_VALUE) {
+            long interval = time - lastPeak;
+            if (interval < MIN_INTERVAL || interval > MAX_INTERVAL) {
+                intervalCount = 0;
+                intervalSum = 0;
+            } else {
+                int slot = intervalCount % INTERVALS;
+                if (intervalCount >= INTERVALS) {
+                    intervalSum -= intervals[slot];
+                }
+                intervals[slot] = interval;
+                intervalSum += interval;
+                intervalCount++;
+                int used = Math.min(intervalCount, INTERVALS);
+                output.emit(time, 60000.0 * used / intervalSum);
+            }
+        }
+        lastPeak = time;
+    }
+}
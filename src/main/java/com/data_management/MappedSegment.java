@@ -0,0 +1,97 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Segment} backed by a memory-mapped segment file written by
+ * {@link SegmentStore}.
+ * Readings are read straight from the mapping with absolute gets, so opening a
+ * segment costs the same regardless of how many readings it holds and the
+ * operating system pages data in only when it is queried.
+ */
+class MappedSegment implements Segment {
+    private final ByteBuffer buffer;
+    private final int size;
+    private volatile BlockSummaries summaries; // built on the first aggregation
+
+    /**
+     * Constructs a segment over a mapped file.
+     *
+     * @param buffer the mapping, including the file header
+     * @param size   the number of complete, time-ordered readings in the mapping
+     */
+    MappedSegment(ByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public long firstTimestamp() {
+        return timestampAt(0);
+    }
+
+    @Override
+    public long lastTimestamp() {
+        return timestampAt(size - 1);
+    }
+
+    @Override
+    public void forEach(long startTime, long endTime, ReadingConsumer consumer) {
+        for (int i = lowerBound(startTime); i < size; i++) {
+            long timestamp = timestampAt(i);
+            if (timestamp > endTime) {
+                break;
+            }
+            consumer.accept(timestamp, valueAt(i));
+        }
+    }
+
+    @Override
+    public void summarize(long startTime, long endTime, Summary summary) {
+        BlockSummaries current = summaries;
+        if (current == null) {
+            current = new BlockSummaries(size);
+            current.completedUpTo(size, this::valueAt);
+            summaries = current;
+        }
+        int from = lowerBound(startTime);
+        int to = endTime == Long.MAX_VALUE ? size : lowerBound(endTime + 1);
+        current.fold(from, Math.max(from, to), this::valueAt, summary);
+    }
+
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private double valueAt(int index) {
+        return buffer.getDouble(offsetOf(index) + Long.BYTES);
+    }
+
+    private long timestampAt(int index) {
+        return buffer.getLong(offsetOf(index));
+    }
+
+    private static int offsetOf(int index) {
+        return SegmentStore.HEADER_BYTES + index * SegmentStore.RECORD_BYTES;
+    }
+}
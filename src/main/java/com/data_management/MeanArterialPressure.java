@@ -0,0 +1,43 @@
+package com.data_management;
+
+/**
+ * Derives the mean arterial pressure, DBP + (SBP - DBP) / 3, from a systolic
+ * and a diastolic reading taken together. The simulator stamps the two
+ * readings of one measurement separately, so readings up to
+ * {@value #PAIRING_WINDOW} ms apart are paired, and each reading is used for
+ * at most one value.
+ */
+public class MeanArterialPressure implements DerivedSignal {
+    /** The record type the derived values are stored as. */
+    public static final String LABEL = "MeanArterialPressure";
+
+    static final long PAIRING_WINDOW = 5000;
+
+    private double systolic;
+    private long systolicTime = Long.MIN_VALUE;
+    private double diastolic;
+    private long diastolicTime = Long.MIN_VALUE;
+
+    @Override
+    public boolean accepts(int recordTypeCode) {
+        return recordTypeCode == RecordTypeRegistry.SYSTOLIC_PRESSURE
+                || recordTypeCode == RecordTypeRegistry.DIASTOLIC_PRESSURE;
+    }
+
+    @Override
+    public void update(int recordTypeCode, long timestamp, double value, Output output) {
+        if (recordTypeCode == RecordTypeRegistry.SYSTOLIC_PRESSURE) {
+            systolic = value;
+            systolicTime = timestamp;
+        } else {
+            diastolic = value;
+            diastolicTime = timestamp;
+        }
+        if (systolicTime != Long.MIN_VALUE && diastolicTime != Long.MIN_VALUE
+                && Math.abs(systolicTime - diastolicTime) <= PAIRING_WINDOW) {
+            output.emit(Math.max(systolicTime, diastolicTime), diastolic + (systolic - diastolic) / 3);
+            systolicTime = Long.MIN_VALUE;
+            diastolicTime = Long.MIN_VALUE;
+        }
+    }
+}
@@ -1,33 +1,52 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Records are kept per record type in columnar {@link TimeSeries} segments
+ * rather than as individual objects, indexed by the record type code.
+ * Appends to different record types proceed in parallel and reads never
+ * block writers, see {@link TimeSeries}.
+ * Series are created with the {@link RetentionPolicy} of their record type.
  */
 public class Patient {
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    private volatile TimeSeries[] seriesByCode;
+    private final IntFunction<RetentionPolicy> retentionPolicies;
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, recordTypeCode -> RetentionPolicy.KEEP_ALL);
+    }
+
+    /**
+     * Constructs a new Patient whose series are created with the retention
+     * policies configured in the owning {@link DataStorage}.
+     *
+     * @param patientId         the unique identifier for the patient
+     * @param retentionPolicies the retention policy of each record type code
+     */
+    Patient(int patientId, IntFunction<RetentionPolicy> retentionPolicies) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.retentionPolicies = retentionPolicies;
+        this.seriesByCode = new TimeSeries[RecordTypeRegistry.size()];
     }
 
     /**
      * Adds a new record to this patient's list of medical records.
-     * The record is created with the specified measurement value, record type, and
-     * timestamp.
+     * The measurement is appended to the series of the given record type.
      *
      * @param measurementValue the measurement value to store in the record
      * @param recordType       the type of record, e.g., "HeartRate",
@@ -36,18 +55,72 @@ public class Patient {
      * milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose type is given as an interned code.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     * milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, int recordTypeCode, long timestamp) {
+        getOrCreateSeries(recordTypeCode).append(timestamp, measurementValue);
+    }
+
+    /**
+     * Adds a run of readings of one record type in a single step.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param timestamps     the times of the readings, in milliseconds since UNIX epoch
+     * @param values         the measured values
+     * @param length         the number of readings, taken from the start of the arrays
+     */
+    void addRecords(int recordTypeCode, long[] timestamps, double[] values, int length) {
+        getOrCreateSeries(recordTypeCode).appendAll(timestamps, values, length);
+    }
+
+    TimeSeries getOrCreateSeries(int recordTypeCode) {
+        TimeSeries series = getSeries(recordTypeCode);
+        return series != null ? series : createSeries(recordTypeCode);
+    }
+
+    private synchronized TimeSeries createSeries(int recordTypeCode) {
+        TimeSeries[] current = seriesByCode;
+        if (recordTypeCode < current.length && current[recordTypeCode] != null) {
+            return current[recordTypeCode];
+        }
+        // publish a new array so that readers iterating the old one are unaffected
+        TimeSeries[] grown = Arrays.copyOf(current, Math.max(current.length, Math.max(recordTypeCode + 1,
+                RecordTypeRegistry.size())));
+        TimeSeries series = new TimeSeries(recordTypeCode, retentionPolicies.apply(recordTypeCode));
+        grown[recordTypeCode] = series;
+        seriesByCode = grown;
+        return series;
     }
 
     public int getPatientId() {
         return patientId;
     }
 
+    /**
+     * Returns the series holding this patient's records of the given type.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @return the series, or {@code null} if no record of that type was added
+     */
+    public TimeSeries getSeries(int recordTypeCode) {
+        TimeSeries[] current = seriesByCode;
+        return recordTypeCode >= 0 && recordTypeCode < current.length ? current[recordTypeCode] : null;
+    }
+
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The per-type series are already sorted, so they are merged by timestamp
+     * after a binary search for the range in each of them.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      * epoch
@@ -56,16 +129,100 @@ public class Patient {
      * range
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        List<PatientRecord> filteredRecords = new ArrayList<>();
-
-        patientRecords.sort((r1, r2) -> Long.compare(r1.getTimestamp(), r2.getTimestamp()));
+        List<List<PatientRecord>> series = new ArrayList<>();
+        int total = 0;
+        for (TimeSeries typed : seriesByCode) {
+            if (typed != null) {
+                List<PatientRecord> records = typed.getRecords(patientId, startTime, endTime);
+                if (!records.isEmpty()) {
+                    series.add(records);
+                    total += records.size();
+                }
+            }
+        }
+        if (series.size() == 1) {
+            return series.get(0);
+        }
 
-        for (PatientRecord record : patientRecords) {
-            long timestamp = record.getTimestamp();
-            if (timestamp >= startTime && timestamp <= endTime) {
-                filteredRecords.add(record);
+        int[] positions = new int[series.size()];
+        List<PatientRecord> filteredRecords = new ArrayList<>(total);
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            long nextTimestamp = 0;
+            for (int s = 0; s < positions.length; s++) {
+                if (positions[s] < series.get(s).size()) {
+                    long timestamp = series.get(s).get(positions[s]).getTimestamp();
+                    if (next < 0 || timestamp < nextTimestamp) {
+                        next = s;
+                        nextTimestamp = timestamp;
+                    }
+                }
             }
+            filteredRecords.add(series.get(next).get(positions[next]++));
         }
         return filteredRecords;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the records of a single type that fall within a specified time
+     * range, without touching the series of other record types.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param startTime      the start of the time range, in milliseconds since
+     * UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @return the matching records in timestamp order
+     */
+    public List<PatientRecord> getRecords(int recordTypeCode, long startTime, long endTime) {
+        TimeSeries series = getSeries(recordTypeCode);
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        return series.getRecords(patientId, startTime, endTime);
+    }
+
+    /**
+     * Positions a cursor on the records of a single type that fall within a
+     * specified time range, without materializing them.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param startTime      the start of the time range, in milliseconds since
+     * UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @param cursor         the cursor to position, its previous range is
+     * discarded
+     * @return the cursor
+     */
+    public RecordCursor cursor(int recordTypeCode, long startTime, long endTime, RecordCursor cursor) {
+        TimeSeries series = getSeries(recordTypeCode);
+        if (series == null) {
+            cursor.clear();
+            return cursor;
+        }
+        return series.cursor(startTime, endTime, cursor);
+    }
+
+    /**
+     * Aggregates the records of a single type within a time range in
+     * fixed-width buckets, see {@link TimeSeries#aggregate}.
+     *
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param startTime      the start of the time range, in milliseconds since
+     * UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @param bucketSize     the width of a bucket, in milliseconds
+     * @param function       the function to compute for each bucket
+     * @return the result of each bucket, oldest first
+     */
+    public double[] aggregate(int recordTypeCode, long startTime, long endTime, long bucketSize,
+                              AggregateFunction function) {
+        TimeSeries series = getSeries(recordTypeCode);
+        if (series == null) {
+            return TimeSeries.emptyAggregate(startTime, endTime, bucketSize, function);
+        }
+        return series.aggregate(startTime, endTime, bucketSize, function);
+    }
+}
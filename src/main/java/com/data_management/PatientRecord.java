@@ -11,7 +11,7 @@ package com.data_management;
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private int recordTypeCode; // Interned label, see RecordTypeRegistry
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -26,9 +26,22 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record whose type is given as an interned code.
+     * 
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param recordTypeCode   the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
-        this.recordType = recordType;
+        this.recordTypeCode = recordTypeCode;
         this.timestamp = timestamp;
     }
 
@@ -65,6 +78,15 @@ public class PatientRecord {
      * @return the record type
      */
     public String getRecordType() {
-        return recordType;
+        return RecordTypeRegistry.labelOf(recordTypeCode);
+    }
+
+    /**
+     * Returns the interned code of the record type.
+     * 
+     * @return the record type code, see {@link RecordTypeRegistry}
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
     }
 }
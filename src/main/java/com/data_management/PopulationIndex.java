@@ -0,0 +1,334 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A cross-patient secondary index that answers ward-level questions such as
+ * "which patients had a saturation below 92% in the last five minutes"
+ * without scanning every patient.
+ * Readings are grouped by record type and fixed-size time bucket. Each bucket
+ * keeps the minimum and maximum of all its readings and of the readings of
+ * each patient in it, so a query only visits the buckets overlapping its time
+ * range, skips buckets whose value range cannot match, and only reads the
+ * series of a patient when the summaries are not conclusive.
+ *
+ * <p>The index is kept up to date as a {@link DataStorageListener}; call
+ * {@link #evictBefore(long)} to drop buckets that are no longer queried.
+ */
+public class PopulationIndex implements DataStorageListener {
+    private final long bucketSize;
+    private volatile ConcurrentSkipListMap<Long, Bucket>[] bucketsByCode;
+    private volatile DataStorage dataStorage;
+
+    /**
+     * Constructs an empty population index.
+     *
+     * @param bucketSize the width of a time bucket, in milliseconds
+     */
+    public PopulationIndex(long bucketSize) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+        this.bucketSize = bucketSize;
+        this.bucketsByCode = newBucketsByCode(RecordTypeRegistry.size());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // an array of a generic type can only be created raw
+    private static ConcurrentSkipListMap<Long, Bucket>[] newBucketsByCode(int length) {
+        return new ConcurrentSkipListMap[length];
+    }
+
+    /**
+     * Indexes the readings already held by the storage and every reading added
+     * to it from now on. History that has been rolled up is indexed by the
+     * minimum and maximum of each rollup, which are readings themselves, at the
+     * start of its bucket as range reads report it; the averages are not.
+     *
+     * @param dataStorage the storage to index
+     */
+    public void attach(DataStorage dataStorage) {
+        this.dataStorage = dataStorage;
+        dataStorage.addListener(this);
+        for (Patient patient : dataStorage.getAllPatients()) {
+            for (PatientRecord record : patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE)) {
+                if (record instanceof RollupRecord) {
+                    RollupRecord rollup = (RollupRecord) record;
+                    onRecordAdded(patient.getPatientId(), rollup.getRecordTypeCode(), rollup.getTimestamp(),
+                            rollup.getMinimum());
+                    onRecordAdded(patient.getPatientId(), rollup.getRecordTypeCode(), rollup.getTimestamp(),
+                            rollup.getMaximum());
+                } else {
+                    onRecordAdded(patient.getPatientId(), record.getRecordTypeCode(), record.getTimestamp(),
+                            record.getMeasurementValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onRecordAdded(int patientId, int recordTypeCode, long timestamp, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        ConcurrentSkipListMap<Long, Bucket> buckets = getOrCreateBuckets(recordTypeCode);
+        long key = Math.floorDiv(timestamp, bucketSize);
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            Bucket created = new Bucket();
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        bucket.add(patientId, value);
+    }
+
+    /**
+     * Finds the patients that have at least one reading of a record type within
+     * a time range whose value lies within a value range.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since epoch
+     * @param endTime    the end of the time range, in milliseconds since epoch
+     * @param lowValue   the smallest matching value
+     * @param highValue  the largest matching value
+     * @return the IDs of the matching patients in ascending order
+     */
+    public List<Integer> findPatients(String recordType, long startTime, long endTime, double lowValue,
+                                      double highValue) {
+        int recordTypeCode = RecordTypeRegistry.lookup(recordType);
+        if (recordTypeCode < 0 || startTime > endTime || lowValue > highValue) {
+            return new ArrayList<>();
+        }
+        return findPatients(recordTypeCode, startTime, endTime, lowValue, highValue);
+    }
+
+    /**
+     * Finds the patients that have at least one reading of a record type below a
+     * threshold within a time range.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since epoch
+     * @param endTime    the end of the time range, in milliseconds since epoch
+     * @param threshold  the exclusive upper bound of matching values
+     * @return the IDs of the matching patients in ascending order
+     */
+    public List<Integer> findPatientsBelow(String recordType, long startTime, long endTime, double threshold) {
+        return findPatients(recordType, startTime, endTime, Double.NEGATIVE_INFINITY, Math.nextDown(threshold));
+    }
+
+    /**
+     * Finds the patients that have at least one reading of a record type above a
+     * threshold within a time range.
+     *
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since epoch
+     * @param endTime    the end of the time range, in milliseconds since epoch
+     * @param threshold  the exclusive lower bound of matching values
+     * @return the IDs of the matching patients in ascending order
+     */
+    public List<Integer> findPatientsAbove(String recordType, long startTime, long endTime, double threshold) {
+        return findPatients(recordType, startTime, endTime, Math.nextUp(threshold), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Drops the buckets that only hold readings older than the given time.
+     *
+     * @param timestamp the time before which buckets are dropped, in
+     *                  milliseconds since epoch
+     */
+    public void evictBefore(long timestamp) {
+        long key = Math.floorDiv(timestamp, bucketSize);
+        for (ConcurrentSkipListMap<Long, Bucket> buckets : bucketsByCode) {
+            if (buckets != null) {
+                buckets.headMap(key, false).clear();
+            }
+        }
+    }
+
+    private List<Integer> findPatients(int recordTypeCode, long startTime, long endTime, double lowValue,
+                                       double highValue) {
+        ConcurrentSkipListMap<Long, Bucket>[] current = bucketsByCode;
+        if (recordTypeCode >= current.length || current[recordTypeCode] == null) {
+            return new ArrayList<>();
+        }
+        long firstKey = Math.floorDiv(startTime, bucketSize);
+        long lastKey = Math.floorDiv(endTime, bucketSize);
+        Set<Integer> matches = new HashSet<>();
+        Set<Integer> candidates = new HashSet<>();
+        for (Map.Entry<Long, Bucket> entry
+                : current[recordTypeCode].subMap(firstKey, true, lastKey, true).entrySet()) {
+            long key = entry.getKey();
+            long bucketStart = key * bucketSize;
+            // readings of edge buckets may lie outside the time range
+            boolean covered = (key > firstKey || startTime == bucketStart)
+                    && (key < lastKey || endTime - bucketStart == bucketSize - 1);
+            entry.getValue().collect(lowValue, highValue, covered, matches, candidates);
+        }
+        candidates.removeAll(matches);
+        for (int patientId : candidates) {
+            if (hasReading(patientId, recordTypeCode, startTime, endTime, lowValue, highValue)) {
+                matches.add(patientId);
+            }
+        }
+        List<Integer> patientIds = new ArrayList<>(matches);
+        Collections.sort(patientIds);
+        return patientIds;
+    }
+
+    private boolean hasReading(int patientId, int recordTypeCode, long startTime, long endTime, double lowValue,
+                               double highValue) {
+        DataStorage storage = dataStorage;
+        if (storage == null) {
+            throw new IllegalStateException("Population index is not attached to a data storage");
+        }
+        Patient patient = storage.getPatient(patientId);
+        if (patient == null) {
+            return false;
+        }
+        for (PatientRecord record : patient.getRecords(recordTypeCode, startTime, endTime)) {
+            if (record instanceof RollupRecord) {
+                // the average of a bucket need not be a reading, but its extremes are
+                RollupRecord rollup = (RollupRecord) record;
+                if (inRange(rollup.getMinimum(), lowValue, highValue)
+                        || inRange(rollup.getMaximum(), lowValue, highValue)) {
+                    return true;
+                }
+            } else if (inRange(record.getMeasurementValue(), lowValue, highValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inRange(double value, double lowValue, double highValue) {
+        return value >= lowValue && value <= highValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentSkipListMap<Long, Bucket> getOrCreateBuckets(int recordTypeCode) {
+        ConcurrentSkipListMap<Long, Bucket>[] current = bucketsByCode;
+        if (recordTypeCode < current.length && current[recordTypeCode] != null) {
+            return current[recordTypeCode];
+        }
+        synchronized (this) {
+            current = bucketsByCode;
+            if (recordTypeCode >= current.length) {
+                current = Arrays.copyOf(current, Math.max(recordTypeCode + 1, RecordTypeRegistry.size()));
+            } else if (current[recordTypeCode] != null) {
+                return current[recordTypeCode];
+            } else {
+                current = current.clone();
+            }
+            ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+            current[recordTypeCode] = buckets;
+            bucketsByCode = current;
+            return buckets;
+        }
+    }
+
+    /**
+     * The readings of one record type within one time bucket, summarised by
+     * their overall and per-patient minimum and maximum. Patients are found
+     * through an open-addressing table of slot numbers.
+     */
+    private static final class Bucket {
+        private volatile double min = Double.POSITIVE_INFINITY;
+        private volatile double max = Double.NEGATIVE_INFINITY;
+        private int[] patientIds = new int[8];
+        private double[] mins = new double[8];
+        private double[] maxs = new double[8];
+        private int[] slots = new int[16]; // slot + 1, 0 marks an empty entry
+        private int size;
+
+        synchronized void add(int patientId, double value) {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            int slot = slotOf(patientId);
+            if (slot < 0) {
+                slot = insert(patientId);
+                mins[slot] = value;
+                maxs[slot] = value;
+            } else {
+                mins[slot] = Math.min(mins[slot], value);
+                maxs[slot] = Math.max(maxs[slot], value);
+            }
+        }
+
+        /**
+         * Adds the patients that certainly have a matching reading to the
+         * matches and those that may have one to the candidates.
+         */
+        void collect(double lowValue, double highValue, boolean covered, Set<Integer> matches,
+                     Set<Integer> candidates) {
+            if (max < lowValue || min > highValue) {
+                return;
+            }
+            synchronized (this) {
+                for (int i = 0; i < size; i++) {
+                    double patientMin = mins[i];
+                    double patientMax = maxs[i];
+                    if (patientMax < lowValue || patientMin > highValue) {
+                        continue;
+                    }
+                    // the minimum and maximum are readings themselves
+                    boolean certain = covered && (patientMin >= lowValue || patientMax <= highValue);
+                    (certain ? matches : candidates).add(patientIds[i]);
+                }
+            }
+        }
+
+        private int slotOf(int patientId) {
+            int mask = slots.length - 1;
+            for (int i = mix(patientId) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (patientIds[slots[i] - 1] == patientId) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private int insert(int patientId) {
+            if (size == patientIds.length) {
+                patientIds = Arrays.copyOf(patientIds, size * 2);
+                mins = Arrays.copyOf(mins, size * 2);
+                maxs = Arrays.copyOf(maxs, size * 2);
+            }
+            int slot = size++;
+            patientIds[slot] = patientId;
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int i = 0; i < size; i++) {
+                    place(i);
+                }
+            } else {
+                place(slot);
+            }
+            return slot;
+        }
+
+        private void place(int slot) {
+            int mask = slots.length - 1;
+            int i = mix(patientIds[slot]) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = slot + 1;
+        }
+
+        private static int mix(int patientId) {
+            return patientId * 0x9E3779B9;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.data_management;
+
+/**
+ * Receives readings of a single series as primitives, so that scanning stored
+ * data does not allocate a {@link PatientRecord} per reading.
+ */
+@FunctionalInterface
+public interface ReadingConsumer {
+    /**
+     * Accepts one reading.
+     *
+     * @param timestamp the time of the reading, in milliseconds since UNIX epoch
+     * @param value     the measured value
+     */
+    void accept(long timestamp, double value);
+}
@@ -0,0 +1,204 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A batch of readings kept in parallel primitive arrays, to be added to a
+ * {@link DataStorage} in one call to {@link DataStorage#addBatch(RecordBatch)}.
+ * The arrays grow as needed and are kept by {@link #clear()}, so a source that
+ * reuses one batch does not allocate per reading.
+ * Not thread-safe.
+ */
+public class RecordBatch implements RecordSink {
+    private int[] patientIds;
+    private double[] values;
+    private int[] recordTypeCodes;
+    private long[] timestamps;
+    private int size;
+
+    // Scratch space of DataStorage#addBatch: the batch indices ordered by
+    // patient, and the readings of the run that is being appended.
+    private long[] order = new long[0];
+    long[] runTimestamps = new long[0];
+    double[] runValues = new double[0];
+    int runRecordTypeCode;
+    int runLength;
+
+    /**
+     * Constructs an empty batch.
+     */
+    public RecordBatch() {
+        this(64);
+    }
+
+    /**
+     * Constructs an empty batch with room for the given number of readings.
+     *
+     * @param capacity the number of readings the batch holds before it grows
+     */
+    public RecordBatch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        patientIds = new int[capacity];
+        values = new double[capacity];
+        recordTypeCodes = new int[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Adds a reading to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measured value
+     * @param recordTypeCode   the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp        the time of the reading, in milliseconds since epoch
+     */
+    @Override
+    public void add(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            recordTypeCodes = Arrays.copyOf(recordTypeCodes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+        patientIds[size] = patientId;
+        values[size] = measurementValue;
+        recordTypeCodes[size] = recordTypeCode;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Adds a reading to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measured value
+     * @param recordType       the type of record, e.g., "HeartRate"
+     * @param timestamp        the time of the reading, in milliseconds since epoch
+     */
+    public void add(int patientId, double measurementValue, String recordType, long timestamp) {
+        add(patientId, measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Returns the number of readings in the batch.
+     *
+     * @return the number of readings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the patient of a reading.
+     *
+     * @param index the index of the reading, in the order it was added
+     * @return the unique identifier of the patient
+     */
+    public int getPatientId(int index) {
+        return patientIds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the value of a reading.
+     *
+     * @param index the index of the reading, in the order it was added
+     * @return the measured value
+     */
+    public double getMeasurementValue(int index) {
+        return values[checkIndex(index)];
+    }
+
+    /**
+     * Returns the record type of a reading.
+     *
+     * @param index the index of the reading, in the order it was added
+     * @return the record type code, see {@link RecordTypeRegistry}
+     */
+    public int getRecordTypeCode(int index) {
+        return recordTypeCodes[checkIndex(index)];
+    }
+
+    /**
+     * Returns the time of a reading.
+     *
+     * @param index the index of the reading, in the order it was added
+     * @return the timestamp, in milliseconds since epoch
+     */
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    /**
+     * Empties the batch, keeping its arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " readings");
+        }
+        return index;
+    }
+
+    /**
+     * Orders the readings by patient, keeping the arrival order of each
+     * patient's readings, and returns the number of readings.
+     */
+    int sortByPatient() {
+        if (order.length < size) {
+            order = new long[patientIds.length];
+        }
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            // the index in the low bits makes the order stable
+            order[i] = (long) patientIds[i] << 32 | i;
+            sorted &= i == 0 || patientIds[i] >= patientIds[i - 1];
+        }
+        if (!sorted) {
+            Arrays.sort(order, 0, size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the patient of the reading at a position of the patient order.
+     */
+    int patientIdAt(int position) {
+        return (int) (order[position] >> 32);
+    }
+
+    /**
+     * Moves the readings in {@code [from, to)} of the patient order that have
+     * the record type of the first one into {@link #runTimestamps} and
+     * {@link #runValues}, and moves the remaining readings to the front of the
+     * range in their order.
+     *
+     * @return the end of the remaining readings, {@code from} once the whole
+     *         range has been moved out
+     */
+    int takeRun(int from, int to) {
+        if (runTimestamps.length < to - from) {
+            runTimestamps = new long[patientIds.length];
+            runValues = new double[patientIds.length];
+        }
+        runRecordTypeCode = recordTypeCodes[(int) order[from]];
+        runLength = 0;
+        int remaining = from;
+        for (int position = from; position < to; position++) {
+            int index = (int) order[position];
+            if (recordTypeCodes[index] == runRecordTypeCode) {
+                runTimestamps[runLength] = timestamps[index];
+                runValues[runLength] = values[index];
+                runLength++;
+            } else {
+                order[remaining++] = order[position];
+            }
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,156 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A reusable, forward-only cursor over the readings of one record type within
+ * a time range, in timestamp order.
+ * Buffered readings are read in place from the columns of the series, so
+ * positioning a cursor neither copies them nor allocates a
+ * {@link PatientRecord} per reading. Readings held in compressed history or
+ * rollups are decoded into primitive arrays owned by the cursor, which are
+ * reused the next time the cursor is positioned. A rollup is returned as a
+ * single reading at the start of its bucket with the average as its value.
+ *
+ * <pre>
+ * RecordCursor cursor = new RecordCursor();
+ * storage.cursor(patientId, "Saturation", from, to, cursor);
+ * while (cursor.hasNext()) {
+ *     long timestamp = cursor.nextTimestamp();
+ *     double value = cursor.nextValue();
+ * }
+ * </pre>
+ *
+ * <p>A cursor sees the readings present when it was positioned, regardless of
+ * later appends. It is not thread-safe; use one cursor per thread.
+ */
+public final class RecordCursor {
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    // in-place view of the in-memory buffer
+    private long[] viewTimestamps = NO_TIMESTAMPS;
+    private double[] viewValues = NO_VALUES;
+    private int viewPosition;
+    private int viewEnd;
+
+    // readings decoded from history segments and rollups
+    private long[] bufferedTimestamps = NO_TIMESTAMPS;
+    private double[] bufferedValues = NO_VALUES;
+    private int bufferedPosition;
+    private int bufferedSize;
+    private final ReadingConsumer collector = this::add;
+
+    /**
+     * Returns whether there is another reading.
+     *
+     * @return {@code true} if {@link #nextValue()} can be called
+     */
+    public boolean hasNext() {
+        return viewPosition < viewEnd || bufferedPosition < bufferedSize;
+    }
+
+    /**
+     * Returns the timestamp of the next reading without moving past it.
+     *
+     * @return the timestamp, in milliseconds since UNIX epoch
+     * @throws NoSuchElementException if there are no more readings
+     */
+    public long nextTimestamp() {
+        return fromBuffer() ? bufferedTimestamps[bufferedPosition] : viewTimestamps[viewPosition];
+    }
+
+    /**
+     * Returns the value of the next reading and moves past it.
+     *
+     * @return the measured value
+     * @throws NoSuchElementException if there are no more readings
+     */
+    public double nextValue() {
+        return fromBuffer() ? bufferedValues[bufferedPosition++] : viewValues[viewPosition++];
+    }
+
+    /**
+     * Returns the number of readings not yet consumed.
+     *
+     * @return the number of remaining readings
+     */
+    public int remaining() {
+        return (viewEnd - viewPosition) + (bufferedSize - bufferedPosition);
+    }
+
+    private boolean fromBuffer() {
+        if (bufferedPosition < bufferedSize) {
+            // history comes first on equal timestamps, like in the record lists
+            return viewPosition == viewEnd || bufferedTimestamps[bufferedPosition] <= viewTimestamps[viewPosition];
+        }
+        if (viewPosition == viewEnd) {
+            throw new NoSuchElementException();
+        }
+        return false;
+    }
+
+    /**
+     * Empties the cursor before it is positioned on a new range.
+     */
+    void clear() {
+        viewTimestamps = NO_TIMESTAMPS;
+        viewValues = NO_VALUES;
+        viewPosition = 0;
+        viewEnd = 0;
+        bufferedPosition = 0;
+        bufferedSize = 0;
+    }
+
+    /**
+     * Makes the readings at positions {@code [from, to)} of the given columns
+     * visible through the cursor. The readings must not change afterwards.
+     */
+    void view(long[] timestamps, double[] values, int from, int to) {
+        viewTimestamps = timestamps;
+        viewValues = values;
+        viewPosition = from;
+        viewEnd = to;
+    }
+
+    /**
+     * Returns a consumer that copies readings into the cursor's own arrays.
+     */
+    ReadingConsumer collector() {
+        return collector;
+    }
+
+    /**
+     * Orders the copied readings by timestamp, keeping equal timestamps in
+     * the order they were copied. They are nearly always in order already.
+     */
+    void sortBuffered() {
+        for (int i = 1; i < bufferedSize; i++) {
+            long timestamp = bufferedTimestamps[i];
+            if (timestamp >= bufferedTimestamps[i - 1]) {
+                continue;
+            }
+            double value = bufferedValues[i];
+            int j = i - 1;
+            while (j >= 0 && bufferedTimestamps[j] > timestamp) {
+                bufferedTimestamps[j + 1] = bufferedTimestamps[j];
+                bufferedValues[j + 1] = bufferedValues[j];
+                j--;
+            }
+            bufferedTimestamps[j + 1] = timestamp;
+            bufferedValues[j + 1] = value;
+        }
+    }
+
+    private void add(long timestamp, double value) {
+        if (bufferedSize == bufferedTimestamps.length) {
+            int capacity = Math.max(16, bufferedSize * 2);
+            bufferedTimestamps = Arrays.copyOf(bufferedTimestamps, capacity);
+            bufferedValues = Arrays.copyOf(bufferedValues, capacity);
+        }
+        bufferedTimestamps[bufferedSize] = timestamp;
+        bufferedValues[bufferedSize] = value;
+        bufferedSize++;
+    }
+}
@@ -0,0 +1,17 @@
+package com.data_management;
+
+/**
+ * Receives parsed readings as primitives, e.g. to collect them into a batch
+ * before they are added to a {@link DataStorage}.
+ */
+interface RecordSink {
+    /**
+     * Adds one parsed reading.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measured value
+     * @param recordTypeCode   the record type code, see {@link RecordTypeRegistry}
+     * @param timestamp        the time of the reading, in milliseconds since epoch
+     */
+    void add(int patientId, double measurementValue, int recordTypeCode, long timestamp);
+}
@@ -0,0 +1,186 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns record type labels such as "ECG" or "Saturation" into compact integer
+ * codes.
+ * Storage and the alert strategies compare these codes instead of running
+ * string comparisons on every record. Labels are matched case-insensitively,
+ * the first spelling that is registered becomes the canonical label. The
+ * labels produced by the simulator are pre-registered with fixed codes, any
+ * other label is registered on first use. Labels arrive from untrusted
+ * streams and are never unregistered, so at most {@value #MAX_TYPES} record
+ * types are registered; further labels are rejected.
+ */
+public final class RecordTypeRegistry {
+    public static final int ECG = 0;
+    public static final int SATURATION = 1;
+    public static final int SYSTOLIC_PRESSURE = 2;
+    public static final int DIASTOLIC_PRESSURE = 3;
+    public static final int HEART_RATE = 4;
+    public static final int ALERT = 5;
+    public static final int CHOLESTEROL = 6;
+    public static final int WHITE_BLOOD_CELLS = 7;
+    public static final int RED_BLOOD_CELLS = 8;
+    /** The maximum number of record types that can be registered. */
+    public static final int MAX_TYPES = 256;
+
+    // Keys are both the exact spellings seen so far and their lower-case form,
+    // so the common case is a single lookup on the label's cached hash code.
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[0];
+    // Lower-case ASCII bytes of each canonical label, null for non-ASCII labels.
+    private static volatile byte[][] asciiLabels = new byte[0][];
+
+    static {
+        register("ECG");
+        register("Saturation");
+        register("SystolicPressure");
+        register("DiastolicPressure");
+        register("HeartRate");
+        register("Alert");
+        register("Cholesterol");
+        register("WhiteBloodCells");
+        register("RedBloodCells");
+    }
+
+    private RecordTypeRegistry() {
+    }
+
+    /**
+     * Returns the code of a record type label, registering the label if it has
+     * not been seen before.
+     *
+     * @param label the record type label, e.g. "SystolicPressure"
+     * @return the code of the label
+     * @throws IllegalArgumentException if the label is new and
+     *                                  {@value #MAX_TYPES} record types are
+     *                                  already registered
+     */
+    public static int codeOf(String label) {
+        Integer code = codes.get(label);
+        if (code != null) {
+            return code;
+        }
+        return register(label);
+    }
+
+    /**
+     * Returns the code of a record type label given as ASCII bytes, registering
+     * the label if it has not been seen before.
+     * Known labels are matched byte by byte, so parsers can resolve a label
+     * without creating a string for it.
+     *
+     * @param buffer the buffer holding the label
+     * @param from   the position of the first byte of the label
+     * @param to     the position one past the last byte of the label
+     * @return the code of the label
+     * @throws IllegalArgumentException if the label is new and
+     *                                  {@value #MAX_TYPES} record types are
+     *                                  already registered
+     */
+    static int codeOf(ByteBuffer buffer, int from, int to) {
+        byte[][] current = asciiLabels;
+        for (int code = 0; code < current.length; code++) {
+            if (matches(current[code], buffer, from, to)) {
+                return code;
+            }
+        }
+        return codeOf(DecimalParser.text(buffer, from, to));
+    }
+
+    private static boolean matches(byte[] label, ByteBuffer buffer, int from, int to) {
+        if (label == null || label.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < label.length; i++) {
+            byte b = buffer.get(from + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != label[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the code of a record type label without registering it.
+     *
+     * @param label the record type label
+     * @return the code of the label, or -1 if the label is unknown
+     */
+    public static int lookup(String label) {
+        Integer code = codes.get(label);
+        if (code == null) {
+            code = codes.get(label.toLowerCase(Locale.ROOT));
+        }
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the canonical label of a record type code.
+     *
+     * @param code a code returned by {@link #codeOf(String)}
+     * @return the canonical label
+     * @throws IllegalArgumentException if the code has not been registered
+     */
+    public static String labelOf(int code) {
+        String[] current = labels;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns the number of registered record types. Codes are dense, so every
+     * code lies in the range {@code [0, size())}.
+     *
+     * @return the number of registered record types
+     */
+    public static int size() {
+        return labels.length;
+    }
+
+    private static byte[] asciiBytes(String label) {
+        byte[] bytes = new byte[label.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            char c = label.charAt(i);
+            if (c > 127) {
+                return null;
+            }
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    private static synchronized int register(String label) {
+        String key = label.toLowerCase(Locale.ROOT);
+        Integer code = codes.get(key);
+        if (code == null) {
+            String[] current = labels;
+            if (current.length >= MAX_TYPES) {
+                throw new IllegalArgumentException("Too many record types, not registering " + label);
+            }
+            String[] grown = Arrays.copyOf(current, current.length + 1);
+            code = current.length;
+            grown[code] = label;
+            byte[][] grownAscii = Arrays.copyOf(asciiLabels, current.length + 1);
+            grownAscii[code] = asciiBytes(key);
+            // Readers find codes without the lock, through codes or asciiLabels,
+            // and may pass them straight to labelOf. So the label is published
+            // first and the code last, once everything it refers to is visible.
+            labels = grown;
+            asciiLabels = grownAscii;
+            codes.put(key, code);
+        }
+        codes.put(label, code);
+        return code;
+    }
+}
@@ -0,0 +1,103 @@
+package com.data_management;
+
+/**
+ * Describes how long the readings of a record type are kept and at which
+ * resolution.
+ * Raw readings are kept for the raw horizon. Older readings are compacted into
+ * per-minute rollups (min/max/average/count), which are kept for the minute
+ * horizon and then folded into per-hour rollups, which are kept for the hour
+ * horizon. Horizons are measured back from the newest reading of a series, so
+ * that replayed historical data ages the same way as live data.
+ *
+ * <p>Raw readings older than the compression horizon, but still within the raw
+ * horizon, are sealed into Gorilla-compressed blocks, which keeps cold history
+ * queryable at full resolution for a fraction of the memory.
+ *
+ * <p>A horizon of {@code 0} skips the tier, {@link Long#MAX_VALUE} keeps it
+ * forever (or, for compression, never compresses).
+ */
+public class RetentionPolicy {
+    public static final long MINUTE = 60 * 1000L;
+    public static final long HOUR = 60 * MINUTE;
+
+    /** Keeps every raw reading forever, which is the default for all types. */
+    public static final RetentionPolicy KEEP_ALL = new RetentionPolicy(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /** Keeps every reading forever, compressing raw readings older than an hour. */
+    public static final RetentionPolicy COMPRESS_AFTER_HOUR = new RetentionPolicy(Long.MAX_VALUE, Long.MAX_VALUE,
+            Long.MAX_VALUE, HOUR);
+
+    private final long rawHorizon;
+    private final long minuteRollupHorizon;
+    private final long hourRollupHorizon;
+    private final long compressionHorizon;
+
+    /**
+     * Constructs a retention policy.
+     *
+     * @param rawHorizon          how long raw readings are kept, in milliseconds
+     * @param minuteRollupHorizon how long per-minute rollups are kept, in
+     *                            milliseconds
+     * @param hourRollupHorizon   how long per-hour rollups are kept, in
+     *                            milliseconds
+     */
+    public RetentionPolicy(long rawHorizon, long minuteRollupHorizon, long hourRollupHorizon) {
+        this(rawHorizon, minuteRollupHorizon, hourRollupHorizon, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a retention policy that also compresses older raw readings.
+     *
+     * @param rawHorizon          how long raw readings are kept, in milliseconds
+     * @param minuteRollupHorizon how long per-minute rollups are kept, in
+     *                            milliseconds
+     * @param hourRollupHorizon   how long per-hour rollups are kept, in
+     *                            milliseconds
+     * @param compressionHorizon  how long raw readings stay uncompressed, in
+     *                            milliseconds
+     */
+    public RetentionPolicy(long rawHorizon, long minuteRollupHorizon, long hourRollupHorizon,
+                           long compressionHorizon) {
+        if (rawHorizon < 0 || minuteRollupHorizon < 0 || hourRollupHorizon < 0 || compressionHorizon < 0) {
+            throw new IllegalArgumentException("Retention horizons must not be negative");
+        }
+        this.rawHorizon = rawHorizon;
+        this.minuteRollupHorizon = minuteRollupHorizon;
+        this.hourRollupHorizon = hourRollupHorizon;
+        this.compressionHorizon = compressionHorizon;
+    }
+
+    public long getRawHorizon() {
+        return rawHorizon;
+    }
+
+    public long getMinuteRollupHorizon() {
+        return minuteRollupHorizon;
+    }
+
+    public long getHourRollupHorizon() {
+        return hourRollupHorizon;
+    }
+
+    public long getCompressionHorizon() {
+        return compressionHorizon;
+    }
+
+    /**
+     * Returns whether raw readings are ever evicted under this policy.
+     *
+     * @return {@code true} if the raw horizon is bounded
+     */
+    public boolean isBounded() {
+        return rawHorizon != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether raw readings are ever compressed under this policy.
+     *
+     * @return {@code true} if the compression horizon is bounded
+     */
+    public boolean isCompressing() {
+        return compressionHorizon != Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,52 @@
+package com.data_management;
+
+/**
+ * A patient record that summarizes all readings of one record type within a
+ * fixed time bucket.
+ * Returned by range queries for periods whose raw readings have been compacted
+ * by a {@link RetentionPolicy}. The measurement value is the average of the
+ * bucket and the timestamp is the start of the bucket.
+ */
+public class RollupRecord extends PatientRecord {
+    private final double minimum;
+    private final double maximum;
+    private final long count;
+    private final long bucketSize;
+
+    /**
+     * Constructs a rollup record.
+     *
+     * @param patientId      the unique identifier for the patient
+     * @param recordTypeCode the record type code, see {@link RecordTypeRegistry}
+     * @param bucketStart    the start of the bucket, in milliseconds since epoch
+     * @param bucketSize     the length of the bucket, in milliseconds
+     * @param minimum        the smallest reading in the bucket
+     * @param maximum        the largest reading in the bucket
+     * @param sum            the sum of the readings in the bucket
+     * @param count          the number of readings in the bucket
+     */
+    public RollupRecord(int patientId, int recordTypeCode, long bucketStart, long bucketSize,
+                        double minimum, double maximum, double sum, long count) {
+        super(patientId, sum / count, recordTypeCode, bucketStart);
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.count = count;
+        this.bucketSize = bucketSize;
+    }
+
+    public double getMinimum() {
+        return minimum;
+    }
+
+    public double getMaximum() {
+        return maximum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+}
@@ -0,0 +1,183 @@
+package com.data_management;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-width min/max/sum/count buckets for one record type of one patient,
+ * with the sum of squared deviations of each bucket so that the spread of the
+ * compacted readings survives, stored in parallel primitive arrays ordered by
+ * bucket start.
+ * Not thread-safe; the owning {@link TimeSeries} guards it with its lock.
+ */
+class RollupTier {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long bucketSize;
+    private long[] bucketStarts = new long[INITIAL_CAPACITY];
+    private double[] minimums = new double[INITIAL_CAPACITY];
+    private double[] maximums = new double[INITIAL_CAPACITY];
+    private double[] sums = new double[INITIAL_CAPACITY];
+    private double[] m2s = new double[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+
+    RollupTier(long bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    long getBucketSize() {
+        return bucketSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Folds a summary into the bucket that contains the given time, creating the
+     * bucket if needed. The squared deviations are merged as in
+     * {@link Summary#add(long, double, double, double, double)}.
+     */
+    void add(long time, double minimum, double maximum, double sum, double m2, long count) {
+        long bucketStart = Math.floorDiv(time, bucketSize) * bucketSize;
+        int index = size - 1;
+        if (index < 0 || bucketStarts[index] != bucketStart) {
+            index = Arrays.binarySearch(bucketStarts, 0, size, bucketStart);
+            if (index < 0) {
+                index = insert(-index - 1, bucketStart);
+            }
+        }
+        minimums[index] = Math.min(minimums[index], minimum);
+        maximums[index] = Math.max(maximums[index], maximum);
+        long previous = counts[index];
+        if (previous == 0) {
+            m2s[index] = m2;
+        } else {
+            double delta = sum / count - sums[index] / previous;
+            m2s[index] += m2 + delta * delta * ((double) previous * count / (previous + count));
+        }
+        sums[index] += sum;
+        counts[index] += count;
+    }
+
+    /**
+     * Removes every bucket that ends at or before the cutoff, folding it into the
+     * next coarser tier if one is given.
+     */
+    void evictBefore(long cutoff, RollupTier next) {
+        int evicted = 0;
+        while (evicted < size && bucketStarts[evicted] + bucketSize <= cutoff) {
+            if (next != null) {
+                next.add(bucketStarts[evicted], minimums[evicted], maximums[evicted], sums[evicted], m2s[evicted],
+                        counts[evicted]);
+            }
+            evicted++;
+        }
+        if (evicted > 0) {
+            size -= evicted;
+            System.arraycopy(bucketStarts, evicted, bucketStarts, 0, size);
+            System.arraycopy(minimums, evicted, minimums, 0, size);
+            System.arraycopy(maximums, evicted, maximums, 0, size);
+            System.arraycopy(sums, evicted, sums, 0, size);
+            System.arraycopy(m2s, evicted, m2s, 0, size);
+            System.arraycopy(counts, evicted, counts, 0, size);
+        }
+    }
+
+    /**
+     * Appends a {@link RollupRecord} for every bucket whose start lies within the
+     * given range.
+     */
+    void collect(List<PatientRecord> records, int patientId, int recordTypeCode, long startTime, long endTime) {
+        int from = Arrays.binarySearch(bucketStarts, 0, size, startTime);
+        for (int i = from < 0 ? -from - 1 : from; i < size && bucketStarts[i] <= endTime; i++) {
+            records.add(new RollupRecord(patientId, recordTypeCode, bucketStarts[i], bucketSize,
+                    minimums[i], maximums[i], sums[i], counts[i]));
+        }
+    }
+
+    /**
+     * Passes every bucket whose start lies within the given range to the
+     * consumer as a single reading at the bucket start, valued at the average.
+     */
+    void forEach(long startTime, long endTime, ReadingConsumer consumer) {
+        int from = Arrays.binarySearch(bucketStarts, 0, size, startTime);
+        for (int i = from < 0 ? -from - 1 : from; i < size && bucketStarts[i] <= endTime; i++) {
+            consumer.accept(bucketStarts[i], sums[i] / counts[i]);
+        }
+    }
+
+    /**
+     * Adds every bucket whose start lies within the given range to the summary.
+     */
+    void summarize(long startTime, long endTime, Summary summary) {
+        int from = Arrays.binarySearch(bucketStarts, 0, size, startTime);
+        for (int i = from < 0 ? -from - 1 : from; i < size && bucketStarts[i] <= endTime; i++) {
+            summary.add(counts[i], sums[i], m2s[i], minimums[i], maximums[i]);
+        }
+    }
+
+    /**
+     * Writes the bucket size and all buckets, oldest first, e.g. into a
+     * snapshot.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(bucketSize);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(bucketStarts[i]);
+            out.writeDouble(minimums[i]);
+            out.writeDouble(maximums[i]);
+            out.writeDouble(sums[i]);
+            out.writeDouble(m2s[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    /**
+     * Folds the buckets written by {@link #writeTo} into this tier, after the
+     * caller has read the bucket size.
+     */
+    void readBuckets(DataInput in) throws IOException {
+        int buckets = in.readInt();
+        for (int i = 0; i < buckets; i++) {
+            long bucketStart = in.readLong();
+            double minimum = in.readDouble();
+            double maximum = in.readDouble();
+            double sum = in.readDouble();
+            double m2 = in.readDouble();
+            add(bucketStart, minimum, maximum, sum, m2, in.readLong());
+        }
+    }
+
+    private int insert(int index, long bucketStart) {
+        if (size == bucketStarts.length) {
+            int capacity = size * 2;
+            bucketStarts = Arrays.copyOf(bucketStarts, capacity);
+            minimums = Arrays.copyOf(minimums, capacity);
+            maximums = Arrays.copyOf(maximums, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            m2s = Arrays.copyOf(m2s, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int moved = size - index;
+        System.arraycopy(bucketStarts, index, bucketStarts, index + 1, moved);
+        System.arraycopy(minimums, index, minimums, index + 1, moved);
+        System.arraycopy(maximums, index, maximums, index + 1, moved);
+        System.arraycopy(sums, index, sums, index + 1, moved);
+        System.arraycopy(m2s, index, m2s, index + 1, moved);
+        System.arraycopy(counts, index, counts, index + 1, moved);
+        bucketStarts[index] = bucketStart;
+        minimums[index] = Double.POSITIVE_INFINITY;
+        maximums[index] = Double.NEGATIVE_INFINITY;
+        sums[index] = 0;
+        m2s[index] = 0;
+        counts[index] = 0;
+        size++;
+        return index;
+    }
+}
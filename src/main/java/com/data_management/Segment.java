@@ -0,0 +1,51 @@
+package com.data_management;
+
+/**
+ * An immutable, time-ordered block of readings of one record type for one
+ * patient that lives outside the in-memory append buffer of a
+ * {@link TimeSeries}, for example a memory-mapped file from a previous run.
+ */
+interface Segment {
+    /**
+     * Returns the number of readings in the segment.
+     */
+    int size();
+
+    /**
+     * Returns the timestamp of the oldest reading in the segment.
+     */
+    long firstTimestamp();
+
+    /**
+     * Returns the timestamp of the newest reading in the segment.
+     */
+    long lastTimestamp();
+
+    /**
+     * Passes every reading within the given range, in timestamp order, to the
+     * consumer.
+     *
+     * @param startTime the start of the time range (inclusive)
+     * @param endTime   the end of the time range (inclusive)
+     * @param consumer  receives the matching readings
+     */
+    void forEach(long startTime, long endTime, ReadingConsumer consumer);
+
+    /**
+     * Adds every reading within the given range to the summary.
+     * Segments that keep precomputed summaries override this to skip decoding.
+     *
+     * @param startTime the start of the time range (inclusive)
+     * @param endTime   the end of the time range (inclusive)
+     * @param summary   receives the matching readings
+     */
+    default void summarize(long startTime, long endTime, Summary summary) {
+        forEach(startTime, endTime, (timestamp, value) -> summary.add(value));
+    }
+
+    /**
+     * Returns whether the readings of this segment are already stored on disk,
+     * so that snapshots of the in-memory state can leave them out.
+     */
+    boolean isPersistent();
+}
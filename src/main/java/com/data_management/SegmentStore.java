@@ -0,0 +1,357 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists the readings of a {@link DataStorage} as append-only binary segment
+ * files and maps them back in after a restart.
+ * Each patient has a directory holding one or more segment files per record
+ * type, named {@code <label>-<sequence>.seg}, where every character of the
+ * label other than an ASCII letter, digit or underscore is escaped as
+ * {@code %XX} per UTF-8 byte, so that labels from any input stay within their
+ * patient's directory. Other files are skipped. A segment starts with a 16 byte
+ * header (magic, format version, flags, reserved) followed by fixed-width
+ * records of a big-endian timestamp and value. On startup the files are
+ * memory-mapped and attached to the storage as read-only history, so restart
+ * time depends on the number of files rather than on the amount of history.
+ *
+ * <p>Writes are buffered per segment; call {@link #flush()} to hand them to the
+ * operating system and {@link #close()} on shutdown.
+ */
+public class SegmentStore implements DataStorageListener, Closeable {
+    static final int MAGIC = 0x56534547; // "VSEG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 16;
+    static final int FLAG_UNSORTED = 1; // set once a reading arrived older than its predecessor
+
+    private static final String EXTENSION = ".seg";
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final ConcurrentHashMap<Long, SegmentWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a segment store rooted at the given directory.
+     *
+     * @param directory the directory holding one sub-directory per patient
+     */
+    public SegmentStore(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Maps the existing segments into the storage and persists every reading
+     * added to it from now on.
+     *
+     * @param dataStorage the storage to restore and persist
+     * @throws IOException if the store directory cannot be read
+     */
+    public void attach(DataStorage dataStorage) throws IOException {
+        load(dataStorage);
+        dataStorage.addListener(this);
+    }
+
+    /**
+     * Maps the existing segments into the storage as read-only history.
+     * Segments whose readings are not in timestamp order, which only happens
+     * when late readings were persisted, are read into memory instead.
+     *
+     * @param dataStorage the storage to restore
+     * @throws IOException if the store directory cannot be read
+     */
+    public void load(DataStorage dataStorage) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> patients = Files.newDirectoryStream(directory)) {
+            for (Path patientDirectory : patients) {
+                int patientId;
+                try {
+                    patientId = Integer.parseInt(patientDirectory.getFileName().toString());
+                } catch (NumberFormatException e) {
+                    continue; // not a patient directory
+                }
+                for (Path file : listSegments(patientDirectory)) {
+                    loadSegment(dataStorage, patientId, file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onRecordAdded(int patientId, int recordTypeCode, long timestamp, double value) {
+        long key = ((long) patientId << 32) | recordTypeCode;
+        SegmentWriter writer = writers.computeIfAbsent(key,
+                k -> new SegmentWriter(directory.resolve(Integer.toString(patientId)),
+                        fileNameOf(RecordTypeRegistry.labelOf(recordTypeCode))));
+        try {
+            writer.append(timestamp, value);
+        } catch (IOException e) {
+            System.err.println("Error writing segment for patient " + patientId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes all buffered readings to their segment files.
+     *
+     * @throws IOException if a segment cannot be written
+     */
+    public void flush() throws IOException {
+        for (SegmentWriter writer : writers.values()) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes all open segment files.
+     *
+     * @throws IOException if a segment cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        for (SegmentWriter writer : writers.values()) {
+            writer.close();
+        }
+        writers.clear();
+    }
+
+    private void loadSegment(DataStorage dataStorage, int patientId, Path file) throws IOException {
+        String label = labelOfFileName(labelOf(file));
+        int recordTypeCode = RecordTypeRegistry.codeOf(label);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            if (records <= 0) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    HEADER_BYTES + records * RECORD_BYTES);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                System.err.println("Skipping segment with unknown format: " + file);
+                return;
+            }
+            MappedSegment segment = new MappedSegment(buffer, (int) records);
+            if ((buffer.getInt(8) & FLAG_UNSORTED) == 0) {
+                dataStorage.addHistory(patientId, recordTypeCode, segment);
+            } else {
+                Patient patient = dataStorage.getOrCreatePatient(patientId);
+                segment.forEach(Long.MIN_VALUE, Long.MAX_VALUE,
+                        (timestamp, value) -> patient.addRecord(value, recordTypeCode, timestamp));
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path patientDirectory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(patientDirectory, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                if (sequenceOf(file) < 0 || labelOfFileName(labelOf(file)) == null) {
+                    System.err.println("Skipping file that is not a segment: " + file);
+                } else {
+                    files.add(file);
+                }
+            }
+        }
+        // history has to be attached oldest first, i.e. by label and then by sequence number
+        files.sort((a, b) -> {
+            int byLabel = labelOf(a).compareTo(labelOf(b));
+            return byLabel != 0 ? byLabel : Integer.compare(sequenceOf(a), sequenceOf(b));
+        });
+        return files;
+    }
+
+    /**
+     * Returns the escaped label part of a segment file name, or an empty string
+     * if the name has none.
+     */
+    private static String labelOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, Math.max(0, name.lastIndexOf('-')));
+    }
+
+    /**
+     * Returns the sequence number of a segment file, or -1 if its name does not
+     * end in one.
+     */
+    private static int sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        int separator = name.lastIndexOf('-');
+        if (separator < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(separator + 1, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Escapes a label so that it can only name a file in the current directory.
+     */
+    static String fileNameOf(String label) {
+        StringBuilder name = new StringBuilder(label.length());
+        for (byte b : label.getBytes(StandardCharsets.UTF_8)) {
+            if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_') {
+                name.append((char) b);
+            } else {
+                name.append('%').append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Reverses {@link #fileNameOf(String)}.
+     *
+     * @return the label, or {@code null} if the name is not an escaped label
+     */
+    static String labelOfFileName(String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = new byte[name.length()];
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 2 < name.length()) {
+                int high = Character.digit(name.charAt(i + 1), 16);
+                int low = Character.digit(name.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes[length++] = (byte) (high << 4 | low);
+                i += 2;
+            } else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_') {
+                bytes[length++] = (byte) c;
+            } else {
+                return null;
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the readings of one patient and record type to the newest segment
+     * file, starting a new file when the current one is full.
+     */
+    private static class SegmentWriter {
+        private final Path patientDirectory;
+        private final String label;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private FileChannel channel;
+        private int sequence = -1;
+        private long bytes;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private boolean unsorted;
+
+        SegmentWriter(Path patientDirectory, String label) {
+            this.patientDirectory = patientDirectory;
+            this.label = label;
+        }
+
+        synchronized void append(long timestamp, double value) throws IOException {
+            if (channel == null) {
+                open();
+            }
+            if (bytes + RECORD_BYTES > MAX_SEGMENT_BYTES) {
+                roll();
+            }
+            if (timestamp < lastTimestamp && !unsorted) {
+                unsorted = true;
+                ByteBuffer flags = ByteBuffer.allocate(Integer.BYTES).putInt(0, FLAG_UNSORTED);
+                channel.write(flags, 8);
+            }
+            if (buffer.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            buffer.putLong(timestamp).putDouble(value);
+            bytes += RECORD_BYTES;
+            lastTimestamp = timestamp;
+        }
+
+        synchronized void flush() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        synchronized void close() throws IOException {
+            if (channel != null) {
+                flush();
+                channel.close();
+                channel = null;
+            }
+        }
+
+        private void open() throws IOException {
+            Files.createDirectories(patientDirectory);
+            int newest = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(patientDirectory, label + "-*" + EXTENSION)) {
+                for (Path file : stream) {
+                    if (labelOf(file).equals(label)) {
+                        newest = Math.max(newest, sequenceOf(file));
+                    }
+                }
+            }
+            openSegment(newest);
+        }
+
+        private void roll() throws IOException {
+            flush();
+            channel.close();
+            openSegment(sequence + 1);
+        }
+
+        private void openSegment(int next) throws IOException {
+            sequence = next;
+            Path file = patientDirectory.resolve(label + "-" + sequence + EXTENSION);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = channel.size();
+            unsorted = false;
+            lastTimestamp = Long.MIN_VALUE;
+            if (size < HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                size = HEADER_BYTES;
+            } else {
+                // drop a partially written trailing record left behind by a crash
+                size = HEADER_BYTES + (size - HEADER_BYTES) / RECORD_BYTES * RECORD_BYTES;
+                channel.truncate(size);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0);
+                unsorted = (header.getInt(8) & FLAG_UNSORTED) != 0;
+                if (size > HEADER_BYTES) {
+                    ByteBuffer last = ByteBuffer.allocate(Long.BYTES);
+                    channel.read(last, size - RECORD_BYTES);
+                    lastTimestamp = last.getLong(0);
+                }
+            }
+            channel.position(size);
+            bytes = size;
+        }
+    }
+}
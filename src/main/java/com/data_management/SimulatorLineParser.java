@@ -0,0 +1,194 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses the text formats written by the simulator directly from a
+ * {@link ByteBuffer}, for example a memory-mapped file or a socket buffer:
+ * the file and console layout
+ * {@code Patient ID: <id>, Timestamp: <millis>, Label: <label>, Data: <value>},
+ * and the compact {@code <id>,<millis>,<label>,<value>} layout of the TCP and
+ * WebSocket outputs.
+ * Lines are scanned byte by byte, labels are resolved against
+ * {@link RecordTypeRegistry} without creating strings and numbers are parsed
+ * in place, so a well-formed line produces no garbage. Saturation values may
+ * carry a {@code %} suffix and alert values are {@code triggered} (1) or
+ * {@code resolved} (0). Malformed lines are reported and skipped.
+ */
+final class SimulatorLineParser {
+    private static final byte[] PATIENT_ID = ascii("Patient ID: ");
+    private static final byte[] TIMESTAMP = ascii(", Timestamp: ");
+    private static final byte[] LABEL = ascii(", Label: ");
+    private static final byte[] DATA = ascii(", Data: ");
+    private static final byte[] TRIGGERED = ascii("triggered");
+    private static final byte[] RESOLVED = ascii("resolved");
+
+    private SimulatorLineParser() {
+    }
+
+    /**
+     * Parses the lines in {@code [from, to)} and passes each reading to the
+     * sink.
+     *
+     * @param buffer     the buffer holding the text
+     * @param from       the position of the first byte to parse
+     * @param to         the position one past the last byte to parse
+     * @param endOfInput whether a trailing line without a line break is
+     *                   complete, rather than still being written
+     * @param sink       receives the parsed readings
+     * @return the position after the last line that was parsed, i.e. the start
+     *         of an incomplete trailing line or {@code to}
+     */
+    static int parse(ByteBuffer buffer, int from, int to, boolean endOfInput, RecordSink sink) {
+        return parseLines(buffer, from, to, endOfInput, false, sink);
+    }
+
+    /**
+     * Parses the lines in {@code [from, to)} in the compact
+     * {@code <id>,<millis>,<label>,<value>} layout and passes each reading to
+     * the sink.
+     *
+     * @param buffer     the buffer holding the text
+     * @param from       the position of the first byte to parse
+     * @param to         the position one past the last byte to parse
+     * @param endOfInput whether a trailing line without a line break is
+     *                   complete, rather than still being received
+     * @param sink       receives the parsed readings
+     * @return the position after the last line that was parsed, i.e. the start
+     *         of an incomplete trailing line or {@code to}
+     */
+    static int parseCompact(ByteBuffer buffer, int from, int to, boolean endOfInput, RecordSink sink) {
+        return parseLines(buffer, from, to, endOfInput, true, sink);
+    }
+
+    private static int parseLines(ByteBuffer buffer, int from, int to, boolean endOfInput, boolean compact,
+                                  RecordSink sink) {
+        int lineStart = from;
+        for (int position = from; position < to; position++) {
+            if (buffer.get(position) == '\n') {
+                parseLine(buffer, lineStart, position, compact, sink);
+                lineStart = position + 1;
+            }
+        }
+        if (endOfInput && lineStart < to) {
+            parseLine(buffer, lineStart, to, compact, sink);
+            lineStart = to;
+        }
+        return lineStart;
+    }
+
+    /**
+     * Parses a single line without its line break.
+     */
+    private static void parseLine(ByteBuffer buffer, int from, int to, boolean compact, RecordSink sink) {
+        while (to > from && isWhitespace(buffer.get(to - 1))) {
+            to--; // also drops the carriage return of CRLF line breaks
+        }
+        int start = from;
+        while (start < to && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        if (start == to) { // Skip empty lines
+            return;
+        }
+
+        int idStart = compact ? from : skip(buffer, from, to, PATIENT_ID);
+        int idEnd = indexOf(buffer, idStart, to, ',');
+        int timestampStart = compact ? next(idEnd, to) : skip(buffer, idEnd, to, TIMESTAMP);
+        int timestampEnd = indexOf(buffer, timestampStart, to, ',');
+        int labelStart = compact ? next(timestampEnd, to) : skip(buffer, timestampEnd, to, LABEL);
+        int labelEnd = indexOf(buffer, labelStart, to, ',');
+        int dataStart = compact ? next(labelEnd, to) : skip(buffer, labelEnd, to, DATA);
+        if (dataStart < 0 || indexOf(buffer, dataStart, to, ',') != to) {
+            System.err.println("Skipping malformed line: " + DecimalParser.text(buffer, from, to));
+            return;
+        }
+
+        try {
+            int patientId = DecimalParser.parseInt(buffer, idStart, idEnd);
+            long timestamp = DecimalParser.parseLong(buffer, timestampStart, timestampEnd);
+            int recordType = RecordTypeRegistry.codeOf(buffer, labelStart, labelEnd);
+
+            double measurementValue;
+            if (recordType == RecordTypeRegistry.SATURATION && buffer.get(to - 1) == '%') {
+                measurementValue = DecimalParser.parseDouble(buffer, dataStart, to - 1);
+            } else if (recordType == RecordTypeRegistry.ALERT) {
+                if (equalsIgnoreCase(buffer, dataStart, to, TRIGGERED)) {
+                    measurementValue = 1.0;
+                } else if (equalsIgnoreCase(buffer, dataStart, to, RESOLVED)) {
+                    measurementValue = 0.0;
+                } else {
+                    return;
+                }
+            } else {
+                measurementValue = DecimalParser.parseDouble(buffer, dataStart, to);
+            }
+            sink.add(patientId, measurementValue, recordType, timestamp);
+        } catch (IllegalArgumentException e) { // also a label once the registry is full
+            System.err.println("Error parsing line: " + DecimalParser.text(buffer, from, to) + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the position after the expected bytes, or -1 if they are not
+     * found at the given position.
+     */
+    private static int skip(ByteBuffer buffer, int position, int to, byte[] expected) {
+        if (position < 0 || to - position < expected.length) {
+            return -1;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + i) != expected[i]) {
+                return -1;
+            }
+        }
+        return position + expected.length;
+    }
+
+    /**
+     * Returns the position after a separator, or -1 if there is none.
+     */
+    private static int next(int separator, int to) {
+        return separator < 0 || separator >= to ? -1 : separator + 1;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, char c) {
+        if (from < 0) {
+            return -1;
+        }
+        for (int position = from; position < to; position++) {
+            if (buffer.get(position) == c) {
+                return position;
+            }
+        }
+        return to;
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buffer, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            byte b = buffer.get(from + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
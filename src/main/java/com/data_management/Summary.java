@@ -0,0 +1,116 @@
+package com.data_management;
+
+/**
+ * Accumulates the count, sum, minimum, maximum and sum of squared deviations
+ * of a set of readings, from single readings as well as from the summaries of
+ * whole blocks, so that every {@link AggregateFunction} can be computed in one
+ * pass. Blocks are merged with the pairwise variance update of Chan et al.,
+ * which stays accurate where a running sum of squares would cancel out.
+ * Not thread-safe.
+ */
+final class Summary {
+    private long count;
+    private double sum;
+    private double m2;
+    private double min;
+    private double max;
+
+    Summary() {
+        reset();
+    }
+
+    void reset() {
+        count = 0;
+        sum = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    void add(double value) {
+        if (count == 0) {
+            count = 1;
+            sum = value;
+            min = value;
+            max = value;
+            return;
+        }
+        double previousMean = sum / count;
+        count++;
+        sum += value;
+        m2 += (value - previousMean) * (value - sum / count);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void add(long count, double sum, double m2, double min, double max) {
+        if (count == 0) {
+            return;
+        }
+        if (this.count == 0) {
+            this.count = count;
+            this.sum = sum;
+            this.m2 = m2;
+            this.min = min;
+            this.max = max;
+            return;
+        }
+        double delta = sum / count - this.sum / this.count;
+        long total = this.count + count;
+        this.m2 += m2 + delta * delta * ((double) this.count * count / total);
+        this.count = total;
+        this.sum += sum;
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+    }
+
+    void add(Summary other) {
+        add(other.count, other.sum, other.m2, other.min, other.max);
+    }
+
+    long count() {
+        return count;
+    }
+
+    double sum() {
+        return sum;
+    }
+
+    double m2() {
+        return m2;
+    }
+
+    double min() {
+        return min;
+    }
+
+    double max() {
+        return max;
+    }
+
+    double result(AggregateFunction function) {
+        switch (function) {
+            case COUNT:
+                return count;
+            case SUM:
+                return sum;
+            default:
+                break;
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        switch (function) {
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            case MEAN:
+                return sum / count;
+            case STDDEV:
+                return Math.sqrt(Math.max(0, m2 / count));
+            default:
+                throw new IllegalArgumentException("Unknown aggregate function: " + function);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.data_management;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the {@code .txt} files written by {@code FileOutputStrategy} and
+ * stores every line as soon as it is appended.
+ * For each file the reader remembers the byte offset up to which it has read
+ * complete lines, so it only ever reads newly appended bytes; a partial
+ * trailing line is left for the next read. A {@link WatchService} on the
+ * directory triggers the reads, and every file is also checked once a second
+ * in case an event was missed. A file that shrinks is assumed to have been
+ * replaced and is read again from the start.
+ *
+ * <p>The offsets are saved to a file after every read and on {@link #close()},
+ * so a restarted reader resumes where the previous one stopped. This only
+ * avoids duplicates if the storage itself survives the restart, e.g. through
+ * a {@link WriteAheadLog} or {@link SegmentStore}.
+ */
+public class TailingFileDataReader implements DataReader, Closeable {
+    private static final String EXTENSION = ".txt";
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+    private static final long RESCAN_MILLIS = 1000;
+
+    private final Path directory;
+    private final Path offsetsFile;
+    private final Map<String, Long> offsets = new HashMap<>(); // guarded by this
+    private final RecordBatch batch = new RecordBatch(); // guarded by this
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES); // guarded by this
+    private DataStorage dataStorage;
+    private WatchService watchService;
+    private Thread follower;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a reader that follows the files in the given directory and
+     * keeps its offsets in a {@code .offsets} file next to them.
+     *
+     * @param outputDirectory path to the directory containing output files
+     */
+    public TailingFileDataReader(String outputDirectory) {
+        this(outputDirectory, Paths.get(outputDirectory, ".offsets").toString());
+    }
+
+    /**
+     * Constructs a reader that follows the files in the given directory.
+     *
+     * @param outputDirectory path to the directory containing output files
+     * @param offsetsFile     path to the file in which read offsets are kept
+     */
+    public TailingFileDataReader(String outputDirectory, String offsetsFile) {
+        this.directory = Paths.get(outputDirectory);
+        this.offsetsFile = Paths.get(offsetsFile);
+    }
+
+    /**
+     * Reads everything appended since the saved offsets and then keeps
+     * following the files on a background thread until {@link #close()} is
+     * called.
+     *
+     * @param dataStorage the DataStorage to populate
+     * @throws IOException if the directory or offsets cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Invalid output directory: " + directory);
+        }
+        synchronized (this) {
+            if (this.dataStorage != null) {
+                throw new IllegalStateException("Reader is already following " + directory);
+            }
+            this.dataStorage = dataStorage;
+            loadOffsets();
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        poll();
+        follower = new Thread(this::followLoop, "file-tailer");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * Reads the lines appended to any file since the last read.
+     *
+     * @return the number of readings added to the storage
+     * @throws IOException if a file cannot be read or the offsets cannot be saved
+     */
+    public synchronized int poll() throws IOException {
+        int readings = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                readings += readAppended(file);
+            }
+        }
+        if (readings > 0) {
+            saveOffsets();
+        }
+        return readings;
+    }
+
+    /**
+     * Stops following the files and saves the offsets.
+     *
+     * @throws IOException if the offsets cannot be saved
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close(); // wakes up the follower
+        }
+        if (follower != null) {
+            try {
+                follower.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (dataStorage != null) {
+                saveOffsets();
+            }
+        }
+    }
+
+    private void followLoop() {
+        while (!closed) {
+            try {
+                WatchKey key = watchService.poll(RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    poll(); // nothing happened, or an event was lost
+                    continue;
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || context != null && context.toString().endsWith(EXTENSION);
+                }
+                key.reset();
+                if (changed) {
+                    poll();
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.err.println("Error following " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores the complete lines appended to a file since its saved offset.
+     */
+    private int readAppended(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long offset = offsets.getOrDefault(name, 0L);
+        int readings = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                offset = 0; // the file was truncated or replaced
+            }
+            while (offset < size) {
+                buffer.clear();
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                int parsed = SimulatorLineParser.parse(buffer, 0, read, false, batch);
+                if (parsed == 0) {
+                    if (read < buffer.capacity()) {
+                        break; // only a partial line so far
+                    }
+                    buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2); // a line longer than the buffer
+                    continue;
+                }
+                offset += parsed;
+                readings += batch.size();
+                dataStorage.addBatch(batch);
+                batch.clear();
+            }
+        }
+        offsets.put(name, offset);
+        return readings;
+    }
+
+    private void loadOffsets() throws IOException {
+        if (!Files.exists(offsetsFile)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(offsetsFile, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            int separator = line.lastIndexOf(' ');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                offsets.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed offset: " + line);
+            }
+        }
+    }
+
+    private void saveOffsets() throws IOException {
+        Path temporary = offsetsFile.resolveSibling(offsetsFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                out.write(entry.getKey() + " " + entry.getValue());
+                out.newLine();
+            }
+        }
+        // replace the old offsets in one step so a crash never leaves a half-written file
+        Files.move(temporary, offsetsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,234 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the live {@code <id>,<millis>,<label>,<value>} stream published by
+ * {@code TcpOutputStrategy} and stores it without going through files.
+ * A non-blocking {@link SocketChannel} reads into a direct buffer that is
+ * parsed in place by {@link SimulatorLineParser}, so well-formed lines are
+ * stored without allocation. If the connection cannot be established or is
+ * lost, the reader reconnects with an exponential back-off.
+ *
+ * <p>Parsed readings are collected into a fixed pool of batches that a
+ * separate thread adds to the storage. When the storage falls behind and all
+ * batches are queued, the reader stops reading from the socket until a batch
+ * is free again, so TCP flow control slows the sender down instead of memory
+ * growing without bound. {@link #isBackpressured()} reports this state.
+ *
+ * <p>The reader also accepts the binary stream of
+ * {@code BinaryTcpOutputStrategy}; the format is detected from the first byte
+ * received on each connection and decoded by {@link BinaryRecordDecoder}.
+ */
+public class TcpDataReader implements DataReader, Closeable {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int BATCHES = 8;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long SELECT_TIMEOUT_MILLIS = 200;
+
+    private final InetSocketAddress address;
+    private final BlockingQueue<RecordBatch> freeBatches = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<RecordBatch> fullBatches = new ArrayBlockingQueue<>(BATCHES);
+    private volatile boolean closed;
+    private volatile boolean backpressured;
+    private volatile boolean connected;
+    private Selector selector;
+    private Thread receiver;
+    private Thread writer;
+
+    /**
+     * Constructs a reader for the stream of a simulator instance.
+     *
+     * @param host the host the simulator runs on
+     * @param port the port passed to the simulator's {@code --output tcp:} option
+     */
+    public TcpDataReader(String host, int port) {
+        this.address = InetSocketAddress.createUnresolved(host, port);
+        for (int i = 0; i < BATCHES; i++) {
+            freeBatches.add(new RecordBatch());
+        }
+    }
+
+    /**
+     * Starts receiving the stream on a background thread and returns
+     * immediately; readings are added to the storage until {@link #close()} is
+     * called.
+     *
+     * @param dataStorage the storage to populate
+     * @throws IOException if the selector cannot be opened
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) throws IOException {
+        if (receiver != null) {
+            throw new IllegalStateException("Reader is already receiving from " + address);
+        }
+        selector = Selector.open();
+        receiver = new Thread(this::receiveLoop, "tcp-reader");
+        receiver.setDaemon(true);
+        writer = new Thread(() -> writeLoop(dataStorage), "tcp-reader-writer");
+        writer.setDaemon(true);
+        receiver.start();
+        writer.start();
+    }
+
+    /**
+     * Returns whether the reader is connected to the simulator.
+     *
+     * @return {@code true} while a connection is established
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns whether the reader has stopped reading from the socket because
+     * the storage has not caught up with the readings received so far.
+     *
+     * @return {@code true} while every batch is waiting to be stored
+     */
+    public boolean isBackpressured() {
+        return backpressured;
+    }
+
+    /**
+     * Disconnects, then stores the readings that were already received.
+     *
+     * @throws IOException if the selector cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Selector current;
+        Thread receiving;
+        Thread writing;
+        synchronized (this) {
+            current = selector;
+            receiving = receiver;
+            writing = writer;
+        }
+        if (current == null) {
+            return;
+        }
+        current.wakeup();
+        join(receiving);
+        join(writing);
+        current.close();
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        try {
+            RecordBatch batch = freeBatches.take();
+            while (!closed) {
+                try (SocketChannel channel = SocketChannel.open()) {
+                    channel.configureBlocking(false);
+                    channel.connect(new InetSocketAddress(address.getHostString(), address.getPort()));
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+                    buffer.clear();
+                    BinaryRecordDecoder decoder = null;
+                    boolean formatKnown = false;
+                    while (!closed) {
+                        selector.select(SELECT_TIMEOUT_MILLIS);
+                        selector.selectedKeys().clear();
+                        if (key.isValid() && key.isConnectable() && channel.finishConnect()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                            connected = true;
+                            backoff = INITIAL_BACKOFF_MILLIS;
+                        }
+                        if (!connected || !key.isReadable()) {
+                            continue;
+                        }
+                        int read;
+                        while ((read = channel.read(buffer)) > 0) {
+                            if (!formatKnown) {
+                                decoder = BinaryRecordDecoder.isBinary(buffer, 0) ? new BinaryRecordDecoder() : null;
+                                formatKnown = true;
+                            }
+                            int parsed = decoder != null ? decoder.decode(buffer, 0, buffer.position(), batch)
+                                    : SimulatorLineParser.parseCompact(buffer, 0, buffer.position(), false, batch);
+                            // keep the incomplete trailing line or record for the next read
+                            buffer.flip().position(parsed);
+                            buffer.compact();
+                            if (!buffer.hasRemaining()) {
+                                buffer.clear(); // a line longer than the buffer, drop it
+                            }
+                        }
+                        if (batch.size() > 0) {
+                            batch = handOff(batch);
+                        }
+                        if (read < 0) {
+                            throw new EOFException("Connection closed by " + address);
+                        }
+                    }
+                } catch (IOException e) {
+                    if (!closed) {
+                        System.err.println("TCP connection to " + address + " failed: " + e.getMessage());
+                    }
+                } finally {
+                    connected = false;
+                }
+                if (!closed) {
+                    Thread.sleep(backoff);
+                    backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                }
+            }
+            if (batch.size() > 0) {
+                fullBatches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a filled batch for storage and returns an empty one, waiting for
+     * the storage to catch up if there is none.
+     */
+    private RecordBatch handOff(RecordBatch batch) throws InterruptedException {
+        fullBatches.put(batch);
+        RecordBatch empty = freeBatches.poll();
+        if (empty == null) {
+            backpressured = true;
+            empty = freeBatches.take();
+            backpressured = false;
+        }
+        return empty;
+    }
+
+    private void writeLoop(DataStorage dataStorage) {
+        try {
+            while (true) {
+                RecordBatch batch = fullBatches.poll(SELECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    dataStorage.addBatch(batch);
+                    batch.clear();
+                    freeBatches.put(batch);
+                } else if (closed && !receiver.isAlive()) {
+                    return; // everything received has been stored
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,801 @@
+package com.data_management;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Stores the readings of a single record type for one patient in columnar
+ * form.
+ * Timestamps and measurement values are kept in two parallel primitive arrays
+ * that are ordered by timestamp, so no object is allocated per reading and
+ * range lookups are answered with a binary search instead of a full scan.
+ *
+ * <p>Writers are serialized per series, readers never lock. A reader takes a
+ * {@link Snapshot}, which sees a time-ordered prefix of the series that later
+ * appends cannot change: in-order appends only write past the published end,
+ * and anything that would move existing readings (growing or compacting the
+ * arrays, or inserting a late reading) is done on fresh copies that are
+ * published afterwards.
+ *
+ * <p>Readings are addressed by logical indices that keep counting up as the
+ * {@link RetentionPolicy} evicts old readings from the front of the buffer.
+ * Evicted readings are folded into per-minute and per-hour
+ * {@link RollupTier rollups}, and the buffer is compacted to twice the live
+ * size whenever it fills up, so memory stays bounded by the retained horizon.
+ *
+ * <p>A series can also carry immutable history {@link Segment segments} in
+ * front of the buffer: segment files mapped back in after a restart, and
+ * blocks of cold readings that the retention policy sealed into
+ * {@link CompressedSegment Gorilla-compressed} form. History and the buffer
+ * are published so that a reader never sees a sealed reading twice.
+ *
+ * <p>The buffer keeps {@link BlockSummaries block summaries} next to the
+ * values, and sealed blocks keep a summary of their own, so
+ * {@link #aggregate} folds long ranges without visiting every reading.
+ */
+public class TimeSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SEAL_BLOCK_SIZE = 1024; // readings per compressed block
+
+    private final int recordTypeCode;
+    private volatile Columns columns;
+    private volatile long start; // logical index of the oldest retained reading
+    private volatile long end; // logical index one past the newest reading
+    private volatile History history = History.EMPTY;
+    private volatile boolean rolledUp;
+
+    // guarded by this
+    private RetentionPolicy retentionPolicy;
+    private RollupTier minuteRollups;
+    private RollupTier hourRollups;
+
+    /**
+     * Constructs an empty series for the given record type that keeps all
+     * readings.
+     *
+     * @param recordTypeCode the code of the record type stored in this series,
+     *                       see {@link RecordTypeRegistry}
+     */
+    public TimeSeries(int recordTypeCode) {
+        this(recordTypeCode, RetentionPolicy.KEEP_ALL);
+    }
+
+    /**
+     * Constructs an empty series for the given record type.
+     *
+     * @param recordTypeCode  the code of the record type stored in this series,
+     *                        see {@link RecordTypeRegistry}
+     * @param retentionPolicy how long readings are kept and at which resolution
+     */
+    public TimeSeries(int recordTypeCode, RetentionPolicy retentionPolicy) {
+        this.recordTypeCode = recordTypeCode;
+        this.retentionPolicy = retentionPolicy;
+        this.columns = new Columns(new long[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], 0);
+    }
+
+    /**
+     * Appends a reading to the series.
+     * Readings normally arrive in timestamp order and are simply appended; a
+     * late reading is inserted at its sorted position so that the columns stay
+     * ordered. Readings with equal timestamps keep their arrival order.
+     *
+     * @param timestamp the time of the reading, in milliseconds since UNIX epoch
+     * @param value     the measured value
+     */
+    synchronized void append(long timestamp, double value) {
+        Columns current = columns;
+        long first = start;
+        long count = end;
+        int last = (int) (count - current.base) - 1;
+        if (count > first && timestamp < current.timestamps[last]) {
+            // copy on write, concurrent readers may be searching the current arrays
+            Columns copy = copyLive(current, first, count, capacityFor(count - first + 1, current));
+            int position = new Snapshot(recordTypeCode, copy, 0, (int) (count - first)).upperBound(timestamp);
+            int moved = (int) (count - first) - position;
+            System.arraycopy(copy.timestamps, position, copy.timestamps, position + 1, moved);
+            System.arraycopy(copy.values, position, copy.values, position + 1, moved);
+            copy.timestamps[position] = timestamp;
+            copy.values[position] = value;
+            copy.summaries.completedUpTo((int) (count - first) + 1, copy.valueAt);
+            columns = copy;
+        } else {
+            if (last + 1 == current.timestamps.length) {
+                current = copyLive(current, first, count, capacityFor(count - first + 1, current));
+                current.summaries.completedUpTo((int) (count - first), current.valueAt);
+                columns = current;
+            }
+            int position = (int) (count - current.base);
+            current.timestamps[position] = timestamp;
+            current.values[position] = value;
+            current.summaries.completed(position, current.valueAt);
+        }
+        end = count + 1;
+        if (retentionPolicy.isCompressing() || retentionPolicy.isBounded()) {
+            Columns updated = columns;
+            long newest = updated.timestamps[(int) (count - updated.base)];
+            if (retentionPolicy.isCompressing()) {
+                sealColdReadings(newest);
+            }
+            if (retentionPolicy.isBounded()) {
+                enforceRetention(newest);
+            }
+        }
+    }
+
+    /**
+     * Appends a run of readings under a single lock.
+     * A run that is in timestamp order and starts no earlier than the newest
+     * reading is copied into the columns in one go; otherwise the readings are
+     * appended one by one, as by {@link #append(long, double)}.
+     *
+     * @param timestamps the times of the readings, in milliseconds since UNIX epoch
+     * @param values     the measured values
+     * @param length     the number of readings, taken from the start of the arrays
+     */
+    synchronized void appendAll(long[] timestamps, double[] values, int length) {
+        if (length == 0) {
+            return;
+        }
+        Columns current = columns;
+        long first = start;
+        long count = end;
+        boolean inOrder = count == first || timestamps[0] >= current.timestamps[(int) (count - current.base) - 1];
+        for (int i = 1; i < length && inOrder; i++) {
+            inOrder = timestamps[i] >= timestamps[i - 1];
+        }
+        if (!inOrder) {
+            for (int i = 0; i < length; i++) {
+                append(timestamps[i], values[i]);
+            }
+            return;
+        }
+        if (count + length - current.base > current.timestamps.length) {
+            current = copyLive(current, first, count, capacityFor(count - first + length, current));
+            current.summaries.completedUpTo((int) (count - first), current.valueAt);
+            columns = current;
+        }
+        int position = (int) (count - current.base);
+        System.arraycopy(timestamps, 0, current.timestamps, position, length);
+        System.arraycopy(values, 0, current.values, position, length);
+        for (int i = position; i < position + length; i++) {
+            current.summaries.completed(i, current.valueAt);
+        }
+        end = count + length;
+        if (retentionPolicy.isCompressing()) {
+            sealColdReadings(timestamps[length - 1]);
+        }
+        if (retentionPolicy.isBounded()) {
+            enforceRetention(timestamps[length - 1]);
+        }
+    }
+
+    /**
+     * Changes the retention policy of this series. The new policy takes effect
+     * with the next appended reading.
+     *
+     * @param retentionPolicy how long readings are kept and at which resolution
+     */
+    public synchronized void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    /**
+     * Returns a consistent, immutable view of the raw readings retained in
+     * memory, not including history segments.
+     *
+     * @return a snapshot of this series
+     */
+    public Snapshot snapshot() {
+        return snapshot(history);
+    }
+
+    private Snapshot snapshot(History sealed) {
+        Columns current;
+        long count;
+        do {
+            current = columns;
+            count = end;
+            // if the columns were not replaced meanwhile they hold every reading before count
+        } while (current != columns);
+        long first = Math.max(Math.max(start, current.base), sealed.sealedEnd);
+        return new Snapshot(recordTypeCode, current, (int) (first - current.base), (int) Math.max(0, count - first));
+    }
+
+    /**
+     * Materializes the readings that fall within a time range as
+     * {@link PatientRecord} objects.
+     * Readings held in history segments are merged in front of the in-memory
+     * ones. If part of the range is older than the retained raw readings, the
+     * compacted history is returned as {@link RollupRecord}s in front of them.
+     *
+     * @param patientId the patient the records belong to
+     * @param startTime the start of the time range (inclusive), in milliseconds
+     *                  since UNIX epoch
+     * @param endTime   the end of the time range (inclusive), in milliseconds
+     *                  since UNIX epoch
+     * @return the matching records in timestamp order
+     */
+    public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+        History sealed;
+        Snapshot raw;
+        do {
+            sealed = history;
+            raw = snapshot(sealed);
+            // sealing publishes the history before moving the buffer start, so an unchanged history means no overlap
+        } while (sealed != history);
+        if (isRawOnly(sealed, raw, startTime)) {
+            return raw.getRecords(patientId, startTime, endTime);
+        }
+        if (rolledUp) {
+            return getRecordsWithRollups(patientId, startTime, endTime);
+        }
+        if (sealed.segments.length == 0) {
+            return raw.getRecords(patientId, startTime, endTime);
+        }
+        List<PatientRecord> records = new ArrayList<>();
+        collectHistory(records, patientId, sealed, startTime, endTime);
+        records.addAll(raw.getRecords(patientId, startTime, endTime));
+        return sortIfNeeded(records);
+    }
+
+    /**
+     * Positions a cursor on the readings that fall within a time range.
+     * Buffered readings are read in place; readings held in history segments
+     * or rollups are decoded into the cursor's own arrays.
+     *
+     * @param startTime the start of the time range (inclusive), in milliseconds
+     *                  since UNIX epoch
+     * @param endTime   the end of the time range (inclusive), in milliseconds
+     *                  since UNIX epoch
+     * @param cursor    the cursor to position, its previous range is discarded
+     * @return the cursor
+     */
+    public RecordCursor cursor(long startTime, long endTime, RecordCursor cursor) {
+        History sealed;
+        Snapshot raw;
+        do {
+            sealed = history;
+            raw = snapshot(sealed);
+        } while (sealed != history);
+        cursor.clear();
+        if (isRawOnly(sealed, raw, startTime)) {
+            raw.view(startTime, endTime, cursor);
+        } else if (rolledUp) {
+            cursorWithRollups(startTime, endTime, cursor);
+        } else {
+            forEachInHistory(sealed, startTime, endTime, cursor.collector());
+            cursor.sortBuffered();
+            raw.view(startTime, endTime, cursor);
+        }
+        return cursor;
+    }
+
+    private synchronized void cursorWithRollups(long startTime, long endTime, RecordCursor cursor) {
+        History sealed = history;
+        Snapshot raw = snapshot(sealed);
+        if (hourRollups != null) {
+            hourRollups.forEach(startTime, endTime, cursor.collector());
+        }
+        if (minuteRollups != null) {
+            minuteRollups.forEach(startTime, endTime, cursor.collector());
+        }
+        forEachInHistory(sealed, startTime, endTime, cursor.collector());
+        cursor.sortBuffered();
+        raw.view(startTime, endTime, cursor);
+    }
+
+    private static void forEachInHistory(History sealed, long startTime, long endTime, ReadingConsumer consumer) {
+        for (Segment segment : sealed.segments) {
+            if (segment.firstTimestamp() <= endTime && segment.lastTimestamp() >= startTime) {
+                segment.forEach(startTime, endTime, consumer);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a range starting at the given time lies entirely within
+     * the buffered readings.
+     */
+    private static boolean isRawOnly(History sealed, Snapshot raw, long startTime) {
+        Segment[] segments = sealed.segments;
+        // a late reading may sit in the buffer in front of newer sealed readings
+        return raw.size() > 0 && startTime >= raw.getTimestamp(0)
+                && (segments.length == 0 || startTime > segments[segments.length - 1].lastTimestamp());
+    }
+
+    private synchronized List<PatientRecord> getRecordsWithRollups(int patientId, long startTime, long endTime) {
+        // holding the lock keeps the buffer, history and rollups from moving readings between each other
+        History sealed = history;
+        Snapshot raw = snapshot(sealed);
+        List<PatientRecord> records = new ArrayList<>();
+        if (hourRollups != null) {
+            hourRollups.collect(records, patientId, recordTypeCode, startTime, endTime);
+        }
+        if (minuteRollups != null) {
+            minuteRollups.collect(records, patientId, recordTypeCode, startTime, endTime);
+        }
+        collectHistory(records, patientId, sealed, startTime, endTime);
+        records.addAll(raw.getRecords(patientId, startTime, endTime));
+        return sortIfNeeded(records);
+    }
+
+    private void collectHistory(List<PatientRecord> records, int patientId, History sealed, long startTime,
+                                long endTime) {
+        forEachInHistory(sealed, startTime, endTime,
+                (timestamp, value) -> records.add(new PatientRecord(patientId, value, recordTypeCode, timestamp)));
+    }
+
+    /**
+     * Aggregates the readings within a time range in fixed-width buckets.
+     * Bucket {@code i} covers {@code [startTime + i * bucketSize,
+     * startTime + (i + 1) * bucketSize)}, the last bucket ends at
+     * {@code endTime}. Whole blocks of readings are folded from their
+     * precomputed summaries, so no record is materialized. Periods compacted
+     * into rollups contribute their minimum, maximum, sum and count, but not
+     * their spread.
+     *
+     * @param startTime  the start of the time range (inclusive), in
+     *                   milliseconds since UNIX epoch
+     * @param endTime    the end of the time range (inclusive), in milliseconds
+     *                   since UNIX epoch
+     * @param bucketSize the width of a bucket, in milliseconds
+     * @param function   the function to compute for each bucket
+     * @return the result of each bucket
+     */
+    public double[] aggregate(long startTime, long endTime, long bucketSize, AggregateFunction function) {
+        History sealed;
+        Snapshot raw;
+        do {
+            sealed = history;
+            raw = snapshot(sealed);
+        } while (sealed != history);
+        if (rolledUp && (raw.size() == 0 || startTime < raw.getTimestamp(0))) {
+            return aggregateWithRollups(startTime, endTime, bucketSize, function);
+        }
+        return aggregate(null, null, sealed, raw, startTime, endTime, bucketSize, function);
+    }
+
+    private synchronized double[] aggregateWithRollups(long startTime, long endTime, long bucketSize,
+                                                       AggregateFunction function) {
+        History sealed = history;
+        return aggregate(hourRollups, minuteRollups, sealed, snapshot(sealed), startTime, endTime, bucketSize,
+                function);
+    }
+
+    private static double[] aggregate(RollupTier hours, RollupTier minutes, History sealed, Snapshot raw,
+                                      long startTime, long endTime, long bucketSize, AggregateFunction function) {
+        double[] results = new double[bucketCount(startTime, endTime, bucketSize)];
+        Summary summary = new Summary();
+        long bucketStart = startTime;
+        for (int i = 0; i < results.length; i++, bucketStart += bucketSize) {
+            long bucketEnd = Long.compareUnsigned(endTime - bucketStart, bucketSize) < 0
+                    ? endTime : bucketStart + bucketSize - 1;
+            summary.reset();
+            if (hours != null) {
+                hours.summarize(bucketStart, bucketEnd, summary);
+            }
+            if (minutes != null) {
+                minutes.summarize(bucketStart, bucketEnd, summary);
+            }
+            for (Segment segment : sealed.segments) {
+                if (segment.firstTimestamp() <= bucketEnd && segment.lastTimestamp() >= bucketStart) {
+                    segment.summarize(bucketStart, bucketEnd, summary);
+                }
+            }
+            raw.summarize(bucketStart, bucketEnd, summary);
+            results[i] = summary.result(function);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the result of aggregating a time range that holds no readings.
+     */
+    static double[] emptyAggregate(long startTime, long endTime, long bucketSize, AggregateFunction function) {
+        double[] results = new double[bucketCount(startTime, endTime, bucketSize)];
+        Arrays.fill(results, new Summary().result(function));
+        return results;
+    }
+
+    private static int bucketCount(long startTime, long endTime, long bucketSize) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+        if (endTime < startTime) {
+            return 0;
+        }
+        // the span may exceed Long.MAX_VALUE, but it always fits an unsigned long
+        long buckets = Long.divideUnsigned(endTime - startTime, bucketSize) + 1;
+        if (buckets <= 0 || buckets > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many buckets: " + Long.toUnsignedString(buckets));
+        }
+        return (int) buckets;
+    }
+
+    private static List<PatientRecord> sortIfNeeded(List<PatientRecord> records) {
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i).getTimestamp() < records.get(i - 1).getTimestamp()) {
+                // late readings may overlap the history, fall back to a stable sort
+                records.sort(Comparator.comparingLong(PatientRecord::getTimestamp));
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Passes every reading that exists only in memory, i.e. the buffered
+     * readings and the sealed compressed blocks but not the mapped segment
+     * files, to the consumer in timestamp order of each part.
+     *
+     * @param consumer receives the readings
+     */
+    void forEachInMemory(ReadingConsumer consumer) {
+        History sealed;
+        Snapshot raw;
+        do {
+            sealed = history;
+            raw = snapshot(sealed);
+        } while (sealed != history);
+        for (Segment segment : sealed.segments) {
+            if (!segment.isPersistent()) {
+                segment.forEach(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+            }
+        }
+        for (int i = 0; i < raw.size(); i++) {
+            consumer.accept(raw.getTimestamp(i), raw.getValue(i));
+        }
+    }
+
+    /**
+     * Writes the minute and hour rollups, e.g. into a snapshot.
+     *
+     * @param out receives the rollups
+     * @throws IOException if they cannot be written
+     */
+    synchronized void writeRollups(DataOutput out) throws IOException {
+        out.writeInt((minuteRollups != null ? 1 : 0) + (hourRollups != null ? 1 : 0));
+        if (minuteRollups != null) {
+            minuteRollups.writeTo(out);
+        }
+        if (hourRollups != null) {
+            hourRollups.writeTo(out);
+        }
+    }
+
+    /**
+     * Folds rollups written by {@link #writeRollups} into this series. They
+     * are kept whatever the current retention policy, which evicts them as
+     * usual once newer readings arrive.
+     *
+     * @param in the rollups
+     * @throws IOException if they cannot be read
+     */
+    synchronized void readRollups(DataInput in) throws IOException {
+        int tiers = in.readInt();
+        for (int i = 0; i < tiers; i++) {
+            long bucketSize = in.readLong();
+            RollupTier tier;
+            if (bucketSize == RetentionPolicy.MINUTE) {
+                if (minuteRollups == null) {
+                    minuteRollups = new RollupTier(RetentionPolicy.MINUTE);
+                }
+                tier = minuteRollups;
+            } else if (bucketSize == RetentionPolicy.HOUR) {
+                if (hourRollups == null) {
+                    hourRollups = new RollupTier(RetentionPolicy.HOUR);
+                }
+                tier = hourRollups;
+            } else {
+                throw new IOException("Unknown rollup bucket size: " + bucketSize);
+            }
+            tier.readBuckets(in);
+            rolledUp |= tier.size() > 0;
+        }
+    }
+
+    /**
+     * Attaches an immutable block of readings in front of the in-memory buffer.
+     * Segments must be added oldest first.
+     *
+     * @param segment the readings to attach
+     */
+    synchronized void addHistory(Segment segment) {
+        history = history.append(segment, history.sealedEnd);
+    }
+
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the number of raw readings currently retained in memory, not
+     * counting history segments.
+     *
+     * @return the number of retained raw readings
+     */
+    public int size() {
+        return (int) (end - start);
+    }
+
+    /**
+     * Returns the number of readings held in history segments.
+     *
+     * @return the number of readings in history segments
+     */
+    public long historySize() {
+        long readings = 0;
+        for (Segment segment : history.segments) {
+            readings += segment.size();
+        }
+        return readings;
+    }
+
+    private void sealColdReadings(long newest) {
+        long cutoff = newest - retentionPolicy.getCompressionHorizon();
+        Columns current = columns;
+        long first = start;
+        while (end - first >= SEAL_BLOCK_SIZE
+                && current.timestamps[(int) (first + SEAL_BLOCK_SIZE - 1 - current.base)] < cutoff) {
+            Segment block = CompressedSegment.encode(current.timestamps, current.values,
+                    (int) (first - current.base), SEAL_BLOCK_SIZE);
+            first += SEAL_BLOCK_SIZE;
+            history = history.append(block, first);
+            start = first;
+        }
+    }
+
+    private void enforceRetention(long newest) {
+        long rawCutoff = newest - retentionPolicy.getRawHorizon();
+        History sealed = history;
+        int expired = 0;
+        while (expired < sealed.segments.length && sealed.segments[expired].lastTimestamp() < rawCutoff) {
+            expired++;
+        }
+        if (expired > 0) {
+            RollupTier target = rollupTarget();
+            if (target != null) {
+                rolledUp = true; // readers must take the lock before the readings move into the rollups
+                for (int i = 0; i < expired; i++) {
+                    sealed.segments[i].forEach(Long.MIN_VALUE, Long.MAX_VALUE,
+                            (timestamp, value) -> target.add(timestamp, value, value, value, 0, 1));
+                }
+            }
+            history = sealed.dropFirst(expired);
+        }
+
+        Columns current = columns;
+        long count = end;
+        long first = start;
+        if (count > first && current.timestamps[(int) (first - current.base)] < rawCutoff) {
+            int from = (int) (first - current.base);
+            int to = new Snapshot(recordTypeCode, current, from, (int) (count - first)).lowerBound(rawCutoff) + from;
+            RollupTier target = rollupTarget();
+            if (target != null) {
+                rolledUp = true;
+                for (int i = from; i < to; i++) {
+                    double value = current.values[i];
+                    target.add(current.timestamps[i], value, value, value, 0, 1);
+                }
+            }
+            start = first + (to - from);
+        }
+        long minuteCutoff = before(rawCutoff, retentionPolicy.getMinuteRollupHorizon());
+        if (minuteRollups != null) {
+            minuteRollups.evictBefore(minuteCutoff, hourTier());
+        }
+        if (hourRollups != null) {
+            hourRollups.evictBefore(before(minuteCutoff, retentionPolicy.getHourRollupHorizon()), null);
+        }
+    }
+
+    private static long before(long time, long horizon) {
+        return horizon == Long.MAX_VALUE ? Long.MIN_VALUE : time - horizon;
+    }
+
+    private RollupTier rollupTarget() {
+        RollupTier target = minuteTier();
+        return target != null ? target : hourTier();
+    }
+
+    private RollupTier minuteTier() {
+        if (minuteRollups == null && retentionPolicy.getMinuteRollupHorizon() > 0) {
+            minuteRollups = new RollupTier(RetentionPolicy.MINUTE);
+        }
+        return minuteRollups;
+    }
+
+    private RollupTier hourTier() {
+        if (hourRollups == null && retentionPolicy.getHourRollupHorizon() > 0) {
+            hourRollups = new RollupTier(RetentionPolicy.HOUR);
+        }
+        return hourRollups;
+    }
+
+    private static int capacityFor(long required, Columns current) {
+        if (required <= current.timestamps.length / 2) {
+            return current.timestamps.length; // evictions freed enough room, compact in place of growing
+        }
+        return (int) Math.max(INITIAL_CAPACITY, required * 2);
+    }
+
+    private static Columns copyLive(Columns current, long first, long count, int capacity) {
+        long[] timestamps = new long[capacity];
+        double[] values = new double[capacity];
+        int from = (int) (first - current.base);
+        int live = (int) (count - first);
+        System.arraycopy(current.timestamps, from, timestamps, 0, live);
+        System.arraycopy(current.values, from, values, 0, live);
+        return new Columns(timestamps, values, first);
+    }
+
+    private static final class Columns {
+        final long[] timestamps;
+        final double[] values;
+        final long base; // logical index of the reading in slot 0
+        final BlockSummaries summaries;
+        final IntToDoubleFunction valueAt;
+
+        Columns(long[] timestamps, double[] values, long base) {
+            this.timestamps = timestamps;
+            this.values = values;
+            this.base = base;
+            this.summaries = new BlockSummaries(values.length);
+            this.valueAt = index -> values[index];
+        }
+    }
+
+    /**
+     * The history segments of a series together with the logical index up to
+     * which buffered readings have been sealed into them.
+     */
+    private static final class History {
+        static final History EMPTY = new History(new Segment[0], 0);
+
+        final Segment[] segments;
+        final long sealedEnd;
+
+        History(Segment[] segments, long sealedEnd) {
+            this.segments = segments;
+            this.sealedEnd = sealedEnd;
+        }
+
+        History append(Segment segment, long newSealedEnd) {
+            Segment[] grown = Arrays.copyOf(segments, segments.length + 1);
+            grown[segments.length] = segment;
+            return new History(grown, newSealedEnd);
+        }
+
+        History dropFirst(int count) {
+            return new History(Arrays.copyOfRange(segments, count, segments.length), sealedEnd);
+        }
+    }
+
+    /**
+     * A point-in-time view of the raw readings of a {@link TimeSeries}.
+     * The readings at indices {@code [0, size())} are ordered by timestamp and
+     * never change, regardless of concurrent appends to the series.
+     */
+    public static final class Snapshot {
+        private final int recordTypeCode;
+        private final Columns columns;
+        private final long[] timestamps;
+        private final double[] values;
+        private final int offset;
+        private final int size;
+
+        private Snapshot(int recordTypeCode, Columns columns, int offset, int size) {
+            this.recordTypeCode = recordTypeCode;
+            this.columns = columns;
+            this.timestamps = columns.timestamps;
+            this.values = columns.values;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /**
+         * Returns the index of the first reading whose timestamp is greater than
+         * or equal to the given time, or {@link #size()} if there is none.
+         *
+         * @param time the time to search for, in milliseconds since UNIX epoch
+         * @return the first index at or after {@code time}
+         */
+        public int lowerBound(long time) {
+            int low = offset;
+            int high = offset + size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - offset;
+        }
+
+        /**
+         * Returns the index of the first reading whose timestamp is strictly
+         * greater than the given time, or {@link #size()} if there is none.
+         *
+         * @param time the time to search for, in milliseconds since UNIX epoch
+         * @return the first index after {@code time}
+         */
+        public int upperBound(long time) {
+            int low = offset;
+            int high = offset + size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - offset;
+        }
+
+        /**
+         * Materializes the readings of this snapshot that fall within a time
+         * range as {@link PatientRecord} objects.
+         *
+         * @param patientId the patient the records belong to
+         * @param startTime the start of the time range (inclusive)
+         * @param endTime   the end of the time range (inclusive)
+         * @return the matching records in timestamp order
+         */
+        public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+            int from = lowerBound(startTime);
+            int to = upperBound(endTime);
+            List<PatientRecord> records = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                records.add(new PatientRecord(patientId, values[offset + i], recordTypeCode, timestamps[offset + i]));
+            }
+            return records;
+        }
+
+        /**
+         * Makes the readings of this snapshot that fall within a time range
+         * visible through the cursor, without copying them.
+         */
+        void view(long startTime, long endTime, RecordCursor cursor) {
+            int from = lowerBound(startTime);
+            int to = Math.max(from, upperBound(endTime));
+            cursor.view(timestamps, values, offset + from, offset + to);
+        }
+
+        /**
+         * Adds the readings of this snapshot that fall within a time range to
+         * the summary.
+         */
+        void summarize(long startTime, long endTime, Summary summary) {
+            int from = lowerBound(startTime);
+            int to = upperBound(endTime);
+            if (from < to) {
+                columns.summaries.fold(offset + from, offset + to, columns.valueAt, summary);
+            }
+        }
+
+        public int getRecordTypeCode() {
+            return recordTypeCode;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTimestamp(int index) {
+            return timestamps[offset + index];
+        }
+
+        public double getValue(int index) {
+            return values[offset + index];
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+/**
+ * Receives the readings broadcast by {@code WebSocketOutputStrategy}, one
+ * {@code <id>,<millis>,<label>,<value>} text frame per reading, and stores
+ * them.
+ * The network thread only puts each frame into a bounded queue, so frame
+ * handling never waits for the storage or for listeners such as alert
+ * evaluation. A dedicated writer thread drains the queue in micro-batches,
+ * parses them in place with {@link SimulatorLineParser} and adds them to the
+ * storage. If the writer falls so far behind that the queue is full, new
+ * frames are dropped and counted, see {@link #getDroppedFrames()}.
+ *
+ * <p>Binary frames sent by {@code BinaryWebSocketOutputStrategy} are accepted
+ * as well and decoded by {@link BinaryRecordDecoder}.
+ *
+ * <p>When the connection is lost, the writer reconnects with an exponential
+ * back-off until {@link #close()} is called.
+ */
+public class WebSocketDataReader implements DataReader, Closeable {
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_FRAMES = 1024;
+    private static final long POLL_MILLIS = 200;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final URI uri;
+    private final BlockingQueue<Object> frames = new ArrayBlockingQueue<>(QUEUE_CAPACITY); // String or ByteBuffer
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final BinaryRecordDecoder decoder = new BinaryRecordDecoder(); // used by the writer only
+    private volatile boolean closed;
+    private Client client;
+    private Thread writer;
+
+    /**
+     * Constructs a reader for the WebSocket server of a simulator instance.
+     *
+     * @param uri the server address, e.g. {@code ws://localhost:8080}
+     * @throws URISyntaxException if the address is not a valid URI
+     */
+    public WebSocketDataReader(String uri) throws URISyntaxException {
+        this.uri = new URI(uri);
+    }
+
+    /**
+     * Connects to the server and returns immediately; readings are added to the
+     * storage on a background thread until {@link #close()} is called.
+     *
+     * @param dataStorage the storage to populate
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) {
+        if (writer != null) {
+            throw new IllegalStateException("Reader is already receiving from " + uri);
+        }
+        client = new Client(uri);
+        client.connect();
+        writer = new Thread(() -> writeLoop(dataStorage), "websocket-reader-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns whether the reader is connected to the server.
+     *
+     * @return {@code true} while the connection is open
+     */
+    public boolean isConnected() {
+        Client current = client;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * Returns the number of frames dropped because the storage did not keep up.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Disconnects, then stores the frames that were already received.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread writing;
+        synchronized (this) {
+            writing = writer;
+        }
+        if (writing == null) {
+            return;
+        }
+        try {
+            writing.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(DataStorage dataStorage) {
+        List<Object> pending = new ArrayList<>(MAX_BATCH_FRAMES);
+        ByteBuffer text = ByteBuffer.allocate(64 * 1024);
+        RecordBatch batch = new RecordBatch();
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        long reconnectAt = 0;
+        try {
+            while (!closed) {
+                Object first = frames.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    pending.add(first);
+                    frames.drainTo(pending, MAX_BATCH_FRAMES - 1);
+                    text = store(pending, text, batch, dataStorage);
+                    backoff = INITIAL_BACKOFF_MILLIS;
+                } else if (client.isClosed() && System.currentTimeMillis() >= reconnectAt) {
+                    // reconnecting is not allowed on the network thread, so the writer does it
+                    if (!client.reconnectBlocking()) {
+                        reconnectAt = System.currentTimeMillis() + backoff;
+                        backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                    }
+                }
+            }
+            client.closeBlocking();
+            frames.drainTo(pending);
+            store(pending, text, batch, dataStorage);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parses a micro-batch of frames and adds it to the storage in one go.
+     *
+     * @return the text buffer, grown if the frames did not fit
+     */
+    private ByteBuffer store(List<Object> pending, ByteBuffer text, RecordBatch batch, DataStorage dataStorage) {
+        text.clear();
+        for (Object frame : pending) {
+            if (frame instanceof String) {
+                text = append(text, (String) frame);
+            } else {
+                parseText(text, batch); // keeps the readings in the order they were received
+                decode((ByteBuffer) frame, batch);
+            }
+        }
+        pending.clear();
+        parseText(text, batch);
+        dataStorage.addBatch(batch);
+        batch.clear();
+        return text;
+    }
+
+    private static void parseText(ByteBuffer text, RecordBatch batch) {
+        SimulatorLineParser.parseCompact(text, 0, text.position(), true, batch);
+        text.clear();
+    }
+
+    private void decode(ByteBuffer frame, RecordBatch batch) {
+        try {
+            if (decoder.decode(frame, frame.position(), frame.limit(), batch) != frame.limit()) {
+                System.err.println("Skipping incomplete record in binary frame from " + uri);
+            }
+        } catch (IOException e) {
+            System.err.println("Skipping binary frame from " + uri + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer append(ByteBuffer text, String frame) {
+        int length = frame.length();
+        if (text.remaining() < length * 3 + 1) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(text.capacity() * 2, text.position() + length * 3 + 1));
+            text.flip();
+            grown.put(text);
+            text = grown;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = frame.charAt(i);
+            if (c > 127) {
+                text.put(frame.substring(i).getBytes(StandardCharsets.UTF_8)); // rare non-ASCII label
+                break;
+            }
+            text.put((byte) c);
+        }
+        return text.put((byte) '\n');
+    }
+
+    /**
+     * Queues every frame for the writer without blocking the network
+     * thread.
+     */
+    private class Client extends WebSocketClient {
+        Client(URI uri) {
+            super(uri);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            System.out.println("Connected to " + uri);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            if (!frames.offer(message)) {
+                droppedFrames.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            if (!frames.offer(bytes)) {
+                droppedFrames.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            if (!closed) {
+                System.err.println("Connection to " + uri + " closed: " + reason);
+            }
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            if (!closed) {
+                System.err.println("WebSocket error on " + uri + ": " + ex.getMessage());
+            }
+        }
+    }
+}
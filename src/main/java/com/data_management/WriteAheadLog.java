@@ -0,0 +1,628 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a {@link DataStorage} crash-safe with a write-ahead log and periodic
+ * snapshots.
+ * Every reading passed to {@link DataStorage#addPatientData} or
+ * {@link DataStorage#addBatch} is appended to an in-memory batch of the log
+ * before the storage applies it; a background thread writes each batch to the
+ * current log file and, depending on the {@link Durability}, forces it to disk
+ * once per batch (group commit). Under {@link Durability#SYNC} the storage
+ * applies a reading only once it is durable, so readers never see a reading a
+ * crash could lose. If a batch cannot be written, the log fails for good: no
+ * later reading is reported durable, and waiting callers and every later
+ * append get an exception, so a reading that never reached the disk is
+ * rejected rather than stored.
+ *
+ * <p>A checkpoint rolls the log over to a new generation and compacts the
+ * previous snapshot and the log files of the generations it closed into a new
+ * snapshot, after which those files are deleted. The snapshot is built from
+ * the files rather than from the live storage, so it holds exactly the
+ * readings of the generations it covers, however much is ingested meanwhile,
+ * and checkpoints do not have to stop ingest. Recovery loads the latest
+ * snapshot and replays the log files of later generations verbatim, repeated
+ * readings included. The storage's retention policies apply while compacting,
+ * and the minute and hour rollups they produce are part of the snapshot;
+ * history attached from a {@link SegmentStore} is not logged and not part of
+ * the snapshot.
+ */
+public class WriteAheadLog implements Closeable {
+    /**
+     * Trades ingest latency against how much recently added data a crash can
+     * lose.
+     */
+    public enum Durability {
+        /** Batches are handed to the operating system but never forced to disk. */
+        NONE,
+        /** Each batch is forced to disk; ingest does not wait for it. */
+        BATCH,
+        /** Each batch is forced to disk and ingest waits until its reading is durable. */
+        SYNC
+    }
+
+    private static final byte RECORD = 'R';
+    private static final byte LABEL = 'L';
+    private static final int RECORD_BYTES = 1 + Integer.BYTES * 2 + Long.BYTES + Double.BYTES;
+    private static final int SNAPSHOT_MAGIC = 0x56534E50; // "VSNP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int INITIAL_BATCH_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final Durability durability;
+    private final long commitIntervalMillis;
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BATCH_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BATCH_BYTES);
+    private boolean[] labelsWritten = new boolean[0];
+    private long appendedSequence;
+    private long durableSequence;
+    private FileChannel channel;
+    private int generation;
+    private boolean closed;
+    private IOException failure; // once set, nothing more is acknowledged as durable
+    private boolean rotationRequested;
+    private int closedGeneration = -1;
+
+    private final Object checkpointLock = new Object();
+    private Thread committer;
+    private DataStorage attached;
+    private ScheduledExecutorService checkpointScheduler;
+
+    /**
+     * Constructs a write-ahead log that commits a batch at least every 10
+     * milliseconds.
+     *
+     * @param directory  the directory holding the log and snapshot files
+     * @param durability whether and how batches are forced to disk
+     */
+    public WriteAheadLog(String directory, Durability durability) {
+        this(directory, durability, 10);
+    }
+
+    /**
+     * Constructs a write-ahead log.
+     *
+     * @param directory            the directory holding the log and snapshot
+     *                             files
+     * @param durability           whether and how batches are forced to disk
+     * @param commitIntervalMillis the longest time a reading waits for its batch
+     *                             to be committed
+     */
+    public WriteAheadLog(String directory, Durability durability, long commitIntervalMillis) {
+        this.directory = Paths.get(directory);
+        this.durability = durability;
+        this.commitIntervalMillis = commitIntervalMillis;
+    }
+
+    /**
+     * Recovers the storage from the latest snapshot and the log, then logs every
+     * reading added to it from now on, before it is stored.
+     *
+     * @param dataStorage the storage to recover and protect
+     * @throws IOException           if the log directory cannot be read or
+     *                               written
+     * @throws IllegalStateException if the storage already has a write-ahead
+     *                               log
+     */
+    public void attach(DataStorage dataStorage) throws IOException {
+        Files.createDirectories(directory);
+        int snapshotGeneration = -1;
+        for (int candidate : generations("snapshot-", ".snap")) {
+            snapshotGeneration = Math.max(snapshotGeneration, candidate);
+        }
+        if (snapshotGeneration >= 0) {
+            readSnapshot(dataStorage, snapshotFile(snapshotGeneration));
+        }
+        int newest = snapshotGeneration;
+        for (int logGeneration : generations("wal-", ".log")) {
+            if (logGeneration > snapshotGeneration) {
+                replay(dataStorage, logFile(logGeneration));
+            }
+            newest = Math.max(newest, logGeneration);
+        }
+        synchronized (this) {
+            openGeneration(newest + 1);
+        }
+        committer = new Thread(this::commitLoop, "wal-committer");
+        committer.setDaemon(true);
+        committer.start();
+        attached = dataStorage;
+        dataStorage.setWriteAheadLog(this);
+    }
+
+    /**
+     * Writes a checkpoint every {@code periodMillis} milliseconds.
+     *
+     * @param dataStorage  the storage to snapshot
+     * @param periodMillis the time between two checkpoints
+     */
+    public synchronized void scheduleCheckpoints(DataStorage dataStorage, long periodMillis) {
+        if (checkpointScheduler == null) {
+            checkpointScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "wal-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        checkpointScheduler.scheduleAtFixedRate(() -> {
+            try {
+                checkpoint(dataStorage);
+            } catch (IOException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Logs a reading that the storage is about to apply and, under
+     * {@link Durability#SYNC}, waits until it is durable.
+     *
+     * @throws IllegalStateException if the log can no longer be written, or
+     *                               under {@link Durability#SYNC} if this
+     *                               reading could not be made durable, in which
+     *                               case the storage must not apply it
+     */
+    void log(int patientId, int recordTypeCode, long timestamp, double value) {
+        long sequence;
+        synchronized (this) {
+            if (!isWritable()) {
+                return;
+            }
+            put(patientId, recordTypeCode, timestamp, value);
+            sequence = appendedSequence;
+        }
+        awaitIfSync(sequence);
+    }
+
+    /**
+     * Logs all readings of a batch that the storage is about to apply at once
+     * and, under {@link Durability#SYNC}, waits for the disk once for the whole
+     * batch.
+     *
+     * @throws IllegalStateException if the log can no longer be written, or
+     *                               under {@link Durability#SYNC} if the batch
+     *                               could not be made durable, in which case
+     *                               the storage must not apply it
+     */
+    void log(RecordBatch batch) {
+        long sequence;
+        synchronized (this) {
+            if (!isWritable()) {
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                put(batch.getPatientId(i), batch.getRecordTypeCode(i), batch.getTimestamp(i),
+                        batch.getMeasurementValue(i));
+            }
+            sequence = appendedSequence;
+        }
+        awaitIfSync(sequence);
+    }
+
+    private boolean isWritable() {
+        if (closed) {
+            return false;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Write-ahead log failed: " + failure.getMessage(), failure);
+        }
+        return true;
+    }
+
+    private void put(int patientId, int recordTypeCode, long timestamp, double value) {
+        if (recordTypeCode >= labelsWritten.length || !labelsWritten[recordTypeCode]) {
+            writeLabel(recordTypeCode);
+        }
+        reserve(RECORD_BYTES);
+        pending.put(RECORD).putInt(patientId).putInt(recordTypeCode).putLong(timestamp).putDouble(value);
+        ++appendedSequence;
+        if (pending.position() >= INITIAL_BATCH_BYTES) {
+            notifyAll(); // wake the committer early for large batches
+        }
+    }
+
+    private void awaitIfSync(long sequence) {
+        if (durability == Durability.SYNC) {
+            try {
+                awaitDurable(sequence);
+            } catch (IOException e) {
+                throw new IllegalStateException("Write-ahead log failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Rolls the log over to a new generation and writes a snapshot that
+     * replaces all older log files.
+     *
+     * @param dataStorage the storage whose retention policies the snapshot
+     *                    applies
+     * @throws IOException if the log or the snapshot cannot be written
+     */
+    public void checkpoint(DataStorage dataStorage) throws IOException {
+        synchronized (checkpointLock) {
+            writeCheckpoint(dataStorage);
+        }
+    }
+
+    private void writeCheckpoint(DataStorage dataStorage) throws IOException {
+        int covered;
+        synchronized (this) {
+            if (committer == null) {
+                throw new IllegalStateException("The write-ahead log is not attached");
+            }
+            covered = generation;
+            // the committer rolls over between two batches, so no write can be in progress on a closed channel
+            rotationRequested = true;
+            notifyAll();
+            while (closedGeneration < covered && failure == null && committer.isAlive()) {
+                waitQuietly(commitIntervalMillis);
+            }
+            if (closedGeneration < covered) {
+                throw new IOException("Write-ahead log failed before generation " + covered + " was closed",
+                        failure);
+            }
+        }
+        DataStorage compacted = new DataStorage();
+        for (int code = 0; code < RecordTypeRegistry.size(); code++) {
+            RetentionPolicy retentionPolicy = dataStorage.getRetentionPolicy(code);
+            if (retentionPolicy != RetentionPolicy.KEEP_ALL) {
+                compacted.setRetentionPolicy(RecordTypeRegistry.labelOf(code), retentionPolicy);
+            }
+        }
+        int previous = -1;
+        for (int snapshotGeneration : generations("snapshot-", ".snap")) {
+            if (snapshotGeneration < covered) {
+                previous = Math.max(previous, snapshotGeneration);
+            }
+        }
+        if (previous >= 0) {
+            readSnapshot(compacted, snapshotFile(previous));
+        }
+        for (int logGeneration : generations("wal-", ".log")) {
+            if (logGeneration > previous && logGeneration <= covered) {
+                replay(compacted, logFile(logGeneration));
+            }
+        }
+        Path temporary = directory.resolve("snapshot-" + covered + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeSnapshot(compacted, Channels.newOutputStream(out));
+            out.force(true);
+        }
+        Files.move(temporary, snapshotFile(covered), StandardCopyOption.ATOMIC_MOVE);
+        for (int old : generations("wal-", ".log")) {
+            if (old <= covered) {
+                Files.deleteIfExists(logFile(old));
+            }
+        }
+        for (int old : generations("snapshot-", ".snap")) {
+            if (old < covered) {
+                Files.deleteIfExists(snapshotFile(old));
+            }
+        }
+    }
+
+    /**
+     * Commits the pending batch, stops the committer and closes the log.
+     *
+     * @throws IOException if the last batch cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdown();
+        }
+        if (attached != null) {
+            attached.setWriteAheadLog(null);
+        }
+        IOException lost = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                awaitDurable(appendedSequence);
+            } catch (IOException e) {
+                lost = e;
+            }
+            closed = true;
+            notifyAll();
+        }
+        if (committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+        if (lost != null) {
+            throw lost;
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long sequence;
+            FileChannel target;
+            boolean rotate;
+            int rotated = -1;
+            synchronized (this) {
+                while (!closed && pending.position() == 0 && !rotationRequested) {
+                    waitQuietly(commitIntervalMillis);
+                }
+                if (pending.position() == 0 && !rotationRequested) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                sequence = appendedSequence;
+                target = channel;
+                rotate = rotationRequested;
+                if (rotate) {
+                    rotationRequested = false;
+                    rotated = generation;
+                    try {
+                        // readings appended from now on go to the new generation, which defines its own labels
+                        openGeneration(generation + 1);
+                    } catch (IOException e) {
+                        System.err.println("Error rolling over write-ahead log: " + e.getMessage());
+                        failure = e;
+                        notifyAll();
+                        return;
+                    }
+                }
+            }
+            try {
+                // written outside the lock so that ingest keeps filling the other buffer
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                if (rotate) {
+                    target.force(true);
+                    target.close();
+                } else if (durability != Durability.NONE) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing write-ahead log: " + e.getMessage());
+                synchronized (this) {
+                    // the batch may be partially on disk, so neither it nor anything after it is durable
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                batch.clear();
+                durableSequence = sequence;
+                if (rotate) {
+                    closedGeneration = rotated;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the readings up to a sequence number are durable.
+     *
+     * @throws IOException if the log failed before they were written
+     */
+    private synchronized void awaitDurable(long sequence) throws IOException {
+        while (durableSequence < sequence && failure == null && committer != null && committer.isAlive()) {
+            notifyAll();
+            waitQuietly(commitIntervalMillis);
+        }
+        if (durableSequence < sequence && failure != null) {
+            throw new IOException("Write-ahead log failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private void writeLabel(int recordTypeCode) {
+        byte[] label = RecordTypeRegistry.labelOf(recordTypeCode).getBytes(StandardCharsets.UTF_8);
+        reserve(1 + Integer.BYTES + Short.BYTES + label.length);
+        pending.put(LABEL).putInt(recordTypeCode).putShort((short) label.length).put(label);
+        if (recordTypeCode >= labelsWritten.length) {
+            labelsWritten = Arrays.copyOf(labelsWritten, Math.max(recordTypeCode + 1, RecordTypeRegistry.size()));
+        }
+        labelsWritten[recordTypeCode] = true;
+    }
+
+    private void openGeneration(int next) throws IOException {
+        channel = FileChannel.open(logFile(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        generation = next;
+        // codes are only meaningful within one process, so every log file defines its labels
+        labelsWritten = new boolean[RecordTypeRegistry.size()];
+    }
+
+    private void replay(DataStorage dataStorage, Path file) throws IOException {
+        Map<Integer, Integer> codes = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte kind = in.readByte();
+                if (kind == LABEL) {
+                    int code = in.readInt();
+                    int length = in.readUnsignedShort();
+                    if (length == 0) {
+                        break; // a torn label, labels are never empty
+                    }
+                    byte[] label = new byte[length];
+                    in.readFully(label);
+                    codes.put(code, RecordTypeRegistry.codeOf(new String(label, StandardCharsets.UTF_8)));
+                } else if (kind == RECORD) {
+                    int patientId = in.readInt();
+                    Integer code = codes.get(in.readInt());
+                    long timestamp = in.readLong();
+                    double value = in.readDouble();
+                    if (code != null) {
+                        dataStorage.getOrCreatePatient(patientId).addRecord(value, code, timestamp);
+                    }
+                } else {
+                    break; // zero-filled or torn tail
+                }
+            }
+        } catch (EOFException e) {
+            // the last batch was only partially written before the crash
+        }
+    }
+
+    private static void writeSnapshot(DataStorage dataStorage, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, INITIAL_BATCH_BYTES));
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        int labels = RecordTypeRegistry.size();
+        out.writeInt(labels);
+        for (int code = 0; code < labels; code++) {
+            out.writeUTF(RecordTypeRegistry.labelOf(code));
+        }
+        List<Patient> patients = dataStorage.getAllPatients();
+        for (Patient patient : patients) {
+            for (int code = 0; code < labels; code++) {
+                TimeSeries series = patient.getSeries(code);
+                if (series == null) {
+                    continue;
+                }
+                LogBatch readings = new LogBatch();
+                series.forEachInMemory(readings);
+                // columnar layout: all timestamps, then all values, then the rollups
+                out.writeBoolean(true);
+                out.writeInt(patient.getPatientId());
+                out.writeInt(code);
+                out.writeInt(readings.size);
+                for (int i = 0; i < readings.size; i++) {
+                    out.writeLong(readings.timestamps[i]);
+                }
+                for (int i = 0; i < readings.size; i++) {
+                    out.writeDouble(readings.values[i]);
+                }
+                series.writeRollups(out);
+            }
+        }
+        out.writeBoolean(false);
+        out.flush();
+    }
+
+    private static void readSnapshot(DataStorage dataStorage, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                INITIAL_BATCH_BYTES))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unknown snapshot format: " + file);
+            }
+            int[] codes = new int[in.readInt()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = RecordTypeRegistry.codeOf(in.readUTF());
+            }
+            while (in.readBoolean()) {
+                Patient patient = dataStorage.getOrCreatePatient(in.readInt());
+                int code = codes[in.readInt()];
+                long[] timestamps = new long[in.readInt()];
+                for (int i = 0; i < timestamps.length; i++) {
+                    timestamps[i] = in.readLong();
+                }
+                for (long timestamp : timestamps) {
+                    patient.addRecord(in.readDouble(), code, timestamp);
+                }
+                patient.getOrCreateSeries(code).readRollups(in);
+            }
+        }
+    }
+
+    /**
+     * Collects the readings of one series into growing primitive columns.
+     */
+    private static final class LogBatch implements ReadingConsumer {
+        long[] timestamps = new long[64];
+        double[] values = new double[64];
+        int size;
+
+        @Override
+        public void accept(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size++] = value;
+        }
+    }
+
+    private List<Integer> generations(String prefix, String suffix) throws IOException {
+        List<Integer> found = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        found.sort(null);
+        return found;
+    }
+
+    private Path logFile(int logGeneration) {
+        return directory.resolve("wal-" + logGeneration + ".log");
+    }
+
+    private Path snapshotFile(int snapshotGeneration) {
+        return directory.resolve("snapshot-" + snapshotGeneration + ".snap");
+    }
+}
@@ -0,0 +1,78 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertDeduplicator;
+import com.alerts.StreamingAlertEngine;
+import com.data_management.DataStorage;
+
+import java.util.List;
+
+class AlertDeduplicatorTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testAlertDeduplicatorNotifiesOncePerEpisode() {
+        // Test that repeats are suppressed, active episodes re-notify, and resolved episodes raise again
+        AlertDeduplicator deduplicator = new AlertDeduplicator(60000, 120000, 30000);
+        long t = 1700000000000L;
+        assertTrue(deduplicator.offer(new Alert("1", "Low Blood Saturation", t)));
+        assertFalse(deduplicator.offer(new Alert("1", "Low Blood Saturation", t)));
+        assertTrue(deduplicator.offer(new Alert("2", "Low Blood Saturation", t)));
+        assertFalse(deduplicator.offer(new Alert("1", "Low Blood Saturation", t + 10000)));
+        assertEquals(AlertDeduplicator.State.ACTIVE, deduplicator.getState(1, "Low Blood Saturation", t + 10000));
+        assertFalse(deduplicator.offer(new Alert("1", "Low Blood Saturation", t + 50000)));
+        assertFalse(deduplicator.offer(new Alert("1", "Low Blood Saturation", t + 90000)));
+        assertTrue(deduplicator.offer(new Alert("1", "Low Blood Saturation", t + 130000))); // re-notify
+        assertEquals(AlertDeduplicator.State.RESOLVED, deduplicator.getState(1, "Low Blood Saturation", t + 191000));
+        assertTrue(deduplicator.offer(new Alert("1", "Low Blood Saturation", t + 230000))); // new episode
+        assertEquals(AlertDeduplicator.State.RAISED, deduplicator.getState(1, "Low Blood Saturation", t + 230000));
+        assertNull(deduplicator.getState(1, "Abnormal Heart Rate", t));
+
+        AlertDeduplicator flapping = new AlertDeduplicator(10000, 120000, 60000);
+        assertTrue(flapping.offer(new Alert("1", "Abnormal Heart Rate", t)));
+        assertFalse(flapping.offer(new Alert("1", "Abnormal Heart Rate", t + 20000))); // within the cooldown
+
+        // the overlapping ECG windows around one peak are a single event
+        AlertDeduplicator ecg = new AlertDeduplicator();
+        List<Alert> notified = new java.util.ArrayList<>();
+        new StreamingAlertEngine(alert -> {
+            if (ecg.offer(alert)) {
+                notified.add(alert);
+            }
+        }).attach(storage);
+        for (int i = 0; i < 9; i++) {
+            storage.addPatientData(1, i == 4 ? 1.0 : 0.0, "ECG", t + i);
+        }
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    void testAlertDeduplicatorCooldownFollowsResolution() {
+        // Test that an episode starting within the cooldown after a resolution is held back until the cooldown ends
+        AlertDeduplicator deduplicator = new AlertDeduplicator();
+        long t = 1700000000000L;
+        long minute = 60 * 1000;
+        assertTrue(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t)));
+        // resolved at t + 5 min, reappears within the 1 min cooldown
+        assertFalse(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t + 5 * minute + 30000)));
+        assertEquals(AlertDeduplicator.State.ACTIVE,
+                deduplicator.getState(1, "Abnormal Heart Rate", t + 5 * minute + 30000));
+        assertFalse(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t + 5 * minute + 50000)));
+        // still active once the cooldown has passed, so it is notified
+        assertTrue(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t + 6 * minute + 10000)));
+        assertFalse(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t + 6 * minute + 20000)));
+        // a recurrence after the cooldown is notified right away
+        assertTrue(deduplicator.offer(new Alert("1", "Abnormal Heart Rate", t + 13 * minute)));
+    }
+}
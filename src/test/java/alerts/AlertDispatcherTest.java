@@ -0,0 +1,180 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.alerts.Alert;
+import com.alerts.AlertDispatcher;
+import com.alerts.sinks.FileAlertSink;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class AlertDispatcherTest {
+
+    @Test
+    void testAlertDispatcherDropsOldestWhileSinkIsSlow(@TempDir Path dir) throws Exception {
+        // Test that submitting never waits for a blocked sink and the overflow policy keeps the newest alerts
+        java.util.concurrent.CountDownLatch entered = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        Path file = dir.resolve("alerts/alerts.log");
+        AlertDispatcher dispatcher = new AlertDispatcher(4, AlertDispatcher.OverflowPolicy.DROP_OLDEST,
+                alerts -> {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                new FileAlertSink(file));
+
+        Alert first = new Alert("0", "Low Blood Saturation", 1000);
+        assertTrue(dispatcher.submit(first));
+        assertTrue(first.isTriggered());
+        assertTrue(entered.await(10, java.util.concurrent.TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 1; i < 10; i++) {
+            assertTrue(dispatcher.submit(new Alert(String.valueOf(i), "Low Blood Saturation", 1000 + i)));
+        }
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(4, dispatcher.getQueuedCount());
+        assertEquals(5, dispatcher.getDroppedCount());
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals(5, dispatcher.getDeliveredCount());
+        assertFalse(dispatcher.submit(new Alert("10", "Low Blood Saturation", 1010)));
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).startsWith("Patient ID: 0, Timestamp: 1000"));
+        assertTrue(lines.get(1).startsWith("Patient ID: 6, Timestamp: 1006"));
+        assertTrue(lines.get(4).startsWith("Patient ID: 9, Timestamp: 1009"));
+    }
+
+    @Test
+    void testAlertDispatcherDeliversEarliestDeadlineFirst() throws Exception {
+        // Test that a critical alert overtakes a routine backlog, but an overdue routine alert is not starved
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        List<String> delivered = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        AlertDispatcher dispatcher = new AlertDispatcher(1000, AlertDispatcher.OverflowPolicy.DROP_NEWEST,
+                alerts -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (Alert alert : alerts) {
+                        delivered.add(alert.getCondition());
+                    }
+                });
+        dispatcher.submit(new Alert("1", "Blocker", 0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.getQueuedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 300; i++) {
+            dispatcher.submit(new Alert("1", "Abnormal ECG Peak", i));
+        }
+        Alert critical = new Alert("1", "Hypotensive Hypoxemia Alert", 300);
+        critical.setPriority(Alert.PRIORITY_CRITICAL);
+        dispatcher.submit(critical);
+        release.countDown();
+        dispatcher.close();
+
+        assertEquals(302, delivered.size());
+        assertEquals("Hypotensive Hypoxemia Alert", delivered.get(1));
+        assertEquals(301, dispatcher.getDeliveredCount(AlertDispatcher.PriorityClass.ROUTINE));
+        assertEquals(1, dispatcher.getDeliveredCount(AlertDispatcher.PriorityClass.CRITICAL));
+        assertEquals(1, dispatcher.getSubmittedCount(AlertDispatcher.PriorityClass.CRITICAL));
+        assertEquals(0, dispatcher.getDroppedCount(AlertDispatcher.PriorityClass.ROUTINE));
+
+        List<String> order = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CountDownLatch hold = new java.util.concurrent.CountDownLatch(1);
+        AlertDispatcher aging = new AlertDispatcher(alerts -> {
+            try {
+                hold.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Alert alert : alerts) {
+                order.add(alert.getCondition());
+            }
+        });
+        aging.setLatencyBudget(AlertDispatcher.PriorityClass.ROUTINE, 1);
+        aging.submit(new Alert("1", "Blocker", 0));
+        deadline = System.currentTimeMillis() + 10000;
+        while (aging.getQueuedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        aging.submit(new Alert("1", "Abnormal ECG Peak", 1));
+        Thread.sleep(5);
+        Alert urgent = new Alert("1", "Low Blood Saturation", 2);
+        urgent.setPriority(Alert.PRIORITY_URGENT);
+        aging.submit(urgent);
+        hold.countDown();
+        aging.close();
+        assertEquals(List.of("Blocker", "Abnormal ECG Peak", "Low Blood Saturation"), order);
+        assertTrue(aging.getMissedDeadlineCount(AlertDispatcher.PriorityClass.ROUTINE) >= 1);
+    }
+
+    @Test
+    void testAlertDispatcherAccountsForAlertsSubmittedWhileClosing() throws Exception {
+        // Test that every alert submitted concurrently with close is either delivered or counted as dropped
+        java.util.concurrent.atomic.AtomicLong received = new java.util.concurrent.atomic.AtomicLong();
+        AlertDispatcher dispatcher = new AlertDispatcher(alerts -> received.addAndGet(alerts.size()));
+        Thread[] submitters = new Thread[4];
+        for (int t = 0; t < submitters.length; t++) {
+            submitters[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    dispatcher.submit(new Alert("1", "Abnormal ECG Peak", i));
+                }
+            });
+            submitters[t].start();
+        }
+        Thread.sleep(5);
+        dispatcher.close();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        long submitted = dispatcher.getSubmittedCount(AlertDispatcher.PriorityClass.ROUTINE);
+        assertEquals(80000, submitted);
+        assertEquals(received.get(), dispatcher.getDeliveredCount());
+        assertEquals(submitted, dispatcher.getDeliveredCount() + dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.getQueuedCount());
+    }
+
+    @Test
+    void testAlertDispatcherAppliesNewBudgetToQueuedAlerts() throws Exception {
+        // Test that lowering a budget moves the alerts already queued in that class ahead of later deadlines
+        java.util.concurrent.CountDownLatch hold = new java.util.concurrent.CountDownLatch(1);
+        List<String> order = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        AlertDispatcher dispatcher = new AlertDispatcher(alerts -> {
+            try {
+                hold.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Alert alert : alerts) {
+                order.add(alert.getCondition());
+            }
+        });
+        dispatcher.submit(new Alert("1", "Blocker", 0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.getQueuedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        dispatcher.submit(new Alert("1", "Abnormal ECG Peak", 1));
+        Alert urgent = new Alert("1", "Low Blood Saturation", 2);
+        urgent.setPriority(Alert.PRIORITY_URGENT);
+        dispatcher.submit(urgent);
+        dispatcher.setLatencyBudget(AlertDispatcher.PriorityClass.ROUTINE, 1);
+        dispatcher.submit(new Alert("1", "Abnormal Heart Rate", 3));
+        hold.countDown();
+        dispatcher.close();
+        assertEquals(List.of("Blocker", "Abnormal ECG Peak", "Abnormal Heart Rate", "Low Blood Saturation"), order);
+    }
+}
@@ -0,0 +1,51 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+
+import java.util.List;
+
+class AlertGeneratorTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testAlertGeneratorEvaluatesPartitionedWindow() {
+        // Test that the strategies find their conditions in the typed slices of the recent window
+        List<String> conditions = new java.util.ArrayList<>();
+        AlertGenerator generator = new AlertGenerator(storage) {
+            @Override
+            public void triggerAlert(Alert alert) {
+                conditions.add(alert.getPatientId() + " " + alert.getCondition());
+            }
+        };
+        long t = System.currentTimeMillis() - 5 * 60 * 1000;
+        storage.addPatientData(1, 130, "SystolicPressure", t + 2000);
+        storage.addPatientData(1, 100, "SystolicPressure", t);
+        storage.addPatientData(1, 115, "SystolicPressure", t + 1000);
+        storage.addPatientData(1, 98, "Saturation", t);
+        storage.addPatientData(1, 91, "Saturation", t + 1000);
+        for (int i = 0; i < 5; i++) {
+            storage.addPatientData(1, i == 4 ? 1.0 : 0.0, "ECG", t + i);
+        }
+        storage.addPatientData(2, 70, "HeartRate", t - 2 * 60 * 60 * 1000);
+
+        for (Patient patient : storage.getAllPatients()) {
+            generator.evaluateData(patient);
+        }
+        assertEquals(List.of("1 Systolic Pressure Increasing Trend", "1 Low Blood Saturation",
+                "1 Rapid Blood Saturation Drop", "1 Abnormal ECG Peak", "2 Missing Recent Data"), conditions);
+    }
+}
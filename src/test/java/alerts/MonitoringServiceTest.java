@@ -0,0 +1,64 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.MonitoringService;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+
+class MonitoringServiceTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testMonitoringServiceEvaluatesEveryPatientEachCycle() throws Exception {
+        // Test that a cycle evaluates all patients in parallel and that slow cycles are counted as overruns
+        java.util.concurrent.atomic.AtomicInteger triggered = new java.util.concurrent.atomic.AtomicInteger();
+        AlertGenerator generator = new AlertGenerator(storage) {
+            @Override
+            public void triggerAlert(Alert alert) {
+                triggered.incrementAndGet();
+            }
+        };
+        long now = System.currentTimeMillis();
+        for (int patientId = 1; patientId <= 10000; patientId++) {
+            storage.addPatientData(patientId, patientId % 10 == 0 ? 88 : 97, "Saturation", now - 1000);
+        }
+        try (MonitoringService service = new MonitoringService(storage, generator, 1000, 4)) {
+            service.runCycle();
+            assertEquals(1000, triggered.get());
+            assertEquals(1, service.getCycleCount());
+        }
+
+        AlertGenerator slow = new AlertGenerator(storage) {
+            @Override
+            public void evaluateData(Patient patient) {
+                try {
+                    Thread.sleep(patient.getPatientId() == 1 ? 50 : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        MonitoringService service = new MonitoringService(storage, slow, 20, 4);
+        service.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (service.getCycleCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        service.close();
+        assertTrue(service.getCycleCount() >= 3);
+        assertTrue(service.getOverrunCount() >= 3);
+        assertTrue(service.getLastCycleMillis() >= 50);
+    }
+}
@@ -0,0 +1,116 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.alerts.Alert;
+import com.alerts.AlertDeduplicator;
+import com.alerts.AlertGenerator;
+import com.alerts.rules.RuleEngine;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class RuleEngineTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testRuleEngineMatchesStrategiesAndReloads(@TempDir Path dir) throws Exception {
+        // Test that the rule file equivalent to the built-in strategies raises the same alerts, and reloads atomically
+        Path file = dir.resolve("alert.rules");
+        List<String> rules = new java.util.ArrayList<>(List.of(
+                "# built-in conditions",
+                "threshold type=SystolicPressure above=180 below=90 priority=critical condition=\"Critical Systolic Pressure\"",
+                "threshold type=DiastolicPressure above=120 below=60 priority=critical condition=\"Critical Diastolic Pressure\"",
+                "trend type=SystolicPressure step=10 priority=urgent condition=\"Systolic Pressure\"",
+                "trend type=DiastolicPressure step=10 priority=urgent condition=\"Diastolic Pressure\"",
+                "threshold type=Saturation below=92 priority=urgent condition=\"Low Blood Saturation\"",
+                "drop type=Saturation amount=5 within=600000 priority=urgent condition=\"Rapid Blood Saturation Drop\"",
+                "threshold type=HeartRate above=100 below=50 priority=urgent condition=\"Abnormal Heart Rate\"",
+                "deviation type=ECG window=5 limit=0.3 priority=routine condition=\"Abnormal ECG Peak\"",
+                "combined type=SystolicPressure below=90 with=Saturation withBelow=92 priority=critical"
+                        + " condition=\"Hypotensive Hypoxemia Alert\"",
+                "threshold type=Alert above=0.5 priority=critical condition=\"Patient Triggered Alert\""));
+        Files.write(file, rules);
+
+        long t = System.currentTimeMillis() - 5 * 60 * 1000;
+        double[] systolic = {100, 115, 130, 85, 190, 120};
+        for (int i = 0; i < systolic.length; i++) {
+            storage.addPatientData(1, systolic[i], "SystolicPressure", t + i * 1000);
+            storage.addPatientData(1, 130 - i * 15, "DiastolicPressure", t + i * 1000);
+            storage.addPatientData(1, 99 - i * 3, "Saturation", t + i * 1000);
+            storage.addPatientData(1, 40 + i * 20, "HeartRate", t + i * 1000);
+            storage.addPatientData(1, i % 2, "Alert", t + i * 1000);
+        }
+        for (int i = 0; i < 12; i++) {
+            storage.addPatientData(1, i == 6 ? 1.0 : 0.0, "ECG", t + i);
+        }
+        Patient patient = storage.getAllPatients().get(0);
+
+        List<String> builtIn = new java.util.ArrayList<>();
+        new AlertGenerator(storage) {
+            @Override
+            public void triggerAlert(Alert alert) {
+                builtIn.add(alert.getCondition() + "@" + alert.getTimestamp() + "/" + alert.getPriority());
+            }
+        }.evaluateData(patient);
+        List<String> fromRules = new java.util.ArrayList<>();
+        try (RuleEngine engine = new RuleEngine(file)) {
+            AlertGenerator generator = new AlertGenerator(storage, new AlertDeduplicator(), null, engine) {
+                @Override
+                public void triggerAlert(Alert alert) {
+                    fromRules.add(alert.getCondition() + "@" + alert.getTimestamp() + "/" + alert.getPriority());
+                }
+            };
+            generator.evaluateData(patient);
+            assertEquals(10, engine.getRuleCount());
+            java.util.Collections.sort(builtIn);
+            java.util.Collections.sort(fromRules);
+            assertTrue(builtIn.size() > 20);
+            assertEquals(builtIn, fromRules);
+
+            // a file that does not compile leaves the rules in effect
+            Files.write(file, List.of("threshold type=Saturation below=ninety priority=urgent condition=Low"));
+            assertFalse(engine.reload());
+            assertEquals(10, engine.getRuleCount());
+
+            Files.write(file, List.of("threshold type=HeartRate above=130 priority=critical condition=Tachycardia"));
+            Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            engine.watch(10);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (engine.getRuleCount() != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, engine.getRuleCount());
+            fromRules.clear();
+            generator.evaluateData(patient);
+            assertEquals(List.of("Tachycardia@" + (t + 5000) + "/" + Alert.PRIORITY_CRITICAL), fromRules);
+        }
+        assertThrows(IOException.class, () -> new RuleEngine(dir.resolve("missing.rules")));
+    }
+
+    @Test
+    void testRuleEngineRejectsUnknownRecordTypes(@TempDir Path dir) throws Exception {
+        // Test that a misspelt record type is reported with its line instead of compiling into a rule that never fires
+        Path file = dir.resolve("alert.rules");
+        Files.write(file, List.of(
+                "threshold type=HeartRate above=100 priority=urgent condition=\"Abnormal Heart Rate\"",
+                "threshold type=Saturaton below=92 priority=urgent condition=\"Low Blood Saturation\""));
+        IOException e = assertThrows(IOException.class, () -> new RuleEngine(file));
+        assertTrue(e.getMessage().contains("Line 2: unknown record type 'Saturaton'"), e.getMessage());
+        assertEquals(-1, com.data_management.RecordTypeRegistry.lookup("Saturaton"));
+    }
+}
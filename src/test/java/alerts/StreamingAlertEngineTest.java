@@ -0,0 +1,80 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.StreamingAlertEngine;
+import com.data_management.DataStorage;
+
+import java.util.List;
+
+class StreamingAlertEngineTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testStreamingAlertEngineRaisesEachAlertOnce() {
+        // Test that the engine evaluates each reading once as it arrives, so alerts are not repeated
+        List<Alert> alerts = new java.util.ArrayList<>();
+        StreamingAlertEngine engine = new StreamingAlertEngine(alerts::add);
+        engine.attach(storage);
+        long t = 1700000000000L;
+        storage.addPatientData(1, 100, "SystolicPressure", t);
+        storage.addPatientData(1, 115, "SystolicPressure", t + 60000);
+        storage.addPatientData(1, 130, "SystolicPressure", t + 120000);
+        storage.addPatientData(1, 98, "Saturation", t);
+        storage.addPatientData(1, 92, "Saturation", t + 60000);
+        storage.addPatientData(1, 90, "Saturation", t + 120000);
+        storage.addPatientData(1, 85, "SystolicPressure", t + 180000);
+        for (int i = 0; i < 5; i++) {
+            storage.addPatientData(2, i == 4 ? 1.0 : 0.0, "ECG", t + i);
+        }
+        storage.addPatientData(1, 1.0, "Alert", t + 240000);
+        storage.addPatientData(1, 70, "HeartRate", t + 240000);
+        engine.detach(storage);
+        storage.addPatientData(1, 40, "HeartRate", t + 300000);
+
+        List<String> conditions = new java.util.ArrayList<>();
+        for (Alert alert : alerts) {
+            conditions.add(alert.getPatientId() + " " + alert.getCondition());
+        }
+        assertEquals(List.of("1 Systolic Pressure Increasing Trend", "1 Rapid Blood Saturation Drop",
+                "1 Low Blood Saturation", "1 Critical Systolic Pressure", "1 Hypotensive Hypoxemia Alert",
+                "2 Abnormal ECG Peak", "1 Patient Triggered Alert"), conditions);
+        assertEquals(t + 4, alerts.get(5).getTimestamp());
+        assertEquals(t + 180000, alerts.get(4).getTimestamp());
+    }
+
+    @Test
+    void testStreamingAlertEngineDeliversOutsideThePatientLock() throws InterruptedException {
+        // Test that a consumer waiting on another reading of the same patient does not deadlock the engine
+        List<Alert> alerts = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        long t = 1700000000000L;
+        boolean[] finished = new boolean[1];
+        StreamingAlertEngine engine = new StreamingAlertEngine(alert -> {
+            alerts.add(alert);
+            if (alert.getCondition().equals("Low Blood Saturation")) {
+                Thread other = new Thread(() -> storage.addPatientData(1, 95, "Saturation", t + 1000));
+                other.start();
+                try {
+                    other.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished[0] = !other.isAlive();
+            }
+        });
+        engine.attach(storage);
+        storage.addPatientData(1, 90, "Saturation", t);
+        assertTrue(finished[0]);
+        assertEquals(1, alerts.size());
+    }
+}
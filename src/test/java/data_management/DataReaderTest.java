@@ -0,0 +1,268 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.BinaryFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypeRegistry;
+import com.data_management.TailingFileDataReader;
+import com.data_management.TcpDataReader;
+import com.data_management.WebSocketDataReader;
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
+import com.cardio_generator.outputs.BinaryRecordEncoder;
+import com.cardio_generator.outputs.BinaryTcpOutputStrategy;
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class DataReaderTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testParallelFileReadMatchesSequentialRead(@TempDir Path directory) throws IOException {
+        // Test that reading files split into chunks on a pool stores the same readings in the same order
+        StringBuilder ecg = new StringBuilder();
+        StringBuilder saturation = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            int patientId = i % 7 + 1;
+            ecg.append(String.format("Patient ID: %d, Timestamp: %d, Label: ECG, Data: %s%n",
+                    patientId, 1700000000000L + i, Math.cos(i)));
+            if (i % 10 == 0) {
+                saturation.append(String.format("Patient ID: %d, Timestamp: %d, Label: Saturation, Data: %d%%%n",
+                        patientId, 1700000000000L + i, 90 + i % 10));
+            }
+        }
+        ecg.append("Patient ID: 1, Timestamp: oops, Label: ECG, Data: 1.0\n");
+        Files.writeString(directory.resolve("ECG.txt"), ecg);
+        Files.writeString(directory.resolve("Saturation.txt"), saturation);
+        Files.writeString(directory.resolve("Alert.txt"),
+                "Patient ID: 3, Timestamp: 1700000000005, Label: Alert, Data: triggered\r\n");
+
+        DataStorage sequential = new DataStorage();
+        new FileDataReader(directory.toString()).readData(sequential);
+        DataStorage parallel = new DataStorage();
+        new FileDataReader(directory.toString(), 4).readData(parallel);
+
+        for (int patientId = 1; patientId <= 7; patientId++) {
+            List<PatientRecord> expected = sequential.getRecords(patientId, 0L, Long.MAX_VALUE);
+            List<PatientRecord> actual = parallel.getRecords(patientId, 0L, Long.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+            }
+        }
+        assertEquals(30000 + 3000 + 1, sequential.getAllPatients().stream()
+                .mapToInt(patient -> patient.getRecords(0L, Long.MAX_VALUE).size()).sum());
+    }
+
+    @Test
+    void testFileParserReadsValuesExactly(@TempDir Path directory) throws IOException {
+        // Test that values parsed in place equal Double.parseDouble, including edge cases
+        java.util.Random random = new java.util.Random(7);
+        List<String> values = new java.util.ArrayList<>(List.of("0", "-0.0", "1.5", "2.5e-5", "0.30000000000000004",
+                "9007199254740993", "123456789012345678901234", "1.7976931348623157E308", "4.9E-324", "1e-320",
+                "2.2250738585072014E-308", "NaN", "-Infinity", "+7", "1E22", "1e23", "8.41E21", "97",
+                "941.0293287597946291", "9246301024129988204"));
+        for (int i = 0; i < 20000; i++) {
+            double value = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            values.add(i % 2 == 0 ? Double.toString(value) : Long.toString(random.nextLong() >>> random.nextInt(64)));
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            text.append("Patient ID: 1, Timestamp: ").append(i).append(", Label: HeartRate, Data: ")
+                    .append(values.get(i)).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        text.append("Patient ID: 1, Timestamp: ").append(values.size()).append(", Label: heartrate, Data: 42");
+        text.append("\nPatient ID: 1, Timestamp: 5, Label: HeartRate, Data: 4x2\nPatient ID: 1, Data: 1\n");
+        text.append("Patient ID: 1, Timestamp: 99, Label: Saturation, Data: 93.5%\n");
+        Files.writeString(directory.resolve("HeartRate.txt"), text);
+
+        new FileDataReader(directory.toString()).readData(storage);
+
+        List<PatientRecord> heartRates = storage.getAllPatients().get(0)
+                .getRecords(RecordTypeRegistry.HEART_RATE, 0L, Long.MAX_VALUE);
+        assertEquals(values.size() + 1, heartRates.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(Double.parseDouble(values.get(i)), heartRates.get(i).getMeasurementValue(), values.get(i));
+        }
+        assertEquals(42.0, heartRates.get(values.size()).getMeasurementValue());
+        assertEquals(93.5, storage.getAllPatients().get(0)
+                .getRecords(RecordTypeRegistry.SATURATION, 0L, Long.MAX_VALUE).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testTailingReaderFollowsAppendsAndResumes(@TempDir Path directory) throws IOException {
+        // Test that only appended complete lines are read and that offsets survive a restart
+        Path file = directory.resolve("ECG.txt");
+        Files.writeString(file, "Patient ID: 1, Timestamp: 1000, Label: ECG, Data: 0.5\n"
+                + "Patient ID: 1, Timestamp: 2000, Label: ECG, Data: 0.6\n"
+                + "Patient ID: 1, Timestamp: 3000, Lab");
+        TailingFileDataReader reader = new TailingFileDataReader(directory.toString());
+        reader.readData(storage);
+        assertEquals(2, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+
+        Files.writeString(file, "el: ECG, Data: 0.7\nPatient ID: 2, Timestamp: 4000, Label: ECG, Data: 0.8\n",
+                StandardOpenOption.APPEND);
+        reader.poll();
+        assertEquals(0.7, storage.getRecords(1, 3000L, 3000L).get(0).getMeasurementValue());
+        assertEquals(1, storage.getRecords(2, 0L, Long.MAX_VALUE).size());
+        assertEquals(0, reader.poll());
+        reader.close();
+
+        Files.writeString(file, "Patient ID: 2, Timestamp: 5000, Label: ECG, Data: 0.9\n", StandardOpenOption.APPEND);
+        DataStorage restarted = new DataStorage();
+        TailingFileDataReader resumed = new TailingFileDataReader(directory.toString());
+        resumed.readData(restarted);
+        assertEquals(1, restarted.getRecords(2, 0L, Long.MAX_VALUE).size());
+        assertTrue(restarted.getRecords(1, 0L, Long.MAX_VALUE).isEmpty());
+
+        Files.writeString(file, "Patient ID: 3, Timestamp: 6000, Label: ECG, Data: 1.0\n"); // replaced, shorter
+        resumed.poll();
+        assertEquals(1, restarted.getRecords(3, 0L, Long.MAX_VALUE).size());
+        resumed.close();
+    }
+
+    @Test
+    void testTcpReaderStoresLiveStream() throws Exception {
+        // Test that the reader connects to a simulator TCP output and stores every line it sends
+        int port;
+        try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        TcpOutputStrategy output = new TcpOutputStrategy(port);
+        TcpDataReader reader = new TcpDataReader("localhost", port);
+        reader.readData(storage);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (storage.getRecords(99, 0L, Long.MAX_VALUE).isEmpty() && System.currentTimeMillis() < deadline) {
+            output.output(99, 1L, "HeartRate", "70.0"); // dropped until the reader is connected
+            Thread.sleep(20);
+        }
+        assertTrue(reader.isConnected());
+        for (int i = 0; i < 5000; i++) {
+            output.output(1, 1700000000000L + i, "Saturation", (90 + i % 10) + "%");
+        }
+        output.output(1, 1700000000000L, "Alert", "triggered");
+        while (storage.getRecords(1, 0L, Long.MAX_VALUE).size() < 5001 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        reader.close();
+
+        List<PatientRecord> records = storage.getAllPatients().stream().filter(p -> p.getPatientId() == 1)
+                .findFirst().get().getRecords(RecordTypeRegistry.SATURATION, 0L, Long.MAX_VALUE);
+        assertEquals(5000, records.size());
+        assertEquals(93.0, records.get(1003).getMeasurementValue());
+        assertEquals(1, storage.getAllPatients().stream().filter(p -> p.getPatientId() == 1)
+                .findFirst().get().getRecords(RecordTypeRegistry.ALERT, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testWebSocketReaderStoresLiveStream() throws Exception {
+        // Test that the reader receives the frames of a simulator WebSocket output and stores them in batches
+        int port;
+        try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(port);
+        WebSocketDataReader reader = new WebSocketDataReader("ws://localhost:" + port);
+        reader.readData(storage);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (storage.getRecords(99, 0L, Long.MAX_VALUE).isEmpty() && System.currentTimeMillis() < deadline) {
+            output.output(99, 1L, "HeartRate", "70.0"); // dropped until the reader is connected
+            Thread.sleep(20);
+        }
+        assertTrue(reader.isConnected());
+        for (int i = 0; i < 5000; i++) {
+            output.output(2, 1700000000000L + i, "Saturation", (90 + i % 10) + "%");
+        }
+        while (storage.getRecords(2, 0L, Long.MAX_VALUE).size() < 5000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        reader.close();
+
+        List<PatientRecord> records = storage.getRecords(2, 0L, Long.MAX_VALUE);
+        assertEquals(5000, records.size());
+        assertEquals(97.0, records.get(4007).getMeasurementValue());
+        assertEquals(0, reader.getDroppedFrames());
+    }
+
+    @Test
+    void testBinaryFilesRoundTripExactly(@TempDir Path directory) throws IOException {
+        // Test that readings written in the binary format are read back exactly and take fixed-width records
+        BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(directory.toString());
+        for (int i = 0; i < 1000; i++) {
+            output.output(3, 1700000000000L + i, "ECG", Math.sin(i) / 3.0);
+        }
+        output.output(3, 1700000000000L, "Saturation", "97.0%");
+        output.output(3, 1700000000001L, "Alert", "triggered");
+        output.close();
+        output = new BinaryFileOutputStrategy(directory.toString()); // appending starts a new stream
+        output.output(3, 1700000001000L, "ECG", 0.25);
+        output.close();
+
+        assertEquals(2 * (BinaryRecordEncoder.HEADER_BYTES + 4 + "ECG".length())
+                + 1001 * BinaryRecordEncoder.READING_BYTES, Files.size(directory.resolve("ECG.bin")));
+        new BinaryFileDataReader(directory.toString()).readData(storage);
+
+        Patient patient = storage.getAllPatients().get(0);
+        List<PatientRecord> ecg = patient.getRecords(RecordTypeRegistry.ECG, 0L, Long.MAX_VALUE);
+        assertEquals(1001, ecg.size());
+        assertEquals(Math.sin(617) / 3.0, ecg.get(617).getMeasurementValue());
+        assertEquals(0.25, ecg.get(1000).getMeasurementValue());
+        assertEquals(97.0, patient.getRecords(RecordTypeRegistry.SATURATION, 0L, Long.MAX_VALUE).get(0)
+                .getMeasurementValue());
+        assertEquals(1.0, patient.getRecords(RecordTypeRegistry.ALERT, 0L, Long.MAX_VALUE).get(0)
+                .getMeasurementValue());
+    }
+
+    @Test
+    void testTcpReaderDetectsBinaryStream() throws Exception {
+        // Test that the TCP reader decodes the binary stream of the binary TCP output
+        int port;
+        try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        BinaryTcpOutputStrategy output = new BinaryTcpOutputStrategy(port);
+        TcpDataReader reader = new TcpDataReader("localhost", port);
+        reader.readData(storage);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (storage.getRecords(99, 0L, Long.MAX_VALUE).isEmpty() && System.currentTimeMillis() < deadline) {
+            output.output(99, 1L, "HeartRate", 70.0); // dropped until the reader is connected
+            Thread.sleep(20);
+        }
+        for (int i = 0; i < 5000; i++) {
+            output.output(4, 1700000000000L + i, "ECG", i * 0.001);
+        }
+        while (storage.getRecords(4, 0L, Long.MAX_VALUE).size() < 5000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        reader.close();
+
+        List<PatientRecord> records = storage.getRecords(4, 0L, Long.MAX_VALUE);
+        assertEquals(5000, records.size());
+        assertEquals(4321 * 0.001, records.get(4321).getMeasurementValue());
+        assertEquals(RecordTypeRegistry.labelOf(RecordTypeRegistry.ECG), records.get(0).getRecordType());
+    }
+}
@@ -3,10 +3,23 @@ package data_management;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import com.data_management.AggregateFunction;
 import com.data_management.DataStorage;
+import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.PopulationIndex;
+import com.data_management.RecordBatch;
+import com.data_management.RecordCursor;
+import com.data_management.RecordTypeRegistry;
+import com.data_management.SegmentStore;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollupRecord;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 class DataStorageTest {
@@ -123,4 +136,372 @@ class DataStorageTest {
         assertTrue(allPatients.stream().anyMatch(p -> p.getPatientId() == 2));
         assertTrue(allPatients.stream().anyMatch(p -> p.getPatientId() == 3));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testOutOfOrderRecordsAreReturnedSorted() {
+        // Test that late readings are inserted at their time position and types are merged in order
+        storage.addPatientData(1, 3.0, "ECG", 3000L);
+        storage.addPatientData(1, 1.0, "ECG", 1000L);
+        storage.addPatientData(1, 97.0, "Saturation", 2000L);
+        storage.addPatientData(1, 2.0, "ECG", 2500L);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(4, records.size());
+        assertEquals(1000L, records.get(0).getTimestamp());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(2500L, records.get(2).getTimestamp());
+        assertEquals(3.0, records.get(3).getMeasurementValue());
+    }
+
+    @Test
+    void testRecordTypesAreInternedCaseInsensitively() {
+        // Test that label spellings map to one code and that unknown labels are registered
+        storage.addPatientData(1, 97.0, "saturation", 1000L);
+        storage.addPatientData(1, 36.6, "BodyTemperature", 2000L);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(RecordTypeRegistry.SATURATION, records.get(0).getRecordTypeCode());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals(RecordTypeRegistry.codeOf("bodytemperature"), records.get(1).getRecordTypeCode());
+        assertEquals("BodyTemperature", records.get(1).getRecordType());
+    }
+
+    @Test
+    void testRecordTypeCodesResolveWhileRegistering() throws InterruptedException {
+        // Test that a code seen by one thread while another registers its label always has a label
+        int threads = 4;
+        String[] failure = new String[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String label = "RegistryProbe" + i;
+                    try {
+                        if (!label.equalsIgnoreCase(RecordTypeRegistry.labelOf(RecordTypeRegistry.codeOf(label)))) {
+                            failure[0] = label;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        failure[0] = e.getMessage();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure[0]);
+    }
+
+    @Test
+    void testConcurrentIngestWhileReading() throws InterruptedException {
+        // Test that parallel writers lose no readings and readers always see time-ordered data
+        int writers = 4;
+        int perWriter = 5000;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int patientId = w % 2 + 1;
+            String type = w < 2 ? "ECG" : "Saturation";
+            threads[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    storage.addPatientData(patientId, i, type, i);
+                }
+            });
+            threads[w].start();
+        }
+        while (threads[0].isAlive()) {
+            List<PatientRecord> snapshot = storage.getRecords(1, 0L, Long.MAX_VALUE);
+            for (int i = 1; i < snapshot.size(); i++) {
+                assertTrue(snapshot.get(i - 1).getTimestamp() <= snapshot.get(i).getTimestamp());
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2 * perWriter, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(2 * perWriter, storage.getRecords(2, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testRetentionPolicyRollsUpOldReadings() {
+        // Test that readings older than the raw horizon are served as minute and hour rollups
+        storage.setRetentionPolicy("Saturation", new RetentionPolicy(RetentionPolicy.MINUTE,
+                RetentionPolicy.HOUR, Long.MAX_VALUE));
+        int readings = 3 * 3600;
+        for (int i = 0; i < readings; i++) {
+            storage.addPatientData(1, 90 + i % 10, "Saturation", i * 1000L);
+        }
+
+        assertTrue(storage.getAllPatients().get(0).getSeries(RecordTypeRegistry.SATURATION).size() <= 61);
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        long covered = 0;
+        boolean sawHour = false;
+        boolean sawMinute = false;
+        for (int i = 0; i < records.size(); i++) {
+            PatientRecord record = records.get(i);
+            if (i > 0) {
+                assertTrue(records.get(i - 1).getTimestamp() <= record.getTimestamp());
+            }
+            if (record instanceof RollupRecord) {
+                RollupRecord rollup = (RollupRecord) record;
+                covered += rollup.getCount();
+                assertEquals(90.0, rollup.getMinimum());
+                assertEquals(99.0, rollup.getMaximum());
+                sawHour |= rollup.getBucketSize() == RetentionPolicy.HOUR;
+                sawMinute |= rollup.getBucketSize() == RetentionPolicy.MINUTE;
+            } else {
+                covered++;
+            }
+        }
+        assertEquals(readings, covered);
+        assertTrue(sawHour && sawMinute);
+
+        // the spread of the rolled up readings is kept
+        double[] deviation = storage.aggregate(1, "Saturation", 0L, readings * 1000L - 1, readings * 1000L,
+                AggregateFunction.STDDEV);
+        assertEquals(Math.sqrt(8.25), deviation[0], 1e-9);
+
+        // recent ranges are still answered from raw readings
+        List<PatientRecord> recent = storage.getRecords(1, (readings - 30) * 1000L, Long.MAX_VALUE);
+        assertEquals(30, recent.size());
+        assertFalse(recent.get(0) instanceof RollupRecord);
+    }
+
+    @Test
+    void testSegmentStoreRestoresHistoryAfterRestart(@TempDir Path directory) throws IOException {
+        // Test that persisted readings are mapped back in and combine with new readings
+        SegmentStore store = new SegmentStore(directory.toString());
+        store.attach(storage);
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(7, i, "ECG", 1000L + i);
+        }
+        storage.addPatientData(7, 95.0, "Saturation", 1050L);
+        store.close();
+
+        DataStorage restarted = new DataStorage();
+        SegmentStore reopened = new SegmentStore(directory.toString());
+        reopened.attach(restarted);
+        restarted.addPatientData(7, 100.0, "ECG", 1100L);
+        reopened.close();
+
+        List<PatientRecord> records = restarted.getRecords(7, 1040L, 1200L);
+        assertEquals(62, records.size());
+        assertEquals(40.0, records.get(0).getMeasurementValue());
+        assertEquals("Saturation", records.get(11).getRecordType());
+        assertEquals(100.0, records.get(61).getMeasurementValue());
+        assertEquals(5050.0, restarted.aggregate(7, "ECG", 0L, 2000L, 10000L, AggregateFunction.SUM)[0]);
+        assertEquals(40.0, restarted.aggregate(7, "ECG", 1040L, 1200L, 1000L, AggregateFunction.MIN)[0]);
+
+        DataStorage again = new DataStorage();
+        new SegmentStore(directory.toString()).load(again);
+        assertEquals(102, again.getRecords(7, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testSegmentStoreKeepsLabelsInsideItsDirectory(@TempDir Path directory) throws IOException {
+        // Test that a label with path characters stays in the store and stray files are skipped on load
+        Path root = directory.resolve("store");
+        SegmentStore store = new SegmentStore(root.toString());
+        store.attach(storage);
+        storage.addPatientData(3, 1.5, "../../Escaped Label", 1000L);
+        store.close();
+        Files.writeString(root.resolve("3").resolve("notes.seg"), "not a segment");
+        Files.writeString(root.resolve("3").resolve("ECG-latest.seg"), "not a segment");
+
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(root), files.collect(java.util.stream.Collectors.toList()));
+        }
+        DataStorage restarted = new DataStorage();
+        new SegmentStore(root.toString()).load(restarted);
+        List<PatientRecord> records = restarted.getRecords(3, 0L, Long.MAX_VALUE);
+        assertEquals(1, records.size());
+        assertEquals("../../Escaped Label", records.get(0).getRecordType());
+    }
+
+    @Test
+    void testCompressedHistoryReturnsExactReadings() {
+        // Test that readings sealed into compressed blocks decode to the original values
+        storage.setRetentionPolicy("Saturation", RetentionPolicy.COMPRESS_AFTER_HOUR);
+        java.util.Random random = new java.util.Random(42);
+        int readings = 3 * 3600;
+        double[] values = new double[readings];
+        double saturation = 96;
+        for (int i = 0; i < readings; i++) {
+            saturation = Math.min(100, Math.max(90, saturation + random.nextInt(3) - 1));
+            values[i] = i % 500 == 0 ? saturation + 0.37 : saturation;
+            storage.addPatientData(1, values[i], "Saturation", 1700000000000L + i * 1000L + (i % 7 == 0 ? 3 : 0));
+        }
+
+        assertTrue(storage.getAllPatients().get(0).getSeries(RecordTypeRegistry.SATURATION).historySize() > 0);
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(readings, records.size());
+        for (int i = 0; i < readings; i++) {
+            assertEquals(values[i], records.get(i).getMeasurementValue());
+        }
+        List<PatientRecord> range = storage.getRecords(1, 1700000000000L + 1000 * 1000L, 1700000000000L + 1999 * 1000L);
+        assertEquals(1000, range.size());
+        assertEquals(values[1000], range.get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testPopulationIndexFindsPatientsAcrossWard() {
+        // Test that threshold and range queries return exactly the matching patients
+        long now = 1700000000000L;
+        storage.addPatientData(1, 97.0, "Saturation", now - 20 * 60 * 1000L); // before the window
+        storage.addPatientData(1, 90.0, "Saturation", now - 20 * 60 * 1000L);
+        PopulationIndex index = new PopulationIndex(RetentionPolicy.MINUTE);
+        index.attach(storage);
+        for (int patientId = 2; patientId <= 50; patientId++) {
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(patientId, 95.0 + i % 3, "Saturation", now - i * 30 * 1000L);
+            }
+        }
+        storage.addPatientData(7, 91.0, "Saturation", now - 2 * 60 * 1000L);
+        storage.addPatientData(9, 85.0, "Saturation", now - 4 * 60 * 1000L - 1);
+        storage.addPatientData(9, 99.5, "Saturation", now - 4 * 60 * 1000L - 1);
+        storage.addPatientData(12, 88.0, "Saturation", now - 6 * 60 * 1000L); // outside the window
+
+        long start = now - 5 * 60 * 1000L + 17;
+        assertEquals(List.of(7, 9), index.findPatientsBelow("Saturation", start, now, 92));
+        assertEquals(List.of(1, 7, 9, 12), index.findPatientsBelow("Saturation", 0L, now, 92));
+        assertEquals(List.of(9), index.findPatientsAbove("Saturation", start, now, 98));
+        // patient 9 spans the range with 85 and 99.5 but has no reading within it
+        assertEquals(List.of(7), index.findPatients("Saturation", start, now, 90.5, 94));
+        assertTrue(index.findPatientsBelow("HeartRate", start, now, 50).isEmpty());
+
+        index.evictBefore(now - 10 * 60 * 1000L);
+        assertEquals(List.of(7, 9, 12), index.findPatientsBelow("Saturation", 0L, now, 92));
+    }
+
+    @Test
+    void testPopulationIndexChecksRolledUpReadings() {
+        // Test that a reading compacted into a rollup still matches although the rollup's average does not
+        storage.setRetentionPolicy("Saturation", new RetentionPolicy(RetentionPolicy.MINUTE,
+                RetentionPolicy.HOUR, Long.MAX_VALUE));
+        PopulationIndex index = new PopulationIndex(RetentionPolicy.MINUTE);
+        index.attach(storage);
+        for (int i = 0; i < 600; i++) {
+            storage.addPatientData(1, i == 30 ? 85.0 : 97.0, "Saturation", i * 1000L);
+            storage.addPatientData(2, 97.0, "Saturation", i * 1000L);
+        }
+
+        assertEquals(List.of(1), index.findPatientsBelow("Saturation", 0L, 50000L, 92));
+        assertEquals(2, storage.getAllPatients().size());
+
+        // an index attached later sees the rolled-up history by its extremes, not its averages
+        PopulationIndex late = new PopulationIndex(RetentionPolicy.MINUTE);
+        late.attach(storage);
+        assertEquals(List.of(1), late.findPatientsBelow("Saturation", 0L, RetentionPolicy.MINUTE - 1, 92));
+        assertTrue(late.findPatientsAbove("Saturation", 0L, RetentionPolicy.MINUTE - 1, 97).isEmpty());
+    }
+
+    @Test
+    void testAggregateMatchesRecordsInEveryTier() {
+        // Test that bucketed aggregates equal those computed from the materialized records
+        storage.setRetentionPolicy("HeartRate", RetentionPolicy.COMPRESS_AFTER_HOUR);
+        long start = 1700000000000L;
+        for (int i = 0; i < 4 * 3600; i++) {
+            double value = 60 + (i * 37 % 41) + (i % 1000 == 0 ? 0.25 : 0);
+            storage.addPatientData(1, value, "HeartRate", start + i * 1000L);
+        }
+        storage.addPatientData(1, 200.0, "HeartRate", start + 1234 * 1000L + 500); // late reading
+
+        long end = start + 4 * 3600 * 1000L;
+        long bucket = 17 * 60 * 1000L;
+        double[] counts = storage.aggregate(1, "HeartRate", start - 5000, end, bucket, AggregateFunction.COUNT);
+        double[] means = storage.aggregate(1, "HeartRate", start - 5000, end, bucket, AggregateFunction.MEAN);
+        double[] deviations = storage.aggregate(1, "HeartRate", start - 5000, end, bucket, AggregateFunction.STDDEV);
+        double[] maxima = storage.aggregate(1, "HeartRate", start - 5000, end, bucket, AggregateFunction.MAX);
+        assertEquals((end - start + 5000) / bucket + 1, counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            long from = start - 5000 + i * bucket;
+            List<PatientRecord> records = storage.getRecords(1, from, Math.min(end, from + bucket - 1));
+            double sum = 0;
+            double max = Double.NEGATIVE_INFINITY;
+            for (PatientRecord record : records) {
+                sum += record.getMeasurementValue();
+                max = Math.max(max, record.getMeasurementValue());
+            }
+            double mean = sum / records.size();
+            double squares = 0;
+            for (PatientRecord record : records) {
+                squares += (record.getMeasurementValue() - mean) * (record.getMeasurementValue() - mean);
+            }
+            assertEquals(records.size(), counts[i], "bucket " + i);
+            assertEquals(mean, means[i], 1e-9);
+            assertEquals(Math.sqrt(squares / records.size()), deviations[i], 1e-9);
+            assertEquals(max, maxima[i]);
+        }
+
+        double[] empty = storage.aggregate(2, "HeartRate", start, end, bucket, AggregateFunction.MEAN);
+        assertTrue(Double.isNaN(empty[0]));
+        assertEquals(0.0, storage.aggregate(1, "ECG", start, end, end - start + 1, AggregateFunction.SUM)[0]);
+    }
+
+    @Test
+    void testCursorMatchesRecordListsAndIsReusable() {
+        // Test that a reused cursor returns the same readings as the list API, including compressed history
+        storage.setRetentionPolicy("ECG", RetentionPolicy.COMPRESS_AFTER_HOUR);
+        long start = 1700000000000L;
+        for (int i = 0; i < 3 * 3600; i++) {
+            storage.addPatientData(1, Math.sin(i / 10.0), "ECG", start + i * 1000L);
+        }
+        storage.addPatientData(1, 5.0, "ECG", start + 100 * 1000L + 1); // late reading
+        storage.addPatientData(1, 97.0, "Saturation", start);
+
+        RecordCursor cursor = new RecordCursor();
+        long[][] ranges = {{start, start + 3 * 3600 * 1000L}, {start + 7200 * 1000L, start + 7300 * 1000L},
+                {start + 99 * 1000L, start + 101 * 1000L}, {start - 1000L, start - 1L}};
+        for (long[] range : ranges) {
+            List<PatientRecord> records = storage.getRecords(1, range[0], range[1]);
+            records.removeIf(record -> !record.getRecordType().equals("ECG"));
+            storage.cursor(1, "ECG", range[0], range[1], cursor);
+            assertEquals(records.size(), cursor.remaining());
+            for (PatientRecord record : records) {
+                assertTrue(cursor.hasNext());
+                assertEquals(record.getTimestamp(), cursor.nextTimestamp());
+                assertEquals(record.getMeasurementValue(), cursor.nextValue());
+            }
+            assertFalse(cursor.hasNext());
+        }
+        assertFalse(storage.cursor(2, "ECG", start, Long.MAX_VALUE, cursor).hasNext());
+        assertFalse(storage.cursor(1, "NoSuchType", start, Long.MAX_VALUE, cursor).hasNext());
+    }
+
+    @Test
+    void testAddBatchMatchesSingleAdds() {
+        // Test that a batch with interleaved patients, types and late readings is stored like single adds
+        DataStorage single = new DataStorage();
+        List<long[]> notified = new java.util.ArrayList<>();
+        storage.addListener((patientId, recordTypeCode, timestamp, value) -> notified.add(new long[]{patientId, timestamp}));
+        RecordBatch batch = new RecordBatch(4);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 3000; i++) {
+                int patientId = 1 + i % 7;
+                long timestamp = 1700000000000L + round * 3000 + (i % 50 == 49 ? i - 500 : i);
+                String type = i % 3 == 0 ? "ECG" : i % 3 == 1 ? "SystolicPressure" : "DiastolicPressure";
+                batch.add(patientId, i * 0.5, type, timestamp);
+                single.addPatientData(patientId, i * 0.5, type, timestamp);
+            }
+            storage.addBatch(batch);
+            assertEquals(3000, batch.size());
+            batch.clear();
+        }
+
+        assertEquals(6000, notified.size());
+        for (int patientId = 1; patientId <= 7; patientId++) {
+            List<PatientRecord> expected = single.getRecords(patientId, 0L, Long.MAX_VALUE);
+            List<PatientRecord> actual = storage.getRecords(patientId, 0L, Long.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+            }
+            assertArrayEquals(single.aggregate(patientId, "ECG", 1699999999000L, 1700000007000L, 1000L,
+                    AggregateFunction.SUM), storage.aggregate(patientId, "ECG", 1699999999000L, 1700000007000L,
+                    1000L, AggregateFunction.SUM));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.DerivedSignalStage;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.List;
+
+class DerivedSignalStageTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testDerivedSignalStageStoresHeartRateAndMeanArterialPressure() {
+        // Test that R peaks in the ECG become a HeartRate series and paired pressures a MeanArterialPressure series
+        DerivedSignalStage stage = new DerivedSignalStage(storage).registerDefaults();
+        stage.start();
+        List<Double> heartRates = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        storage.addListener((patientId, recordTypeCode, timestamp, value) -> {
+            if (recordTypeCode == RecordTypeRegistry.HEART_RATE) {
+                heartRates.add(value);
+            }
+        });
+
+        long t = 1700000000000L;
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 2500; i++) { // 10 seconds at 250 Hz, a beat every 800 ms
+            long time = t + i * 4;
+            double wander = 0.2 * Math.sin(2 * Math.PI * time / 3000.0);
+            double tWave = 0.2 * Math.exp(-Math.pow(((i * 4) % 800 - 250) / 40.0, 2));
+            double qrs = (i * 4) % 800 == 100 ? 1.2 : (i * 4) % 800 == 96 || (i * 4) % 800 == 104 ? 0.5 : 0;
+            storage.addPatientData(1, wander + tWave + qrs + random.nextDouble() * 0.05, "ECG", time);
+        }
+        storage.addPatientData(1, 120, "SystolicPressure", t);
+        storage.addPatientData(1, 81, "DiastolicPressure", t + 1);
+        storage.addPatientData(1, 95, "DiastolicPressure", t + 60000); // no systolic to pair with
+
+        Patient patient = storage.getAllPatients().get(0);
+        List<PatientRecord> derived = patient.getRecords(RecordTypeRegistry.HEART_RATE, t, t + 10000);
+        assertTrue(derived.size() >= 8, "beats after learning: " + derived.size());
+        assertEquals(derived.size(), heartRates.size());
+        for (PatientRecord record : derived) {
+            assertEquals(75.0, record.getMeasurementValue(), 0.5);
+            assertEquals(100, (record.getTimestamp() - t) % 800);
+        }
+        List<PatientRecord> map = patient.getRecords(RecordTypeRegistry.codeOf("MeanArterialPressure"), t, t + 120000);
+        assertEquals(1, map.size());
+        assertEquals(94.0, map.get(0).getMeasurementValue(), 1e-9);
+        assertEquals(t + 1, map.get(0).getTimestamp());
+
+        stage.close();
+        storage.addPatientData(1, 130, "SystolicPressure", t + 60001);
+        assertEquals(1, patient.getRecords(RecordTypeRegistry.codeOf("MeanArterialPressure"), t, t + 120000).size());
+    }
+
+    @Test
+    void testDerivedSignalStageIgnoresSimulatorRateEcg() {
+        // Test that the simulator's one ECG reading per second, too sparse to resolve R peaks, derives no heart rate
+        new DerivedSignalStage(storage).registerDefaults().start();
+        java.util.Random random = new java.util.Random(7);
+        long t = 1700000000000L;
+        for (int i = 0; i < 3600; i++) { // one hour of ECGDataGenerator's waveform
+            long time = t + i * 1000;
+            double ecgFrequency = (60.0 + random.nextDouble() * 20.0) / 60.0;
+            double seconds = time / 1000.0;
+            double value = 0.1 * Math.sin(2 * Math.PI * ecgFrequency * seconds)
+                    + 0.5 * Math.sin(2 * Math.PI * 3 * ecgFrequency * seconds)
+                    + 0.2 * Math.sin(2 * Math.PI * 2 * ecgFrequency * seconds + Math.PI / 4)
+                    + random.nextDouble() * 0.05;
+            storage.addPatientData(1, value, "ECG", time);
+        }
+        Patient patient = storage.getAllPatients().get(0);
+        assertEquals(3600, patient.getRecords(RecordTypeRegistry.ECG, t, t + 3600000).size());
+        assertTrue(patient.getRecords(RecordTypeRegistry.HEART_RATE, t, t + 3600000).isEmpty());
+    }
+
+    @Test
+    void testDerivedSignalStageStoresOutsideThePatientLock() throws InterruptedException {
+        // Test that a listener of derived readings may wait on another reading of the same patient
+        new DerivedSignalStage(storage).registerDefaults().start();
+        long t = 1700000000000L;
+        boolean[] finished = new boolean[1];
+        int meanArterialPressure = RecordTypeRegistry.codeOf("MeanArterialPressure");
+        storage.addListener((patientId, recordTypeCode, timestamp, value) -> {
+            if (recordTypeCode == meanArterialPressure && timestamp == t + 1) {
+                Thread other = new Thread(() -> storage.addPatientData(1, 118, "SystolicPressure", t + 2));
+                other.start();
+                try {
+                    other.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished[0] = !other.isAlive();
+            }
+        });
+        storage.addPatientData(1, 120, "SystolicPressure", t);
+        storage.addPatientData(1, 81, "DiastolicPressure", t + 1);
+        assertTrue(finished[0]);
+    }
+}
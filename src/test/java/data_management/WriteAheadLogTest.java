@@ -0,0 +1,196 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordBatch;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollupRecord;
+import com.data_management.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class WriteAheadLogTest {
+
+    private DataStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize DataStorage before each test to ensure a clean state
+        storage = new DataStorage();
+    }
+
+    @Test
+    void testWriteAheadLogRecoversSnapshotAndLogTail(@TempDir Path directory) throws IOException {
+        // Test that recovery combines the latest snapshot with the log written after it, without duplicates
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.SYNC);
+        log.attach(storage);
+        for (int i = 0; i < 50; i++) {
+            storage.addPatientData(3, i, "SystolicPressure", 1000L * i);
+        }
+        log.checkpoint(storage);
+        for (int i = 50; i < 80; i++) {
+            storage.addPatientData(3, i, "SystolicPressure", 1000L * i);
+        }
+        storage.addPatientData(4, 1.0, "Alert", 5000L);
+        log.close();
+
+        DataStorage recovered = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.BATCH);
+        reopened.attach(recovered);
+        reopened.close();
+
+        List<PatientRecord> records = recovered.getRecords(3, 0L, Long.MAX_VALUE);
+        assertEquals(80, records.size());
+        assertEquals(79.0, records.get(79).getMeasurementValue());
+        assertEquals("Alert", recovered.getRecords(4, 0L, Long.MAX_VALUE).get(0).getRecordType());
+    }
+
+    @Test
+    void testWriteAheadLogCheckpointsWhileIngesting(@TempDir Path directory) throws Exception {
+        // Test that checkpoints taken during ingest neither lose nor fail writes of the generation they close
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.SYNC, 1);
+        log.attach(storage);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 5000; i++) {
+                storage.addPatientData(1 + i % 7, i, "Saturation", 1000L * i);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            log.checkpoint(storage);
+            Thread.sleep(2);
+        }
+        writer.join();
+        log.close();
+
+        DataStorage recovered = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.NONE);
+        reopened.attach(recovered);
+        reopened.close();
+        int total = 0;
+        for (int patientId = 1; patientId <= 7; patientId++) {
+            total += recovered.getRecords(patientId, 0L, Long.MAX_VALUE).size();
+        }
+        assertEquals(5000, total);
+    }
+
+    @Test
+    void testWriteAheadLogFailureReachesCallers(@TempDir Path directory) throws IOException {
+        // Test that once the log cannot be written, checkpoints and later appends fail instead of being acknowledged
+        Path logDirectory = directory.resolve("wal");
+        WriteAheadLog log = new WriteAheadLog(logDirectory.toString(), WriteAheadLog.Durability.SYNC);
+        log.attach(storage);
+        storage.addPatientData(1, 97, "Saturation", 1000L);
+        try (java.util.stream.Stream<Path> files = Files.list(logDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(logDirectory);
+
+        assertThrows(IOException.class, () -> log.checkpoint(storage));
+        assertThrows(IllegalStateException.class, () -> storage.addPatientData(1, 96, "Saturation", 2000L));
+        assertEquals(1, storage.getRecords(1, 0L, Long.MAX_VALUE).size()); // the rejected reading is not stored
+        log.close();
+    }
+
+    @Test
+    void testWriteAheadLogRecoversRepeatedReadings(@TempDir Path directory) throws IOException {
+        // Test that identical readings, before and after a checkpoint, all survive recovery
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.SYNC);
+        log.attach(storage);
+        storage.addPatientData(2, 1.0, "Alert", 5000L);
+        storage.addPatientData(2, 1.0, "Alert", 5000L);
+        log.checkpoint(storage);
+        storage.addPatientData(2, 1.0, "Alert", 5000L);
+        storage.addPatientData(2, 1.0, "Alert", 5000L);
+        log.checkpoint(storage);
+        storage.addPatientData(2, 1.0, "Alert", 5000L);
+        log.close();
+
+        DataStorage recovered = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.NONE);
+        reopened.attach(recovered);
+        reopened.close();
+        assertEquals(5, recovered.getRecords(2, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testWriteAheadLogRecoversBatches(@TempDir Path directory) throws IOException {
+        // Test that a batch is logged as a whole and recovered in the batch's order per patient
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.SYNC);
+        log.attach(storage);
+        RecordBatch batch = new RecordBatch();
+        for (int i = 0; i < 300; i++) {
+            batch.add(1 + i % 3, i, "HeartRate", 1000L * i);
+        }
+        storage.addBatch(batch);
+        assertEquals(299.0, batch.getMeasurementValue(299));
+        log.close();
+
+        DataStorage recovered = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.NONE);
+        reopened.attach(recovered);
+        reopened.close();
+        for (int patientId = 1; patientId <= 3; patientId++) {
+            List<PatientRecord> records = recovered.getRecords(patientId, 0L, Long.MAX_VALUE);
+            assertEquals(100, records.size());
+            assertEquals(patientId - 1.0, records.get(0).getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testWriteAheadLogStopsAtTornLabel(@TempDir Path directory) throws IOException {
+        // Test that a label whose length was torn ends the replay instead of failing recovery
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.SYNC);
+        log.attach(storage);
+        storage.addPatientData(1, 97, "Saturation", 1000L);
+        log.close();
+        try (java.io.DataOutputStream out = new java.io.DataOutputStream(Files.newOutputStream(
+                directory.resolve("wal-0.log"), java.nio.file.StandardOpenOption.APPEND))) {
+            out.writeByte('L');
+            out.writeInt(9);
+            out.writeShort(0x8000);
+            out.writeByte('x');
+        }
+
+        DataStorage recovered = new DataStorage();
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.NONE);
+        reopened.attach(recovered);
+        reopened.close();
+        assertEquals(1, recovered.getRecords(1, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testWriteAheadLogSnapshotKeepsRollups(@TempDir Path directory) throws IOException {
+        // Test that history folded into rollups before a checkpoint survives a restart
+        RetentionPolicy policy = new RetentionPolicy(RetentionPolicy.MINUTE, RetentionPolicy.HOUR, Long.MAX_VALUE);
+        storage.setRetentionPolicy("Saturation", policy);
+        WriteAheadLog log = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.BATCH);
+        log.attach(storage);
+        for (int i = 0; i < 2 * 3600; i++) {
+            storage.addPatientData(1, 90 + i % 10, "Saturation", i * 1000L);
+        }
+        log.checkpoint(storage);
+        log.close();
+
+        DataStorage recovered = new DataStorage();
+        recovered.setRetentionPolicy("Saturation", policy);
+        WriteAheadLog reopened = new WriteAheadLog(directory.toString(), WriteAheadLog.Durability.NONE);
+        reopened.attach(recovered);
+        reopened.close();
+        long covered = 0;
+        for (PatientRecord record : recovered.getRecords(1, 0L, Long.MAX_VALUE)) {
+            covered += record instanceof RollupRecord ? ((RollupRecord) record).getCount() : 1;
+        }
+        assertEquals(2 * 3600, covered);
+    }
+}